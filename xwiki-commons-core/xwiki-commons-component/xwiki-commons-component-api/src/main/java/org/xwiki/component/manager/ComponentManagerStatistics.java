@@ -0,0 +1,117 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.manager;
+
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Statistics about the components looked up and created by a {@link ComponentManager}. Registered as a component by
+ * the component managers which collect some.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+@Role
+public interface ComponentManagerStatistics
+{
+    /**
+     * The key used for the component managers which don't have any namespace.
+     */
+    String NO_NAMESPACE = "";
+
+    /**
+     * The number of buckets of the latency histograms. Bucket 0 counts the latencies lower than 1 microsecond, bucket
+     * {@code i} the latencies between 2<sup>i-1</sup> (included) and 2<sup>i</sup> (excluded) microseconds and the
+     * last bucket all the latencies greater than that (around 17 seconds).
+     */
+    int HISTOGRAM_SIZE = 26;
+
+    /**
+     * @param bucket the index of a histogram bucket
+     * @return the exclusive upper bound of the latencies counted in the passed bucket, in microseconds, or
+     *         {@link Long#MAX_VALUE} for the last bucket
+     */
+    long getHistogramBucketLimit(int bucket);
+
+    /**
+     * @return the number of lookups of registered components
+     */
+    long getLookupCount();
+
+    /**
+     * @return the number of lookups of components which are not registered
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of created component instances
+     */
+    long getCreationCount();
+
+    /**
+     * @return the number of lookups of each registered component, indexed by {@code <role>:<hint>}
+     */
+    Map<String, Long> getLookups();
+
+    /**
+     * @return the number of lookups of each component which is not registered, indexed by {@code <role>:<hint>}
+     */
+    Map<String, Long> getMisses();
+
+    /**
+     * @return the number of lookups of registered components, indexed by the namespace of the component manager where
+     *         they are registered ({@link #NO_NAMESPACE} for the component managers without namespace)
+     */
+    Map<String, Long> getNamespaceLookups();
+
+    /**
+     * @return the number of instances created for each component, indexed by {@code <role>:<hint>}
+     */
+    Map<String, Long> getCreations();
+
+    /**
+     * @return the total time spent to create the instances of each component (including the creation of their
+     *         dependencies), in nanoseconds and indexed by {@code <role>:<hint>}
+     */
+    Map<String, Long> getCreationTimes();
+
+    /**
+     * @return the total time spent to initialize the instances of each component, in nanoseconds and indexed by
+     *         {@code <role>:<hint>}
+     */
+    Map<String, Long> getInitializationTimes();
+
+    /**
+     * @return the histogram of the time spent to create component instances, see {@link #HISTOGRAM_SIZE}
+     */
+    long[] getCreationLatencies();
+
+    /**
+     * @return the histogram of the time spent to initialize component instances, see {@link #HISTOGRAM_SIZE}
+     */
+    long[] getInitializationLatencies();
+
+    /**
+     * Forget all the collected statistics.
+     */
+    void reset();
+}
@@ -45,6 +45,11 @@ public class DefaultParameterizedType implements ParameterizedType
      */
     private final Class<?> rawType;
 
+    /**
+     * Cached hash code since parameterized types are often used as keys when looking up components.
+     */
+    private int hash;
+
     /**
      * @param ownerType the owner type
      * @param rawType the raw type
@@ -86,8 +91,15 @@ public Type getRawType()
     @Override
     public int hashCode()
     {
-        return Arrays.hashCode(this.actualTypeArguments) ^ ObjectUtils.hasCode(this.ownerType)
-            ^ ObjectUtils.hasCode(this.rawType);
+        int result = this.hash;
+        if (result == 0) {
+            result =
+                Arrays.hashCode(this.actualTypeArguments) ^ ObjectUtils.hasCode(this.ownerType)
+                    ^ ObjectUtils.hasCode(this.rawType);
+            this.hash = result;
+        }
+
+        return result;
     }
 
     @Override
@@ -97,6 +109,15 @@ public boolean equals(Object o)
             return false;
         }
 
+        if (o instanceof DefaultParameterizedType) {
+            // Avoid copying the type arguments
+            DefaultParameterizedType defaultParameterizedType = (DefaultParameterizedType) o;
+
+            return ObjectUtils.equals(this.rawType, defaultParameterizedType.rawType)
+                && ObjectUtils.equals(this.ownerType, defaultParameterizedType.ownerType)
+                && Arrays.equals(this.actualTypeArguments, defaultParameterizedType.actualTypeArguments);
+        }
+
         ParameterizedType parameterizedType = (ParameterizedType) o;
 
         return ObjectUtils.equals(this.rawType, parameterizedType.getRawType())
@@ -35,6 +35,8 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Various Reflection utilities.
@@ -44,6 +46,59 @@
  */
 public final class ReflectionUtils
 {
+    /**
+     * The maximum number of results cached for each class by the caches depending on a second key.
+     */
+    private static final int MAX_CACHED_PER_CLASS = 64;
+
+    /**
+     * Marker used to cache null results.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * Cache of {@link Class#getTypeParameters()} which returns a new array each time. Like the other caches the results
+     * are stored in the {@link Class} itself so that they don't prevent unloading the classloaders of extensions.
+     */
+    private static final ClassValue<TypeVariable<?>[]> TYPE_PARAMETERS = new ClassValue<TypeVariable<?>[]>()
+    {
+        @Override
+        protected TypeVariable<?>[] computeValue(Class<?> type)
+        {
+            return type.getTypeParameters();
+        }
+    };
+
+    /**
+     * The class declaring the field returned by {@link #getField(Class, String)}, by field name. The {@link Field}
+     * itself is not cached since it's mutable ({@link Field#setAccessible(boolean)}) and each caller gets its own copy.
+     */
+    private static final ClassValue<ConcurrentMap<Object, Object>> FIELDS = new ClassCache();
+
+    /**
+     * Cache of {@link #getGenericClassType(Class, Class)}, by filter class.
+     */
+    private static final ClassValue<ConcurrentMap<Object, Object>> GENERIC_CLASS_TYPES = new ClassCache();
+
+    /**
+     * Cache of {@link #resolveType(Type, Type)} when the root type is not parameterized, by target class.
+     */
+    private static final ClassValue<ConcurrentMap<Object, Object>> RESOLVED_TYPES = new ClassCache();
+
+    /**
+     * Results associated to a class and another key.
+     *
+     * @version $Id$
+     */
+    private static final class ClassCache extends ClassValue<ConcurrentMap<Object, Object>>
+    {
+        @Override
+        protected ConcurrentMap<Object, Object> computeValue(Class<?> type)
+        {
+            return new ConcurrentHashMap<Object, Object>();
+        }
+    }
+
     /**
      * Utility class.
      */
@@ -93,6 +148,22 @@ public static Collection<Field> getAllFields(Class<?> clazz)
      * @exception NoSuchFieldException if the field doesn't exist in the class or superclasses
      */
     public static Field getField(Class<?> clazz, String fieldName) throws NoSuchFieldException
+    {
+        ConcurrentMap<Object, Object> cache = FIELDS.get(clazz);
+
+        Class<?> declaringClass = (Class<?>) cache.get(fieldName);
+        if (declaringClass != null) {
+            // Return a new copy of the field
+            return declaringClass.getDeclaredField(fieldName);
+        }
+
+        Field resultField = computeField(clazz, fieldName);
+        putCached(cache, fieldName, resultField.getDeclaringClass());
+
+        return resultField;
+    }
+
+    private static Field computeField(Class<?> clazz, String fieldName) throws NoSuchFieldException
     {
         Field resultField = null;
         Class<?> targetClass = clazz;
@@ -259,6 +330,24 @@ public static Class<?> getLastGenericClassType(Class clazz, Class filterClass)
      * @since 4.0M1
      */
     public static Type getGenericClassType(Class clazz, Class filterClass)
+    {
+        if (!isVisible(filterClass, clazz)) {
+            // Caching it would prevent unloading the filter class
+            return computeGenericClassType(clazz, filterClass);
+        }
+
+        ConcurrentMap<Object, Object> cache = GENERIC_CLASS_TYPES.get(clazz);
+
+        Object result = cache.get(filterClass);
+        if (result == null) {
+            result = computeGenericClassType(clazz, filterClass);
+            putCached(cache, filterClass, result != null ? result : NULL);
+        }
+
+        return result != NULL ? (Type) result : null;
+    }
+
+    private static Type computeGenericClassType(Class<?> clazz, Class<?> filterClass)
     {
         for (Type type : clazz.getGenericInterfaces()) {
             if (type == filterClass) {
@@ -303,7 +392,7 @@ public static Type[] resolveSuperArguments(Type[] parameters, Class childClass,
     {
         Map<TypeVariable, Type> typeMapping;
         if (childParameters != null) {
-            TypeVariable<Class>[] declaredChildParameters = childClass.getTypeParameters();
+            TypeVariable<?>[] declaredChildParameters = TYPE_PARAMETERS.get(childClass);
 
             typeMapping = new HashMap<TypeVariable, Type>();
             for (int i = 0; i < declaredChildParameters.length; ++i) {
@@ -401,12 +490,68 @@ public static Type resolveType(Type targetType, Type rootType)
                 resolveType((Class<?>) parameterizedType.getRawType(), parameterizedType.getActualTypeArguments(),
                     getTypeClass(rootType));
         } else {
-            resolvedType = resolveType(getTypeClass(rootType), null, getTypeClass(targetType));
+            resolvedType = resolveClassType(getTypeClass(rootType), getTypeClass(targetType));
         }
 
         return resolvedType;
     }
 
+    /**
+     * Cached version of {@link #resolveType(Class, Type[], Class)} without parameters.
+     */
+    private static Type resolveClassType(Class<?> rootClass, Class<?> targetClass)
+    {
+        if (targetClass == null || !isVisible(targetClass, rootClass)) {
+            // Caching it would prevent unloading the target class
+            return resolveType(rootClass, null, targetClass);
+        }
+
+        ConcurrentMap<Object, Object> cache = RESOLVED_TYPES.get(rootClass);
+
+        Object result = cache.get(targetClass);
+        if (result == null) {
+            result = resolveType(rootClass, null, targetClass);
+            putCached(cache, targetClass, result != null ? result : NULL);
+        }
+
+        return result != NULL ? (Type) result : null;
+    }
+
+    /**
+     * @param cache the results associated to a class
+     * @param key the key of the result
+     * @param value the result
+     */
+    private static void putCached(ConcurrentMap<Object, Object> cache, Object key, Object value)
+    {
+        // Don't cache the results of unusual calls forever
+        if (cache.size() < MAX_CACHED_PER_CLASS) {
+            cache.put(key, value);
+        }
+    }
+
+    /**
+     * @param key a class used as cache key
+     * @param clazz the class holding the cache
+     * @return true if the passed key class can be seen from the passed class, i.e. it can't be unloaded before it
+     */
+    private static boolean isVisible(Class<?> key, Class<?> clazz)
+    {
+        ClassLoader keyClassLoader = key.getClassLoader();
+        if (keyClassLoader == null) {
+            return true;
+        }
+
+        for (ClassLoader classLoader = clazz.getClassLoader(); classLoader != null; classLoader =
+            classLoader.getParent()) {
+            if (classLoader == keyClassLoader) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Find the real generic parameters of the passed target class from the extending/implementing root class and create
      * a Type from it.
@@ -181,4 +181,33 @@ public void testResolveType()
             new DefaultParameterizedType(null, List.class, String.class), Integer.class), ReflectionUtils.resolveType(
             TestInterface.class, TestClass3.class));
     }
+
+    @Test
+    public void testResultsAreCached() throws Exception
+    {
+        Assert.assertSame(ReflectionUtils.resolveType(TestInterface.class, TestClass3.class),
+            ReflectionUtils.resolveType(TestInterface.class, TestClass3.class));
+        Assert.assertSame(ReflectionUtils.getGenericClassType(TestClass.class, TestInterface.class),
+            ReflectionUtils.getGenericClassType(TestClass.class, TestInterface.class));
+        Assert.assertNull(ReflectionUtils.getGenericClassType(TestClass.class, List.class));
+        Assert.assertNull(ReflectionUtils.getGenericClassType(TestClass.class, List.class));
+    }
+
+    @Test
+    public void testFieldsAreCopies() throws Exception
+    {
+        Field field = ReflectionUtils.getField(TestFieldClass.class, "superField");
+        field.setAccessible(true);
+
+        Field otherField = ReflectionUtils.getField(TestFieldClass.class, "superField");
+        Assert.assertEquals(field, otherField);
+        Assert.assertNotSame(field, otherField);
+        Assert.assertFalse(otherField.isAccessible());
+
+        Collection<Field> fields = ReflectionUtils.getAllFields(TestFieldClass.class);
+        int size = fields.size();
+        fields.clear();
+
+        Assert.assertEquals(size, ReflectionUtils.getAllFields(TestFieldClass.class).size());
+    }
 }
@@ -20,6 +20,7 @@
 package org.xwiki.component.annotation;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,12 +30,17 @@
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -44,6 +50,9 @@
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.internal.ComponentDescriptorIndex;
+import org.xwiki.component.internal.ComponentRegistrySnapshot;
+import org.xwiki.component.internal.ComponentWarmUp;
 import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -72,6 +81,30 @@
     @Deprecated
     public static final String COMPONENT_OVERRIDE_LIST = "META-INF/component-overrides.txt";
 
+    /**
+     * Name of the system property indicating if the component classes should be loaded and parsed in parallel.
+     *
+     * @since 6.4M3
+     */
+    public static final String PARALLEL_PROPERTY = "xwiki.component.startup.parallel";
+
+    /**
+     * Name of the system property listing the singleton components to create right after their registration. The value
+     * is either {@code *} for all the singleton components or a comma separated list of role class names, optionally
+     * followed by {@code :<hint>}.
+     *
+     * @since 6.4M3
+     */
+    public static final String WARMUP_PROPERTY = "xwiki.component.startup.warmup";
+
+    /**
+     * Name of the system property indicating the permanent directory under which to store a snapshot of the
+     * discovered components, see {@link #setSnapshotDirectory(File)}.
+     *
+     * @since 6.4M3
+     */
+    public static final String SNAPSHOT_DIRECTORY_PROPERTY = "xwiki.component.snapshot.directory";
+
     /**
      * The encoding used to parse component list files.
      */
@@ -87,6 +120,112 @@
      */
     private ComponentDescriptorFactory factory = new ComponentDescriptorFactory();
 
+    /**
+     * @see #setParallel(boolean)
+     */
+    private boolean parallel = Boolean.getBoolean(PARALLEL_PROPERTY);
+
+    /**
+     * @see #setWarmUp(String)
+     */
+    private String warmUp = System.getProperty(WARMUP_PROPERTY);
+
+    /**
+     * @see #setSnapshotDirectory(File)
+     */
+    private File snapshotDirectory = System.getProperty(SNAPSHOT_DIRECTORY_PROPERTY) != null ? new File(
+        System.getProperty(SNAPSHOT_DIRECTORY_PROPERTY)) : null;
+
+    /**
+     * Resolve the component descriptors of a range of component declarations.
+     *
+     * @version $Id$
+     */
+    private final class DescriptorsResolver extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Below this number of declarations the descriptors are resolved in the current thread.
+         */
+        private static final int THRESHOLD = 16;
+
+        private final ClassLoader classLoader;
+
+        private final ComponentDescriptorIndex descriptorIndex;
+
+        private final List<ComponentDeclaration> componentDeclarations;
+
+        private final List<ComponentDescriptor>[] descriptors;
+
+        private final int start;
+
+        private final int end;
+
+        DescriptorsResolver(ClassLoader classLoader, ComponentDescriptorIndex descriptorIndex,
+            List<ComponentDeclaration> componentDeclarations, List<ComponentDescriptor>[] descriptors, int start,
+            int end)
+        {
+            this.classLoader = classLoader;
+            this.descriptorIndex = descriptorIndex;
+            this.componentDeclarations = componentDeclarations;
+            this.descriptors = descriptors;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.end - this.start <= THRESHOLD) {
+                for (int i = this.start; i < this.end; ++i) {
+                    this.descriptors[i] =
+                        getComponentsDescriptors(this.classLoader, this.componentDeclarations.get(i),
+                            this.descriptorIndex);
+                }
+            } else {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new DescriptorsResolver(this.classLoader, this.descriptorIndex, this.componentDeclarations,
+                    this.descriptors, this.start, middle), new DescriptorsResolver(this.classLoader,
+                    this.descriptorIndex, this.componentDeclarations, this.descriptors, middle, this.end));
+            }
+        }
+    }
+
+    /**
+     * @param parallel true if the component classes should be loaded and parsed in parallel, false by default unless
+     *            the {@value #PARALLEL_PROPERTY} system property is set to true
+     * @since 6.4M3
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @param warmUp the singleton components to create right after their registration when initializing a component
+     *            manager, see {@link #WARMUP_PROPERTY}; null (the default unless the system property is set) to create
+     *            them at their first lookup. Note that only the components registered before or by the same loader
+     *            can be injected in the created components.
+     * @since 6.4M3
+     */
+    public void setWarmUp(String warmUp)
+    {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * @param snapshotDirectory the permanent directory under which to store a snapshot of the components discovered in
+     *            each jar by {@link #initialize(ComponentManager, ClassLoader)}, so that only the jars which changed
+     *            need to be scanned at the next initialization; null (the default unless the
+     *            {@value #SNAPSHOT_DIRECTORY_PROPERTY} system property is set) to scan all the jars each time
+     * @since 6.4M3
+     */
+    public void setSnapshotDirectory(File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
     /**
      * Loads all components defined using annotations.
      *
@@ -96,6 +235,12 @@
      */
     public void initialize(ComponentManager manager, ClassLoader classLoader)
     {
+        if (this.snapshotDirectory != null) {
+            initializeWithSnapshot(manager, classLoader);
+
+            return;
+        }
+
         try {
             // Find all declared components by retrieving the list defined in COMPONENT_LIST.
             List<ComponentDeclaration> componentDeclarations = getDeclaredComponents(classLoader, COMPONENT_LIST);
@@ -133,7 +278,193 @@ public void initialize(ComponentManager manager, ClassLoader classLoader)
     public void initialize(ComponentManager manager, ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
     {
-        register(manager, classLoader, componentDeclarations);
+        initialize(manager, classLoader, componentDeclarations, getDescriptorIndex(classLoader), null);
+    }
+
+    private void initialize(ComponentManager manager, ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, ComponentDescriptorIndex descriptorIndex,
+        Map<String, List<ComponentDescriptor>> resolvedDescriptors)
+    {
+        Collection<ComponentDescriptor<?>> descriptors =
+            registerComponents(manager, classLoader, componentDeclarations, descriptorIndex, resolvedDescriptors);
+
+        if (this.warmUp != null) {
+            new ComponentWarmUp(manager, Runtime.getRuntime().availableProcessors()).warmUp(descriptors, this.warmUp);
+        }
+    }
+
+    /**
+     * Same as {@link #initialize(ComponentManager, ClassLoader)} but reuse the components found in the jars which
+     * didn't change since the last initialization and update the snapshot with the other ones.
+     */
+    private void initializeWithSnapshot(ComponentManager manager, ClassLoader classLoader)
+    {
+        File snapshotFile = new File(this.snapshotDirectory, ComponentRegistrySnapshot.LOCATION);
+
+        ComponentRegistrySnapshot previousSnapshot = new ComponentRegistrySnapshot(snapshotFile);
+        try {
+            previousSnapshot.load();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to load the component registry snapshot [{}], all the components will be discovered "
+                + "again. Root cause: [{}]", snapshotFile, e.getMessage());
+            previousSnapshot = new ComponentRegistrySnapshot(snapshotFile);
+        }
+
+        ComponentRegistrySnapshot snapshot = new ComponentRegistrySnapshot(snapshotFile);
+        Set<ComponentRegistrySnapshot.Source> scannedSources = new HashSet<>();
+
+        List<ComponentDeclaration> componentDeclarations;
+        try {
+            componentDeclarations = new ArrayList<>();
+            for (URL url : Collections.list(classLoader.getResources(COMPONENT_LIST))) {
+                componentDeclarations.addAll(getDeclaredComponents(getLines(url, false, previousSnapshot, snapshot,
+                    scannedSources)));
+            }
+
+            // Same backward compatibility as initialize(ComponentManager, ClassLoader)
+            for (URL url : Collections.list(classLoader.getResources(COMPONENT_OVERRIDE_LIST))) {
+                for (ComponentDeclaration componentOverrideDeclaration : getDeclaredComponents(getLines(url, true,
+                    previousSnapshot, snapshot, scannedSources))) {
+                    componentDeclarations.remove(componentOverrideDeclaration);
+                    componentDeclarations.add(new ComponentDeclaration(componentOverrideDeclaration
+                        .getImplementationClassName(), 0));
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get the list of components to load", e);
+        }
+
+        // The descriptors also depend on the classes of other jars (roles, super classes, dependencies) so they can
+        // only be reused when none of the jars of the classpath changed
+        String classpath = ComponentRegistrySnapshot.getClasspathStamp(classLoader);
+        snapshot.setClasspath(classpath);
+        Collection<ComponentRegistrySnapshot.Source> resolvedSources;
+        if (classpath != null && classpath.equals(previousSnapshot.getClasspath())) {
+            resolvedSources = scannedSources;
+        } else {
+            LOGGER.debug("The classpath changed since the last snapshot, all the component descriptors are resolved");
+
+            resolvedSources = new ArrayList<>(snapshot.getSources());
+            for (ComponentRegistrySnapshot.Source source : resolvedSources) {
+                source.getDescriptors().clear();
+            }
+        }
+
+        // Use the descriptors of the jars which didn't change, unless they have been precomputed at build time
+        ComponentDescriptorIndex descriptorIndex = getDescriptorIndex(classLoader);
+        for (Map.Entry<String, List<String>> entry : snapshot.getDescriptors().entrySet()) {
+            if (!descriptorIndex.contains(entry.getKey())) {
+                for (String line : entry.getValue()) {
+                    descriptorIndex.add(line);
+                }
+            }
+        }
+
+        Map<String, List<ComponentDescriptor>> resolvedDescriptors = new HashMap<>();
+        initialize(manager, classLoader, componentDeclarations, descriptorIndex, resolvedDescriptors);
+
+        // Remember the descriptors which have been resolved
+        for (ComponentRegistrySnapshot.Source source : resolvedSources) {
+            addDescriptors(source, source.getComponents(), resolvedDescriptors, descriptorIndex);
+            addDescriptors(source, source.getOverrides(), resolvedDescriptors, descriptorIndex);
+        }
+
+        if (!snapshot.isSameAs(previousSnapshot)) {
+            try {
+                snapshot.save();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to save the component registry snapshot [{}]. Root cause: [{}]", snapshotFile,
+                    e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param url the location of a component list file
+     * @param overrides true if it's a {@link #COMPONENT_OVERRIDE_LIST} file
+     * @param previousSnapshot the snapshot taken during the previous initialization
+     * @param snapshot the snapshot being taken
+     * @param scannedSources the jars which changed since the previous snapshot
+     * @return the lines of the component list file
+     */
+    private List<String> getLines(URL url, boolean overrides, ComponentRegistrySnapshot previousSnapshot,
+        ComponentRegistrySnapshot snapshot, Set<ComponentRegistrySnapshot.Source> scannedSources) throws IOException
+    {
+        String[] stamp = ComponentRegistrySnapshot.getStamp(url);
+        if (stamp == null) {
+            // Not a jar, it can't be cached
+            return readLines(url);
+        }
+
+        ComponentRegistrySnapshot.Source source = snapshot.getSource(stamp[0], stamp[1]);
+        if (source == null) {
+            source = previousSnapshot.getSource(stamp[0], stamp[1]);
+            if (source == null) {
+                LOGGER.debug("Scanning components of [{}] which changed since the last snapshot", stamp[0]);
+
+                source = new ComponentRegistrySnapshot.Source(stamp[0], stamp[1]);
+                scannedSources.add(source);
+            }
+            snapshot.addSource(source);
+        }
+
+        List<String> lines = overrides ? source.getOverrides() : source.getComponents();
+        if (scannedSources.contains(source)) {
+            lines.addAll(readLines(url));
+        }
+
+        return lines;
+    }
+
+    private List<String> readLines(URL url) throws IOException
+    {
+        LOGGER.debug("Loading declared component definitions from [{}]", url);
+
+        List<String> lines = new ArrayList<>();
+        try (InputStream stream = url.openStream()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(stream, COMPONENT_LIST_ENCODING));
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                // Make sure we don't add empty lines
+                if (inputLine.trim().length() > 0) {
+                    lines.add(inputLine);
+                }
+            }
+        }
+
+        return lines;
+    }
+
+    private void addDescriptors(ComponentRegistrySnapshot.Source source, List<String> declarationLines,
+        Map<String, List<ComponentDescriptor>> resolvedDescriptors, ComponentDescriptorIndex descriptorIndex)
+    {
+        for (ComponentDeclaration declaration : getDeclaredComponents(declarationLines)) {
+            String className = declaration.getImplementationClassName();
+            List<ComponentDescriptor> descriptors = resolvedDescriptors.get(className);
+
+            // No need to store the descriptors precomputed at build time
+            if (descriptors != null && !descriptorIndex.contains(className)) {
+                List<String> descriptorLines = new ArrayList<>(descriptors.size());
+                for (ComponentDescriptor<?> descriptor : descriptors) {
+                    String descriptorLine;
+                    try {
+                        descriptorLine = ComponentDescriptorIndex.serialize(descriptor);
+                    } catch (IOException e) {
+                        descriptorLine = null;
+                    }
+                    if (descriptorLine == null) {
+                        // This component will be discovered by introspection at each initialization
+                        descriptorLines = null;
+                        break;
+                    }
+                    descriptorLines.add(descriptorLine);
+                }
+
+                if (descriptorLines != null) {
+                    source.getDescriptors().addAll(descriptorLines);
+                }
+            }
+        }
     }
 
     /**
@@ -145,36 +476,64 @@ public void initialize(ComponentManager manager, ClassLoader classLoader,
      */
     public void register(ComponentManager manager, ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
+    {
+        registerComponents(manager, classLoader, componentDeclarations, getDescriptorIndex(classLoader), null);
+    }
+
+    /**
+     * @param manager the component manager to use to dynamically register components
+     * @param classLoader the classloader to use to load the component classes
+     * @param componentDeclarations the declarations of components to register
+     * @param descriptorIndex the component descriptors precomputed at build time or found in a snapshot
+     * @param resolvedDescriptors filled with the descriptors resolved for each component class, if not null
+     * @return the registered descriptors
+     */
+    private Collection<ComponentDescriptor<?>> registerComponents(ComponentManager manager, ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, ComponentDescriptorIndex descriptorIndex,
+        Map<String, List<ComponentDescriptor>> resolvedDescriptors)
     {
         try {
-            // 2) For each component class name found, load its class and use introspection to find the necessary
-            // annotations required to create a Component Descriptor.
+            // 1) For each component class name found, load its class and get the corresponding Component Descriptors,
+            // either from the index or by using introspection to find the necessary annotations.
+            List<ComponentDescriptor>[] descriptors = new List[componentDeclarations.size()];
+            if (this.parallel) {
+                ForkJoinPool pool = new ForkJoinPool();
+                try {
+                    pool.invoke(new DescriptorsResolver(classLoader, descriptorIndex, componentDeclarations,
+                        descriptors, 0, descriptors.length));
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                for (int i = 0; i < descriptors.length; ++i) {
+                    descriptors[i] =
+                        getComponentsDescriptors(classLoader, componentDeclarations.get(i), descriptorIndex);
+                }
+            }
+
+            if (resolvedDescriptors != null) {
+                for (int i = 0; i < descriptors.length; ++i) {
+                    resolvedDescriptors.put(componentDeclarations.get(i).getImplementationClassName(), descriptors[i]);
+                }
+            }
+
+            // 2) Decide which descriptor to keep for each role and hint, in the order of the declarations
             Map<RoleHint<?>, ComponentDescriptor<?>> descriptorMap =
                 new HashMap<RoleHint<?>, ComponentDescriptor<?>>();
             Map<RoleHint<?>, Integer> priorityMap = new HashMap<RoleHint<?>, Integer>();
 
-            for (ComponentDeclaration componentDeclaration : componentDeclarations) {
-                Class<?> componentClass;
-                try {
-                    componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
-                } catch (Throwable e) {
-                    throw new RuntimeException(
-                        String.format("Failed to load component class [%s] for annotation parsing",
-                            componentDeclaration.getImplementationClassName()), e);
-                }
+            for (int i = 0; i < descriptors.length; ++i) {
+                ComponentDeclaration componentDeclaration = componentDeclarations.get(i);
 
-                // Look for ComponentRole annotations and register one component per ComponentRole found
-                for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
-                    for (ComponentDescriptor<?> componentDescriptor : this.factory.createComponentDescriptors(
-                        componentClass, componentRoleType)) {
-                        // If there's already a existing role/hint in the list of descriptors then decide which one
-                        // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
-                        RoleHint<?> roleHint =
-                            new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
-
-                        addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
-                            true);
-                    }
+                // Register one component per role and hint found
+                for (ComponentDescriptor<?> componentDescriptor : descriptors[i]) {
+                    // If there's already a existing role/hint in the list of descriptors then decide which one
+                    // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
+                    RoleHint<?> roleHint =
+                        new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
+
+                    addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
+                        true);
                 }
             }
 
@@ -182,6 +541,8 @@ public void register(ComponentManager manager, ClassLoader classLoader,
             for (ComponentDescriptor<?> descriptor : descriptorMap.values()) {
                 manager.registerComponent(descriptor);
             }
+
+            return descriptorMap.values();
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
             // if something is amiss.
@@ -275,6 +636,64 @@ public List<ComponentDescriptor> getComponentsDescriptors(Class<?> componentClas
         return descriptors;
     }
 
+    /**
+     * @param classLoader the classloader to use to look for the component descriptor indexes
+     * @return the component descriptors precomputed at build time
+     */
+    private ComponentDescriptorIndex getDescriptorIndex(ClassLoader classLoader)
+    {
+        ComponentDescriptorIndex descriptorIndex = new ComponentDescriptorIndex();
+
+        try {
+            descriptorIndex.load(classLoader);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to load the component descriptor indexes, components will be discovered by "
+                + "introspection. Root cause: [{}]", e.getMessage());
+        }
+
+        return descriptorIndex;
+    }
+
+    /**
+     * @param classLoader the classloader to use to load the component class
+     * @param componentDeclaration the declaration of the component
+     * @param descriptorIndex the component descriptors precomputed at build time
+     * @return the component descriptors
+     */
+    private List<ComponentDescriptor> getComponentsDescriptors(ClassLoader classLoader,
+        ComponentDeclaration componentDeclaration, ComponentDescriptorIndex descriptorIndex)
+    {
+        Class<?> componentClass;
+        try {
+            componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
+        } catch (Throwable e) {
+            throw new RuntimeException(String.format("Failed to load component class [%s] for annotation parsing",
+                componentDeclaration.getImplementationClassName()), e);
+        }
+
+        return getComponentsDescriptors(componentClass, descriptorIndex);
+    }
+
+    /**
+     * @param componentClass the component implementation class
+     * @param descriptorIndex the component descriptors precomputed at build time
+     * @return the component descriptors from the index or, if not indexed, found by introspection
+     */
+    private List<ComponentDescriptor> getComponentsDescriptors(Class<?> componentClass,
+        ComponentDescriptorIndex descriptorIndex)
+    {
+        if (descriptorIndex.contains(componentClass.getName())) {
+            try {
+                return new ArrayList<ComponentDescriptor>(descriptorIndex.getComponentDescriptors(componentClass));
+            } catch (Exception e) {
+                LOGGER.debug("Failed to get indexed descriptors of component [{}], using introspection instead",
+                    componentClass.getName(), e);
+            }
+        }
+
+        return getComponentsDescriptors(componentClass);
+    }
+
     public Set<Type> findComponentRoleTypes(Class<?> componentClass)
     {
         return findComponentRoleTypes(componentClass, null);
@@ -478,26 +897,46 @@ public List<ComponentDeclaration> getDeclaredComponents(InputStream componentLis
         while ((inputLine = in.readLine()) != null) {
             // Make sure we don't add empty lines
             if (inputLine.trim().length() > 0) {
-                try {
-                    String[] chunks = inputLine.split(":");
-                    ComponentDeclaration componentDeclaration;
-                    if (chunks.length > 1) {
-                        componentDeclaration = new ComponentDeclaration(chunks[1], Integer.parseInt(chunks[0]));
-                    } else {
-                        componentDeclaration = new ComponentDeclaration(chunks[0]);
-                    }
-                    LOGGER.debug("  - Adding component definition [{}] with priority [{}]",
-                        componentDeclaration.getImplementationClassName(), componentDeclaration.getPriority());
-                    annotatedClassNames.add(componentDeclaration);
-                } catch (Exception e) {
-                    getLogger().error("Failed to parse component declaration from [{}]", inputLine, e);
-                }
+                addDeclaredComponent(inputLine, annotatedClassNames);
             }
         }
 
         return annotatedClassNames;
     }
 
+    /**
+     * @param lines the non empty lines of a component list file
+     * @return the list of component declaration (implementation class names and priorities)
+     */
+    private List<ComponentDeclaration> getDeclaredComponents(List<String> lines)
+    {
+        List<ComponentDeclaration> annotatedClassNames = new ArrayList<ComponentDeclaration>(lines.size());
+
+        for (String line : lines) {
+            addDeclaredComponent(line, annotatedClassNames);
+        }
+
+        return annotatedClassNames;
+    }
+
+    private void addDeclaredComponent(String inputLine, List<ComponentDeclaration> annotatedClassNames)
+    {
+        try {
+            String[] chunks = inputLine.split(":");
+            ComponentDeclaration componentDeclaration;
+            if (chunks.length > 1) {
+                componentDeclaration = new ComponentDeclaration(chunks[1], Integer.parseInt(chunks[0]));
+            } else {
+                componentDeclaration = new ComponentDeclaration(chunks[0]);
+            }
+            LOGGER.debug("  - Adding component definition [{}] with priority [{}]",
+                componentDeclaration.getImplementationClassName(), componentDeclaration.getPriority());
+            annotatedClassNames.add(componentDeclaration);
+        } catch (Exception e) {
+            getLogger().error("Failed to parse component declaration from [{}]", inputLine, e);
+        }
+    }
+
     /**
      * Get all components listed in a JAR file.
      *
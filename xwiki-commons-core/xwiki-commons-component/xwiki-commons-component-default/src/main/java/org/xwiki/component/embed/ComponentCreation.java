@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.manager.ComponentLookupException;
+
+/**
+ * The creation of a singleton component instance. Threads needing the instance while it's being created wait for the
+ * same creation instead of blocking on a monitor.
+ *
+ * @param <R> the type of the component
+ * @version $Id$
+ * @since 6.4M3
+ */
+class ComponentCreation<R> extends FutureTask<R>
+{
+    /**
+     * The creations each thread is currently waiting for, used to detect dependency cycles spanning several threads.
+     */
+    private static final ConcurrentMap<Thread, ComponentCreation<?>> WAITING = new ConcurrentHashMap<>();
+
+    private static final String PATH_SEPARATOR = " -> ";
+
+    /**
+     * The component being created, used in error messages.
+     */
+    private final String component;
+
+    /**
+     * The thread creating the component.
+     */
+    private volatile Thread owner;
+
+    /**
+     * @param callable create the component instance
+     * @param component the component being created, used in error messages
+     */
+    ComponentCreation(Callable<R> callable, String component)
+    {
+        super(callable);
+
+        this.component = component;
+    }
+
+    /**
+     * @param path the components being created by the current thread
+     * @param component the component which can't be created
+     * @return the exception to throw
+     */
+    static ComponentLookupException createCycleException(Collection<String> path, String component)
+    {
+        return new ComponentLookupException(String.format("Dependency cycle detected when creating component [%s]: %s",
+            component, StringUtils.join(path, PATH_SEPARATOR) + PATH_SEPARATOR + component));
+    }
+
+    @Override
+    public void run()
+    {
+        this.owner = Thread.currentThread();
+
+        try {
+            super.run();
+        } finally {
+            this.owner = null;
+        }
+    }
+
+    /**
+     * @param thread a thread
+     * @return true if the component is being created by the passed thread
+     */
+    boolean isCreatedBy(Thread thread)
+    {
+        return this.owner == thread;
+    }
+
+    /**
+     * Wait for the end of the creation, whatever its result.
+     */
+    void awaitTermination()
+    {
+        awaitTermination(0);
+    }
+
+    /**
+     * Wait for the end of the creation, whatever its result, until the passed deadline.
+     *
+     * @param deadline the {@link System#nanoTime()} after which to stop waiting, 0 to wait as long as needed
+     */
+    void awaitTermination(long deadline)
+    {
+        try {
+            if (deadline != 0) {
+                get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } else {
+                get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The creation failed, nothing was created
+        } catch (TimeoutException e) {
+            // Still being created
+        }
+    }
+
+    /**
+     * @return the created instance
+     * @throws Exception when the creation failed
+     */
+    R getInstance() throws Exception
+    {
+        try {
+            return get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for the instance created by another thread.
+     *
+     * @param path the components being created by the current thread
+     * @return the created instance
+     * @throws Exception when the creation failed or when waiting for it would never end because of a dependency cycle
+     */
+    R await(Collection<String> path) throws Exception
+    {
+        Thread currentThread = Thread.currentThread();
+
+        checkCycle(currentThread, path);
+
+        WAITING.put(currentThread, this);
+        try {
+            return getInstance();
+        } catch (InterruptedException e) {
+            currentThread.interrupt();
+
+            throw new ComponentLookupException("Interrupted while waiting for the creation of component ["
+                + this.component + "]", e);
+        } finally {
+            WAITING.remove(currentThread);
+        }
+    }
+
+    /**
+     * Follow the threads waiting for each other starting with the one creating this component. If it leads back to
+     * the current thread then waiting would never end.
+     */
+    private void checkCycle(Thread currentThread, Collection<String> path) throws ComponentLookupException
+    {
+        List<String> waitPath = new ArrayList<>(path);
+
+        ComponentCreation<?> creation = this;
+        // The number of waiting threads bounds the length of a cycle
+        for (int i = WAITING.size(); creation != null && i >= 0; --i) {
+            Thread creationOwner = creation.owner;
+            if (creationOwner == null) {
+                // Already finished
+                break;
+            }
+
+            if (creationOwner == currentThread) {
+                throw createCycleException(waitPath, creation.component);
+            }
+
+            waitPath.add(creation.component);
+            creation = WAITING.get(creationOwner);
+        }
+    }
+}
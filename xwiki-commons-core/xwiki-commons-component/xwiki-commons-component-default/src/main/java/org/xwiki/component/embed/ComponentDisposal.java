@@ -0,0 +1,412 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.annotation.DisposePriority;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.embed.EmbeddableComponentManager.ComponentEntry;
+import org.xwiki.component.internal.RoleHint;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Dispose the components of an {@link EmbeddableComponentManager}. The components are disposed by increasing
+ * {@link DisposePriority}, the components of a given priority being all disposed before the ones of the next priority.
+ * Inside a priority, a component is only disposed once all the components depending on it have been disposed and
+ * independent components are disposed in parallel.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+class ComponentDisposal
+{
+    /**
+     * Logger to use to log shutdown information (opposite of initialization).
+     */
+    private static final Logger SHUTDOWN_LOGGER = LoggerFactory.getLogger("org.xwiki.shutdown");
+
+    private final EmbeddableComponentManager componentManager;
+
+    private final int parallelism;
+
+    /**
+     * The maximum time to wait for all the components to be disposed, in milliseconds, 0 for no limit.
+     */
+    private final long timeout;
+
+    /**
+     * The time above which a component is considered slow to dispose, in milliseconds.
+     */
+    private final long slowThreshold;
+
+    /**
+     * Create daemon worker threads with the same context classloader as the thread disposing the component manager.
+     *
+     * @version $Id$
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory
+    {
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "XWiki component disposal " + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(this.contextClassLoader);
+
+            return thread;
+        }
+    }
+
+    /**
+     * A component to dispose, the number of components depending on it which are not yet disposed and the components
+     * it depends on.
+     *
+     * @version $Id$
+     */
+    private final class Node implements Runnable
+    {
+        private final ComponentEntry<?> entry;
+
+        private final List<Node> dependencies = new ArrayList<>();
+
+        private final AtomicInteger pendingDependents = new AtomicInteger();
+
+        private volatile boolean disposed;
+
+        private ExecutorService executor;
+
+        private CountDownLatch remaining;
+
+        Node(ComponentEntry<?> entry)
+        {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run()
+        {
+            dispose(this);
+
+            this.remaining.countDown();
+
+            // The graph is acyclic so each node is submitted exactly once
+            for (Node dependency : this.dependencies) {
+                if (dependency.pendingDependents.decrementAndGet() == 0) {
+                    dependency.submit(this.executor, this.remaining);
+                }
+            }
+        }
+
+        void submit(ExecutorService nodeExecutor, CountDownLatch nodeRemaining)
+        {
+            this.executor = nodeExecutor;
+            this.remaining = nodeRemaining;
+
+            try {
+                nodeExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The disposal timed out, the remaining components won't be disposed
+            }
+        }
+    }
+
+    /**
+     * @param componentManager the component manager owning the components to dispose
+     * @param parallelism the maximum number of components to dispose at the same time
+     * @param timeout the maximum time to wait for all the components to be disposed, in milliseconds, 0 for no limit
+     * @param slowThreshold the time above which a component is reported as slow to dispose, in milliseconds
+     */
+    ComponentDisposal(EmbeddableComponentManager componentManager, int parallelism, long timeout, long slowThreshold)
+    {
+        this.componentManager = componentManager;
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+        this.slowThreshold = slowThreshold;
+    }
+
+    /**
+     * @param entries the components to dispose
+     * @return true if all the components have been disposed, false if the timeout expired before
+     */
+    boolean dispose(Collection<ComponentEntry<?>> entries)
+    {
+        long start = System.nanoTime();
+        long deadline = this.timeout > 0 ? start + TimeUnit.MILLISECONDS.toNanos(this.timeout) : 0;
+
+        // The priority and dependencies of the singletons being created are only known once they are created
+        Thread currentThread = Thread.currentThread();
+        for (ComponentEntry<?> entry : entries) {
+            ComponentCreation<?> creation = entry.creation.get();
+            if (creation != null && !creation.isCreatedBy(currentThread)) {
+                creation.awaitTermination(deadline);
+            }
+        }
+
+        // Group the components by priority, the ones never instantiated don't need to be disposed
+        SortedMap<Integer, List<ComponentEntry<?>>> priorities = new TreeMap<>();
+        for (ComponentEntry<?> entry : entries) {
+            if (entry.instance != null || entry.creation.get() != null) {
+                Integer priority = getPriority(entry.instance);
+                List<ComponentEntry<?>> priorityEntries = priorities.get(priority);
+                if (priorityEntries == null) {
+                    priorityEntries = new ArrayList<>();
+                    priorities.put(priority, priorityEntries);
+                }
+                priorityEntries.add(entry);
+            }
+        }
+
+        List<List<ComponentEntry<?>>> tiers = new ArrayList<>(priorities.values());
+        for (int i = 0; i < tiers.size(); ++i) {
+            Collection<Node> nodes = getNodes(tiers.get(i));
+
+            boolean completed = true;
+            // A worker thread is needed to stop waiting for a component which takes too long to dispose
+            if ((this.parallelism > 1 && nodes.size() > 1) || deadline != 0) {
+                completed = disposeInParallel(nodes, deadline);
+            } else {
+                disposeInCurrentThread(nodes);
+            }
+
+            if (!completed) {
+                List<ComponentEntry<?>> remaining = new ArrayList<>();
+                for (Node node : nodes) {
+                    if (!node.disposed) {
+                        remaining.add(node.entry);
+                    }
+                }
+                for (List<ComponentEntry<?>> tier : tiers.subList(i + 1, tiers.size())) {
+                    remaining.addAll(tier);
+                }
+
+                SHUTDOWN_LOGGER.warn("Stopped waiting for the disposal of components after [{}] ms."
+                    + " The following components might not have released their resources: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), remaining);
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int getPriority(Object instance)
+    {
+        if (instance == null) {
+            // Still being created after the timeout, or being created by the current thread
+            return DisposePriority.DEFAULT_PRIORITY;
+        }
+
+        DisposePriority priorityAnnotation = instance.getClass().getAnnotation(DisposePriority.class);
+
+        return priorityAnnotation == null ? DisposePriority.DEFAULT_PRIORITY : priorityAnnotation.value();
+    }
+
+    /**
+     * @return the nodes of the passed components, each component being listed after the components depending on it
+     */
+    private Collection<Node> getNodes(List<ComponentEntry<?>> entries)
+    {
+        Map<RoleHint<?>, Node> nodesByRoleHint = new LinkedHashMap<>();
+        Map<Type, List<Node>> nodesByRole = new HashMap<>();
+        for (ComponentEntry<?> entry : entries) {
+            Node node = new Node(entry);
+            nodesByRoleHint.put(new RoleHint<>(entry.descriptor.getRoleType(), entry.descriptor.getRoleHint()), node);
+            List<Node> roleNodes = nodesByRole.get(entry.descriptor.getRoleType());
+            if (roleNodes == null) {
+                roleNodes = new ArrayList<>();
+                nodesByRole.put(entry.descriptor.getRoleType(), roleNodes);
+            }
+            roleNodes.add(node);
+        }
+
+        // Reverse the dependency relations: a component has to wait for the components depending on it
+        Map<Node, List<Node>> dependents = new HashMap<>();
+        for (Node node : nodesByRoleHint.values()) {
+            for (ComponentDependency<?> dependency : node.entry.descriptor.getComponentDependencies()) {
+                for (Node dependencyNode : getDependencyNodes(dependency, nodesByRoleHint, nodesByRole)) {
+                    if (dependencyNode != node) {
+                        List<Node> dependencyDependents = dependents.get(dependencyNode);
+                        if (dependencyDependents == null) {
+                            dependencyDependents = new ArrayList<>();
+                            dependents.put(dependencyNode, dependencyDependents);
+                        }
+                        dependencyDependents.add(node);
+                    }
+                }
+            }
+        }
+
+        // Keep only the relations which don't create a cycle
+        Set<Node> sorted = new LinkedHashSet<>();
+        Set<Node> visiting = new HashSet<>();
+        for (Node node : nodesByRoleHint.values()) {
+            sort(node, dependents, sorted, visiting);
+        }
+
+        return sorted;
+    }
+
+    private void sort(Node node, Map<Node, List<Node>> dependents, Set<Node> sorted, Set<Node> visiting)
+    {
+        if (!sorted.contains(node)) {
+            visiting.add(node);
+            List<Node> nodeDependents = dependents.get(node);
+            if (nodeDependents != null) {
+                for (Node dependent : nodeDependents) {
+                    if (visiting.contains(dependent)) {
+                        // Disposal order inside a cycle is arbitrary
+                        SHUTDOWN_LOGGER.debug("Ignoring dependency cycle between components [{}] and [{}]",
+                            node.entry, dependent.entry);
+                    } else {
+                        sort(dependent, dependents, sorted, visiting);
+                        dependent.dependencies.add(node);
+                        node.pendingDependents.incrementAndGet();
+                    }
+                }
+            }
+            visiting.remove(node);
+
+            sorted.add(node);
+        }
+    }
+
+    /**
+     * @return the components which are injected in a component having the passed dependency
+     */
+    private Collection<Node> getDependencyNodes(ComponentDependency<?> dependency,
+        Map<RoleHint<?>, Node> nodesByRoleHint, Map<Type, List<Node>> nodesByRole)
+    {
+        Class<?> dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+
+        List<Node> dependencyNodes = new ArrayList<>();
+        if (dependencyRoleClass.isAssignableFrom(List.class) || dependencyRoleClass.isAssignableFrom(Map.class)) {
+            // All the components implementing the role are injected
+            List<Node> roleNodes =
+                nodesByRole.get(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
+            if (roleNodes != null) {
+                dependencyNodes.addAll(roleNodes);
+            }
+        } else {
+            addNode(new RoleHint<>(dependency.getRoleType(), dependency.getRoleHint()), nodesByRoleHint,
+                dependencyNodes);
+
+            if (dependencyRoleClass == Provider.class) {
+                // The provided component is likely to be used until the component is disposed
+                addNode(new RoleHint<>(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()),
+                    dependency.getRoleHint()), nodesByRoleHint, dependencyNodes);
+            }
+        }
+
+        return dependencyNodes;
+    }
+
+    private void addNode(RoleHint<?> roleHint, Map<RoleHint<?>, Node> nodesByRoleHint, List<Node> nodes)
+    {
+        Node node = nodesByRoleHint.get(roleHint);
+        if (node != null) {
+            nodes.add(node);
+        }
+    }
+
+    private void disposeInCurrentThread(Collection<Node> nodes)
+    {
+        for (Node node : nodes) {
+            dispose(node);
+        }
+    }
+
+    private boolean disposeInParallel(Collection<Node> nodes, long deadline)
+    {
+        ExecutorService executor =
+            Executors.newFixedThreadPool(Math.max(1, Math.min(this.parallelism, nodes.size())),
+                new WorkerThreadFactory());
+        try {
+            CountDownLatch remaining = new CountDownLatch(nodes.size());
+
+            // Start with the components nothing depends on, the others are submitted when their dependents are done
+            for (Node node : nodes) {
+                if (node.pendingDependents.get() == 0) {
+                    node.submit(executor, remaining);
+                }
+            }
+
+            if (deadline != 0) {
+                return remaining.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } else {
+                remaining.await();
+
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        } finally {
+            // Don't wait for the components which didn't finish in time
+            executor.shutdownNow();
+        }
+    }
+
+    private void dispose(Node node)
+    {
+        long start = System.nanoTime();
+
+        try {
+            this.componentManager.disposeEntry(node.entry);
+        } catch (Exception e) {
+            SHUTDOWN_LOGGER.error("Failed to dispose component [{}]", node.entry, e);
+        } finally {
+            node.disposed = true;
+        }
+
+        long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (time >= this.slowThreshold) {
+            SHUTDOWN_LOGGER.warn("Component [{}] took [{}] ms to dispose", node.entry, time);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Everything which can be resolved once for all the instances of a component: the kind of each dependency, its
+ * resolved generic argument and a handle on the field to inject it into.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+class ComponentInjectionPlan
+{
+    /**
+     * The type of the setter handles once adapted.
+     */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * The different ways of producing the value to inject in a field.
+     *
+     * @version $Id$
+     */
+    enum DependencyKind
+    {
+        /**
+         * A {@link Logger} created for the component implementation.
+         */
+        LOGGER,
+
+        /**
+         * The list of all the components implementing the generic argument role.
+         */
+        LIST,
+
+        /**
+         * The map of all the components implementing the generic argument role.
+         */
+        MAP,
+
+        /**
+         * A {@link Provider}, either registered as component or a generic one.
+         */
+        PROVIDER,
+
+        /**
+         * The descriptor of the component.
+         */
+        DESCRIPTOR,
+
+        /**
+         * A standard component.
+         */
+        COMPONENT
+    }
+
+    /**
+     * A dependency to inject and everything needed to inject it.
+     *
+     * @version $Id$
+     */
+    static final class DependencyInjection
+    {
+        private final ComponentDependency<?> dependency;
+
+        private final DependencyKind kind;
+
+        private final Type genericArgument;
+
+        private final MethodHandle setter;
+
+        private final Field field;
+
+        /**
+         * @param dependency the dependency to inject
+         * @param kind the way to produce the value to inject
+         * @param field the field where to inject the dependency
+         */
+        DependencyInjection(ComponentDependency<?> dependency, DependencyKind kind, Field field)
+        {
+            this.dependency = dependency;
+            this.kind = kind;
+            this.genericArgument = ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType());
+            this.field = field;
+            this.setter = field != null ? getSetter(field) : null;
+        }
+
+        private static MethodHandle getSetter(Field field)
+        {
+            try {
+                return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                // Some fields (final ones for example) can't be set through a method handle, fallback on the field
+                return null;
+            }
+        }
+
+        /**
+         * @return the dependency to inject
+         */
+        ComponentDependency<?> getDependency()
+        {
+            return this.dependency;
+        }
+
+        /**
+         * @return the way to produce the value to inject
+         */
+        DependencyKind getKind()
+        {
+            return this.kind;
+        }
+
+        /**
+         * @return the last generic argument of the dependency role type, already resolved
+         */
+        Type getGenericArgument()
+        {
+            return this.genericArgument;
+        }
+
+        /**
+         * @param instance the component instance
+         * @param value the value to inject in the field
+         */
+        void inject(Object instance, Object value)
+        {
+            if (this.field == null) {
+                // Same as ReflectionUtils#setFieldValue: ignore dependencies not matching any field
+                return;
+            }
+
+            try {
+                if (this.setter != null) {
+                    this.setter.invokeExact(instance, value);
+                } else {
+                    this.field.set(instance, value);
+                }
+            } catch (Throwable e) {
+                // This shouldn't happen but if it does then the Component manager will not function properly
+                // and we need to abort.
+                throw new RuntimeException("Failed to set field [" + this.dependency.getName() + "] in instance of ["
+                    + instance.getClass().getName() + "]", e);
+            }
+        }
+    }
+
+    private final List<DependencyInjection> injections;
+
+    /**
+     * @param descriptor the descriptor of the component for which to compute the plan
+     */
+    ComponentInjectionPlan(ComponentDescriptor<?> descriptor)
+    {
+        Collection<ComponentDependency<?>> dependencies = descriptor.getComponentDependencies();
+
+        if (dependencies.isEmpty()) {
+            this.injections = Collections.emptyList();
+        } else {
+            List<DependencyInjection> list = new ArrayList<>(dependencies.size());
+            for (ComponentDependency<?> dependency : dependencies) {
+                list.add(new DependencyInjection(dependency, getKind(dependency),
+                    getField(descriptor.getImplementation(), dependency.getName())));
+            }
+            this.injections = Collections.unmodifiableList(list);
+        }
+    }
+
+    /**
+     * @return the dependencies to inject, in the order they are declared in the descriptor
+     */
+    List<DependencyInjection> getInjections()
+    {
+        return this.injections;
+    }
+
+    private static DependencyKind getKind(ComponentDependency<?> dependency)
+    {
+        Class<?> dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+
+        DependencyKind kind;
+        if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
+            kind = DependencyKind.LOGGER;
+        } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
+            kind = DependencyKind.LIST;
+        } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
+            kind = DependencyKind.MAP;
+        } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
+            kind = DependencyKind.PROVIDER;
+        } else if (dependencyRoleClass.isAssignableFrom(ComponentDescriptor.class)) {
+            kind = DependencyKind.DESCRIPTOR;
+        } else {
+            kind = DependencyKind.COMPONENT;
+        }
+
+        return kind;
+    }
+
+    /**
+     * Find the field the same way {@link ReflectionUtils#setFieldValue(Object, String, Object)} does.
+     *
+     * @param implementation the component implementation class
+     * @param fieldName the name of the field
+     * @return the field, made accessible, or null if none could be found
+     */
+    private static Field getField(Class<?> implementation, String fieldName)
+    {
+        Class<?> targetClass = implementation;
+        while (targetClass != null) {
+            for (Field field : targetClass.getDeclaredFields()) {
+                if (field.getName().equalsIgnoreCase(fieldName)) {
+                    field.setAccessible(true);
+
+                    return field;
+                }
+            }
+            targetClass = targetClass.getSuperclass();
+        }
+
+        return null;
+    }
+}
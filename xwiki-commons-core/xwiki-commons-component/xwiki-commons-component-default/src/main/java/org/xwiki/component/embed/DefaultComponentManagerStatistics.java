@@ -0,0 +1,313 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.manager.ComponentManagerStatistics;
+
+/**
+ * Statistics about the components looked up and created by {@link EmbeddableComponentManager}s. Collecting them is
+ * disabled by default, see {@link EmbeddableComponentManager#setStatistics(DefaultComponentManagerStatistics)} and
+ * {@link #ENABLED_PROPERTY}.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class DefaultComponentManagerStatistics implements ComponentManagerStatistics
+{
+    /**
+     * The system property to set to {@code true} to collect statistics in the component managers created without
+     * parent.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.component.statistics";
+
+    private static final String HINT_SEPARATOR = ":";
+
+    /**
+     * The lookups of the registered components, by role type and hint.
+     */
+    private final ConcurrentMap<Type, ConcurrentMap<String, AtomicLong>> lookups = new ConcurrentHashMap<>();
+
+    /**
+     * The lookups of components which are not registered, by role type and hint.
+     */
+    private final ConcurrentMap<Type, ConcurrentMap<String, AtomicLong>> misses = new ConcurrentHashMap<>();
+
+    /**
+     * The lookups of the registered components, by namespace of the component manager where they are registered.
+     */
+    private final ConcurrentMap<String, AtomicLong> namespaceLookups = new ConcurrentHashMap<>();
+
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong creationCount = new AtomicLong();
+
+    /**
+     * The number of instances created for each component.
+     */
+    private final ConcurrentMap<String, AtomicLong> creations = new ConcurrentHashMap<>();
+
+    /**
+     * The time spent to create each component, in nanoseconds.
+     */
+    private final ConcurrentMap<String, AtomicLong> creationTimes = new ConcurrentHashMap<>();
+
+    /**
+     * The time spent to initialize each component, in nanoseconds.
+     */
+    private final ConcurrentMap<String, AtomicLong> initializationTimes = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray creationLatencies = new AtomicLongArray(HISTOGRAM_SIZE);
+
+    private final AtomicLongArray initializationLatencies = new AtomicLongArray(HISTOGRAM_SIZE);
+
+    /**
+     * @param latency a duration in nanoseconds
+     * @return the index of the histogram bucket where to count the passed latency
+     */
+    static int getHistogramBucket(long latency)
+    {
+        long micros = TimeUnit.NANOSECONDS.toMicros(latency);
+
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), HISTOGRAM_SIZE - 1);
+    }
+
+    @Override
+    public long getHistogramBucketLimit(int bucket)
+    {
+        return bucket < HISTOGRAM_SIZE - 1 ? 1L << bucket : Long.MAX_VALUE;
+    }
+
+    /**
+     * A registered component has been looked up.
+     *
+     * @param namespace the namespace of the component manager where the component is registered
+     * @param role the role type of the component
+     * @param hint the hint of the component
+     */
+    void lookup(String namespace, Type role, String hint)
+    {
+        this.lookupCount.incrementAndGet();
+        increment(this.lookups, role, hint);
+        increment(this.namespaceLookups, namespace != null ? namespace : NO_NAMESPACE);
+    }
+
+    /**
+     * A component which is not registered has been looked up.
+     *
+     * @param role the role type of the component
+     * @param hint the hint of the component
+     */
+    void miss(Type role, String hint)
+    {
+        this.missCount.incrementAndGet();
+        increment(this.misses, role, hint);
+    }
+
+    /**
+     * A component instance has been created.
+     *
+     * @param descriptor the descriptor of the component
+     * @param creationTime the time spent to create the instance (including its dependencies), in nanoseconds
+     * @param initializationTime the time spent in the lifecycle handlers (e.g. {@code Initializable#initialize()}), in
+     *            nanoseconds
+     */
+    void created(ComponentDescriptor<?> descriptor, long creationTime, long initializationTime)
+    {
+        String component = getKey(descriptor.getRoleType(), descriptor.getRoleHint());
+
+        this.creationCount.incrementAndGet();
+        increment(this.creations, component);
+        add(this.creationTimes, component, creationTime);
+        add(this.initializationTimes, component, initializationTime);
+
+        this.creationLatencies.incrementAndGet(getHistogramBucket(creationTime));
+        this.initializationLatencies.incrementAndGet(getHistogramBucket(initializationTime));
+    }
+
+    private void increment(ConcurrentMap<Type, ConcurrentMap<String, AtomicLong>> counters, Type role, String hint)
+    {
+        ConcurrentMap<String, AtomicLong> roleCounters = counters.get(role);
+        if (roleCounters == null) {
+            roleCounters = new ConcurrentHashMap<>();
+            ConcurrentMap<String, AtomicLong> existingCounters = counters.putIfAbsent(role, roleCounters);
+            if (existingCounters != null) {
+                roleCounters = existingCounters;
+            }
+        }
+
+        increment(roleCounters, hint);
+    }
+
+    private void increment(ConcurrentMap<String, AtomicLong> counters, String key)
+    {
+        add(counters, key, 1);
+    }
+
+    private void add(ConcurrentMap<String, AtomicLong> counters, String key, long value)
+    {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong existingCounter = counters.putIfAbsent(key, counter);
+            if (existingCounter != null) {
+                counter = existingCounter;
+            }
+        }
+
+        counter.addAndGet(value);
+    }
+
+    private static String getKey(Type role, String hint)
+    {
+        String roleName = role instanceof Class ? ((Class<?>) role).getName() : role.toString();
+
+        return roleName + HINT_SEPARATOR + hint;
+    }
+
+    private static Map<String, Long> toMap(ConcurrentMap<Type, ConcurrentMap<String, AtomicLong>> counters)
+    {
+        Map<String, Long> map = new TreeMap<>();
+        for (Map.Entry<Type, ConcurrentMap<String, AtomicLong>> roleEntry : counters.entrySet()) {
+            for (Map.Entry<String, AtomicLong> entry : roleEntry.getValue().entrySet()) {
+                map.put(getKey(roleEntry.getKey(), entry.getKey()), entry.getValue().get());
+            }
+        }
+
+        return map;
+    }
+
+    private static Map<String, Long> toMap(Map<String, AtomicLong> counters)
+    {
+        Map<String, Long> map = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().get());
+        }
+
+        return map;
+    }
+
+    private static long[] toArray(AtomicLongArray counters)
+    {
+        long[] array = new long[counters.length()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = counters.get(i);
+        }
+
+        return array;
+    }
+
+    @Override
+    public long getLookupCount()
+    {
+        return this.lookupCount.get();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    @Override
+    public long getCreationCount()
+    {
+        return this.creationCount.get();
+    }
+
+    @Override
+    public Map<String, Long> getLookups()
+    {
+        return toMap(this.lookups);
+    }
+
+    @Override
+    public Map<String, Long> getMisses()
+    {
+        return toMap(this.misses);
+    }
+
+    @Override
+    public Map<String, Long> getNamespaceLookups()
+    {
+        return toMap(this.namespaceLookups);
+    }
+
+    @Override
+    public Map<String, Long> getCreations()
+    {
+        return toMap(this.creations);
+    }
+
+    @Override
+    public Map<String, Long> getCreationTimes()
+    {
+        return toMap(this.creationTimes);
+    }
+
+    @Override
+    public Map<String, Long> getInitializationTimes()
+    {
+        return toMap(this.initializationTimes);
+    }
+
+    @Override
+    public long[] getCreationLatencies()
+    {
+        return toArray(this.creationLatencies);
+    }
+
+    @Override
+    public long[] getInitializationLatencies()
+    {
+        return toArray(this.initializationLatencies);
+    }
+
+    @Override
+    public void reset()
+    {
+        this.lookups.clear();
+        this.misses.clear();
+        this.namespaceLookups.clear();
+        this.creations.clear();
+        this.creationTimes.clear();
+        this.initializationTimes.clear();
+
+        this.lookupCount.set(0);
+        this.missCount.set(0);
+        this.creationCount.set(0);
+
+        for (int i = 0; i < HISTOGRAM_SIZE; ++i) {
+            this.creationLatencies.set(i, 0);
+            this.initializationLatencies.set(i, 0);
+        }
+    }
+}
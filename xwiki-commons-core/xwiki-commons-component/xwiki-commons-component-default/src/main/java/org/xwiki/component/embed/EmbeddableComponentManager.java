@@ -19,23 +19,29 @@
  */
 package org.xwiki.component.embed;
 
+import java.io.File;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-
-import javax.inject.Provider;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.ComponentAnnotationLoader;
-import org.xwiki.component.annotation.DisposePriority;
 import org.xwiki.component.descriptor.ComponentDependency;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -46,10 +52,10 @@
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.component.manager.ComponentManagerStatistics;
 import org.xwiki.component.manager.ComponentRepositoryException;
 import org.xwiki.component.manager.NamespacedComponentManager;
 import org.xwiki.component.phase.Disposable;
-import org.xwiki.component.util.ReflectionUtils;
 
 /**
  * Simple implementation of {@link ComponentManager} to be used when using some XWiki modules standalone.
@@ -59,11 +65,60 @@
  */
 public class EmbeddableComponentManager implements NamespacedComponentManager, Disposable
 {
+    /**
+     * The hint of a component registered without hint.
+     */
+    private static final String DEFAULT_HINT = "default";
+
+    /**
+     * The system property indicating the maximum number of components to dispose at the same time. Defaults to 1, i.e.
+     * all the components are disposed in the thread calling {@link #dispose()}. Only set it to a greater value when the
+     * components are known to support being disposed at the same time as other components.
+     *
+     * @since 6.4M3
+     */
+    public static final String DISPOSE_PARALLELISM_PROPERTY = "xwiki.component.dispose.parallelism";
+
+    /**
+     * The system property indicating the maximum time to wait for all the components to be disposed, in milliseconds.
+     * Defaults to 0, i.e. wait as long as needed.
+     *
+     * @since 6.4M3
+     */
+    public static final String DISPOSE_TIMEOUT_PROPERTY = "xwiki.component.dispose.timeout";
+
+    /**
+     * The system property indicating the time above which a component is reported as slow to dispose in the
+     * {@code org.xwiki.shutdown} log, in milliseconds. Defaults to 1000.
+     *
+     * @since 6.4M3
+     */
+    public static final String DISPOSE_SLOW_THRESHOLD_PROPERTY = "xwiki.component.dispose.slowThreshold";
+
+    /**
+     * The maximum number of lookup misses remembered by a component manager. Hints can come from user input so the
+     * misses are forgotten when this limit is reached instead of growing without bound.
+     */
+    private static final int MAX_MISSES = 10000;
+
     /**
      * Logger to use to log shutdown information (opposite of initialization).
      */
     private static final Logger SHUTDOWN_LOGGER = LoggerFactory.getLogger("org.xwiki.shutdown");
 
+    /**
+     * The components being created by the current thread, used to detect dependency cycles.
+     */
+    private static final ThreadLocal<ArrayDeque<ComponentEntry<?>>> CREATION_PATH =
+        new ThreadLocal<ArrayDeque<ComponentEntry<?>>>()
+        {
+            @Override
+            protected ArrayDeque<ComponentEntry<?>> initialValue()
+            {
+                return new ArrayDeque<>();
+            }
+        };
+
     /**
      * @see #getNamespace()
      */
@@ -76,7 +131,7 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
      */
     private ComponentManager parent;
 
-    private static class ComponentEntry<R>
+    static class ComponentEntry<R>
     {
         /**
          * Descriptor of the component.
@@ -91,17 +146,103 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
          */
         public volatile R instance;
 
+        /**
+         * What to inject in each new instance of the component. Lazily computed the first time the component is
+         * instantiated.
+         */
+        public volatile ComponentInjectionPlan injectionPlan;
+
+        /**
+         * The creation of the singleton instance currently in progress, if any.
+         */
+        public final AtomicReference<ComponentCreation<R>> creation = new AtomicReference<>();
+
         public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
         {
             this.descriptor = descriptor;
             this.instance = instance;
         }
+
+        @Override
+        public String toString()
+        {
+            return this.descriptor.getRoleType() + ":" + this.descriptor.getRoleHint();
+        }
     }
 
     private Map<RoleHint<?>, ComponentEntry<?>> componentEntries = new ConcurrentHashMap<>();
 
+    /**
+     * Index of the registered components by role type and then by hint. Used to avoid going through all the
+     * registered components when looking for all the components implementing a given role.
+     */
+    private ConcurrentMap<Type, ConcurrentMap<String, ComponentEntry<?>>> roleEntries = new ConcurrentHashMap<>();
+
     private Logger logger = LoggerFactory.getLogger(EmbeddableComponentManager.class);
 
+    /**
+     * The hints of the components known to be missing from this component manager and all its ancestors, indexed by
+     * role type so that checking a miss doesn't require creating a {@link RoleHint}.
+     */
+    private final ConcurrentMap<Type, Set<String>> misses = new ConcurrentHashMap<>();
+
+    /**
+     * The (approximate) number of hints in {@link #misses}.
+     */
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    /**
+     * Immutable snapshots of {@link #getInstanceMap(Type)} for the roles only implemented by singleton components.
+     */
+    private final ConcurrentMap<Type, Map<String, ?>> instanceMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Immutable snapshots of {@link #getInstanceList(Type)} for the roles only implemented by singleton components.
+     */
+    private final ConcurrentMap<Type, List<?>> instanceLists = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time the caches are invalidated, to not remember a result computed before a registration.
+     */
+    private final AtomicLong cachesVersion = new AtomicLong();
+
+    /**
+     * Lookup results are only cached when all the ancestors are {@link EmbeddableComponentManager}s, since
+     * registrations can't be tracked in other implementations.
+     */
+    private volatile boolean cachesEnabled = true;
+
+    /**
+     * The component managers having this component manager as parent. Their cached lookup results depend on the
+     * components registered in this one.
+     */
+    private final Set<EmbeddableComponentManager> children = Collections.synchronizedSet(Collections
+        .newSetFromMap(new WeakHashMap<EmbeddableComponentManager, Boolean>()));
+
+    /**
+     * @see #getContendedCreations()
+     */
+    private final AtomicLong contendedCreations = new AtomicLong();
+
+    /**
+     * @see #getStatistics()
+     */
+    private volatile DefaultComponentManagerStatistics statistics =
+        Boolean.getBoolean(DefaultComponentManagerStatistics.ENABLED_PROPERTY)
+            ? new DefaultComponentManagerStatistics() : null;
+
+    /**
+     * @see #setDisposeParallelism(int)
+     */
+    private volatile int disposeParallelism = Integer.getInteger(DISPOSE_PARALLELISM_PROPERTY, 1);
+
+    /**
+     * @see #setDisposeTimeout(long)
+     */
+    private volatile long disposeTimeout = Long.getLong(DISPOSE_TIMEOUT_PROPERTY, 0);
+
+    private final long disposeSlowThreshold = Long.getLong(DISPOSE_SLOW_THRESHOLD_PROPERTY, 1000);
+
     /**
      * Finds all lifecycle handlers to use when instantiating a Component.
      */
@@ -129,6 +270,66 @@ public String getNamespace()
         return this.namespace;
     }
 
+    /**
+     * @return the number of times a thread had to wait for a singleton component instance being created by another
+     *         thread
+     * @since 6.4M3
+     */
+    public long getContendedCreations()
+    {
+        return this.contendedCreations.get();
+    }
+
+    /**
+     * @return the statistics collected by this component manager or null if collecting statistics is disabled
+     * @since 6.4M3
+     */
+    public DefaultComponentManagerStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Enable or disable the collection of statistics about the components looked up and created by this component
+     * manager. The component managers share the statistics of their parent when it collects some. The statistics
+     * are registered as the default {@link ComponentManagerStatistics} component.
+     *
+     * @param statistics where to collect the statistics, null to disable collecting statistics
+     * @since 6.4M3
+     */
+    public void setStatistics(DefaultComponentManagerStatistics statistics)
+    {
+        this.statistics = statistics;
+
+        if (statistics != null) {
+            registerStatistics(statistics);
+        } else {
+            unregisterComponent(ComponentManagerStatistics.class, DEFAULT_HINT);
+        }
+    }
+
+    /**
+     * @param disposeParallelism the maximum number of components to dispose at the same time when this component
+     *            manager is disposed, 1 to dispose them all in the thread calling {@link #dispose()}
+     * @see #DISPOSE_PARALLELISM_PROPERTY
+     * @since 6.4M3
+     */
+    public void setDisposeParallelism(int disposeParallelism)
+    {
+        this.disposeParallelism = disposeParallelism;
+    }
+
+    /**
+     * @param disposeTimeout the maximum time to wait for all the components to be disposed when this component
+     *            manager is disposed, in milliseconds, 0 to wait as long as needed
+     * @see #DISPOSE_TIMEOUT_PROPERTY
+     * @since 6.4M3
+     */
+    public void setDisposeTimeout(long disposeTimeout)
+    {
+        this.disposeTimeout = disposeTimeout;
+    }
+
     /**
      * Allow to lookup the this as default {@link ComponentManager} implementation.
      */
@@ -138,6 +339,18 @@ private void registerThis()
         cd.setRoleType(ComponentManager.class);
 
         registerComponent(cd, this);
+
+        if (this.statistics != null) {
+            registerStatistics(this.statistics);
+        }
+    }
+
+    private void registerStatistics(ComponentManagerStatistics currentStatistics)
+    {
+        DefaultComponentDescriptor<ComponentManagerStatistics> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(ComponentManagerStatistics.class);
+
+        registerComponent(cd, currentStatistics);
     }
 
     /**
@@ -146,8 +359,28 @@ private void registerThis()
      * @param classLoader the class loader to use to look for component definitions
      */
     public void initialize(ClassLoader classLoader)
+    {
+        initialize(new ComponentAnnotationLoader(), classLoader);
+    }
+
+    /**
+     * Load all component annotations and register them as components, reusing the components found during the
+     * previous initialization in the jars which didn't change since then.
+     *
+     * @param classLoader the class loader to use to look for component definitions
+     * @param permanentDirectory the directory under which to store the snapshot of the components found in each jar
+     * @since 6.4M3
+     */
+    public void initialize(ClassLoader classLoader, File permanentDirectory)
     {
         ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        loader.setSnapshotDirectory(permanentDirectory);
+
+        initialize(loader, classLoader);
+    }
+
+    private void initialize(ComponentAnnotationLoader loader, ClassLoader classLoader)
+    {
         loader.initialize(this, classLoader);
 
         // Extension point to allow component to manipulate ComponentManager initialized state.
@@ -165,56 +398,193 @@ public void initialize(ClassLoader classLoader)
     @Override
     public boolean hasComponent(Type role)
     {
-        return hasComponent(role, "default");
+        return hasComponent(role, DEFAULT_HINT);
     }
 
     @Override
     public boolean hasComponent(Type role, String hint)
     {
-        if (this.componentEntries.containsKey(new RoleHint<>(role, hint))) {
+        String roleHint = hint != null ? hint : DEFAULT_HINT;
+
+        if (getEntry(role, roleHint) != null) {
             return true;
         }
 
-        return getParent() != null ? getParent().hasComponent(role, hint) : false;
+        if (isMissing(role, roleHint)) {
+            return false;
+        }
+
+        long version = this.cachesVersion.get();
+
+        boolean found = getParent() != null ? getParent().hasComponent(role, roleHint) : false;
+
+        if (!found && this.cachesEnabled) {
+            addMiss(role, roleHint, version);
+        }
+
+        return found;
+    }
+
+    /**
+     * Lookup a component registered in this component manager without allocating anything.
+     *
+     * @param role the role type of the component
+     * @param hint the hint of the component, not null
+     * @return the component entry or null if it's not registered in this component manager
+     */
+    private ComponentEntry<?> getEntry(Type role, String hint)
+    {
+        Map<String, ComponentEntry<?>> entries = this.roleEntries.get(role);
+
+        return entries != null ? entries.get(hint) : null;
+    }
+
+    private boolean isMissing(Type role, String hint)
+    {
+        Set<String> hints = this.misses.get(role);
+
+        return hints != null && hints.contains(hint);
+    }
+
+    private void addMiss(Type role, String hint, long version)
+    {
+        Set<String> hints = this.misses.get(role);
+        if (hints == null) {
+            hints = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> existingHints = this.misses.putIfAbsent(role, hints);
+            if (existingHints != null) {
+                hints = existingHints;
+            }
+        }
+
+        if (hints.add(hint) && this.missCount.incrementAndGet() > MAX_MISSES) {
+            // Too many distinct misses: start over rather than keeping all of them in memory
+            clearMisses();
+        }
+
+        // Forget it if a component has been registered in the meantime
+        if (this.cachesVersion.get() != version) {
+            hints.remove(hint);
+        }
+    }
+
+    /**
+     * @return the number of lookup misses currently remembered
+     */
+    int getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    private void clearMisses()
+    {
+        this.misses.clear();
+        this.missCount.set(0);
+    }
+
+    /**
+     * Forget the cached lookup results of this component manager and its descendants, called when a component is
+     * registered or unregistered.
+     */
+    private void invalidateCaches()
+    {
+        this.cachesVersion.incrementAndGet();
+
+        ComponentManager currentParent = this.parent;
+        this.cachesEnabled =
+            currentParent == null || (currentParent instanceof EmbeddableComponentManager
+                && ((EmbeddableComponentManager) currentParent).cachesEnabled);
+
+        clearMisses();
+        this.instanceMaps.clear();
+        this.instanceLists.clear();
+
+        EmbeddableComponentManager[] currentChildren;
+        synchronized (this.children) {
+            currentChildren = this.children.toArray(new EmbeddableComponentManager[this.children.size()]);
+        }
+        for (EmbeddableComponentManager child : currentChildren) {
+            child.invalidateCaches();
+        }
     }
 
     @Override
     public <T> T getInstance(Type roleType) throws ComponentLookupException
     {
-        return getComponentInstance(new RoleHint<T>(roleType));
+        return getComponentInstance(roleType, DEFAULT_HINT);
     }
 
     @Override
     public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupException
     {
-        return getComponentInstance(new RoleHint<T>(roleType, roleHint));
+        return getComponentInstance(roleType, roleHint != null ? roleHint : DEFAULT_HINT);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned list can't be modified when all the components implementing the role are singletons, in which case
+     * the same list is returned until a component is registered or unregistered.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public <T> List<T> getInstanceList(Type role) throws ComponentLookupException
     {
+        List<T> snapshot = (List<T>) this.instanceLists.get(role);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        long version = this.cachesVersion.get();
+
         // Reuse getInstanceMap to make sure to not return components from parent Component Manager overridden by this
         // Component Manager
         Map<String, T> objects = getInstanceMap(role);
 
-        return objects.isEmpty() ? Collections.<T>emptyList() : new ArrayList<T>(objects.values());
+        if (objects.isEmpty()) {
+            return Collections.<T>emptyList();
+        }
+
+        if (objects == this.instanceMaps.get(role)) {
+            snapshot = Collections.unmodifiableList(new ArrayList<T>(objects.values()));
+            this.instanceLists.put(role, snapshot);
+
+            // Forget it if a component has been registered or unregistered in the meantime
+            if (this.cachesVersion.get() != version) {
+                this.instanceLists.remove(role, snapshot);
+            }
+
+            return snapshot;
+        }
+
+        return new ArrayList<T>(objects.values());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned map can't be modified when all the components implementing the role are singletons, in which case
+     * the same map is returned until a component is registered or unregistered.
+     */
     @Override
     @SuppressWarnings("unchecked")
     public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupException
     {
-        Map<String, T> objects = new HashMap<>();
+        Map<String, T> snapshot = (Map<String, T>) this.instanceMaps.get(role);
+        if (snapshot != null) {
+            return snapshot;
+        }
 
-        for (Map.Entry<RoleHint<?>, ComponentEntry<?>> entry : this.componentEntries.entrySet()) {
-            RoleHint<?> roleHint = entry.getKey();
+        long version = this.cachesVersion.get();
 
-            if (role.equals(roleHint.getRoleType())) {
-                try {
-                    objects.put(roleHint.getHint(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
-                } catch (Exception e) {
-                    throw new ComponentLookupException("Failed to lookup component [" + roleHint + "]", e);
-                }
+        Map<String, T> objects = new HashMap<>();
+
+        for (Map.Entry<String, ComponentEntry<?>> entry : getRoleEntries(role).entrySet()) {
+            try {
+                objects.put(entry.getKey(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
+            } catch (Exception e) {
+                throw new ComponentLookupException("Failed to lookup component [" + new RoleHint<>(role,
+                    entry.getKey()) + "]", e);
             }
         }
 
@@ -228,15 +598,46 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
             }
         }
 
+        if (this.cachesEnabled && isSingletonRole(role)) {
+            snapshot = Collections.unmodifiableMap(objects);
+            this.instanceMaps.put(role, snapshot);
+
+            // Forget it if a component has been registered or unregistered in the meantime
+            if (this.cachesVersion.get() != version) {
+                this.instanceMaps.remove(role, snapshot);
+            }
+
+            return snapshot;
+        }
+
         return objects;
     }
 
+    /**
+     * @param role the role type
+     * @return true if all the components implementing the passed role in this component manager and its ancestors are
+     *         singletons
+     */
+    private boolean isSingletonRole(Type role)
+    {
+        for (ComponentEntry<?> componentEntry : getRoleEntries(role).values()) {
+            if (componentEntry.descriptor.getInstantiationStrategy() != ComponentInstantiationStrategy.SINGLETON) {
+                return false;
+            }
+        }
+
+        ComponentManager currentParent = getParent();
+
+        return currentParent == null || (currentParent instanceof EmbeddableComponentManager
+            && ((EmbeddableComponentManager) currentParent).isSingletonRole(role));
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
     {
         ComponentDescriptor<T> result = null;
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(new RoleHint<T>(role, hint));
+        ComponentEntry<T> componentEntry = (ComponentEntry<T>) getEntry(role, hint != null ? hint : DEFAULT_HINT);
         if (componentEntry == null) {
             // Check in parent!
             if (getParent() != null) {
@@ -255,10 +656,8 @@ public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
     {
         Map<String, ComponentDescriptor<T>> descriptors = new HashMap<>();
 
-        for (Map.Entry<RoleHint<?>, ComponentEntry<?>> entry : this.componentEntries.entrySet()) {
-            if (entry.getKey().getRoleType().equals(role)) {
-                descriptors.put(entry.getKey().getHint(), (ComponentDescriptor<T>) entry.getValue().descriptor);
-            }
+        for (Map.Entry<String, ComponentEntry<?>> entry : getRoleEntries(role).entrySet()) {
+            descriptors.put(entry.getKey(), (ComponentDescriptor<T>) entry.getValue().descriptor);
         }
 
         // Add Component Descriptors found in parent first
@@ -275,6 +674,17 @@ public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
         return new ArrayList<>(descriptors.values());
     }
 
+    /**
+     * @param role the role type
+     * @return the components registered in this component manager for the passed role, indexed by hint
+     */
+    private Map<String, ComponentEntry<?>> getRoleEntries(Type role)
+    {
+        Map<String, ComponentEntry<?>> entries = this.roleEntries.get(role);
+
+        return entries != null ? entries : Collections.<String, ComponentEntry<?>>emptyMap();
+    }
+
     @Override
     public ComponentEventManager getComponentEventManager()
     {
@@ -296,17 +706,52 @@ public ComponentManager getParent()
     @Override
     public void setParent(ComponentManager parentComponentManager)
     {
+        if (this.parent instanceof EmbeddableComponentManager) {
+            ((EmbeddableComponentManager) this.parent).children.remove(this);
+        }
+
         this.parent = parentComponentManager;
+
+        if (parentComponentManager instanceof EmbeddableComponentManager) {
+            EmbeddableComponentManager parentEmbeddableComponentManager =
+                (EmbeddableComponentManager) parentComponentManager;
+
+            parentEmbeddableComponentManager.children.add(this);
+
+            // Collect the statistics of the whole hierarchy in the same place
+            if (parentEmbeddableComponentManager.statistics != null) {
+                this.statistics = parentEmbeddableComponentManager.statistics;
+            }
+        }
+
+        invalidateCaches();
     }
 
-    private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
+    private <T> ComponentInjectionPlan getInjectionPlan(ComponentEntry<T> componentEntry)
     {
+        ComponentInjectionPlan plan = componentEntry.injectionPlan;
+
+        if (plan == null) {
+            // Computing it twice in case of concurrent instantiations is harmless
+            plan = new ComponentInjectionPlan(componentEntry.descriptor);
+            componentEntry.injectionPlan = plan;
+        }
+
+        return plan;
+    }
+
+    private <T> T createInstance(ComponentEntry<T> componentEntry) throws Exception
+    {
+        ComponentDescriptor<T> descriptor = componentEntry.descriptor;
+
+        DefaultComponentManagerStatistics currentStatistics = this.statistics;
+        long start = currentStatistics != null ? System.nanoTime() : 0;
+
         T instance = descriptor.getImplementation().newInstance();
 
         // Set each dependency
-        for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
-
-            // TODO: Handle dependency cycles
+        for (ComponentInjectionPlan.DependencyInjection injection : getInjectionPlan(componentEntry).getInjections()) {
+            ComponentDependency<?> dependency = injection.getDependency();
 
             // Handle different field types
             Object fieldValue;
@@ -320,41 +765,53 @@ private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
             // Step 3: No producer found, handle scalar and collection types by looking up standard component
             // implementations.
 
-            Class<?> dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
-
-            if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
-                fieldValue = createLogger(instance.getClass());
-            } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
-                fieldValue = getInstanceList(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
-                fieldValue = getInstanceMap(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
-                // Check if there's a Provider registered for the type
-                if (hasComponent(dependency.getRoleType(), dependency.getRoleHint())) {
+            switch (injection.getKind()) {
+                case LOGGER:
+                    fieldValue = createLogger(instance.getClass());
+                    break;
+                case LIST:
+                    // Each instance gets its own modifiable list
+                    fieldValue = new ArrayList<>(getInstanceList(injection.getGenericArgument()));
+                    break;
+                case MAP:
+                    fieldValue = new HashMap<>(getInstanceMap(injection.getGenericArgument()));
+                    break;
+                case PROVIDER:
+                    // Check if there's a Provider registered for the type
+                    if (hasComponent(dependency.getRoleType(), dependency.getRoleHint())) {
+                        fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                    } else {
+                        fieldValue =
+                            new GenericProvider<>(this, new RoleHint<>(injection.getGenericArgument(),
+                                dependency.getRoleHint()));
+                    }
+                    break;
+                case DESCRIPTOR:
+                    fieldValue = new DefaultComponentDescriptor(descriptor);
+                    break;
+                default:
                     fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
-                } else {
-                    fieldValue =
-                        new GenericProvider<>(this, new RoleHint<>(
-                            ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()),
-                            dependency.getRoleHint()));
-                }
-            } else if (dependencyRoleClass.isAssignableFrom(ComponentDescriptor.class)) {
-                fieldValue = new DefaultComponentDescriptor(descriptor);
-            } else {
-                fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                    break;
             }
 
-            // Set the field by introspection
+            // Set the field using the handle resolved in the injection plan
             if (fieldValue != null) {
-                ReflectionUtils.setFieldValue(instance, dependency.getName(), fieldValue);
+                injection.inject(instance, fieldValue);
             }
         }
 
+        long initializationStart = currentStatistics != null ? System.nanoTime() : 0;
+
         // Call Lifecycle Handlers
         for (LifecycleHandler lifecycleHandler : this.lifecycleHandlers) {
             lifecycleHandler.handle(instance, descriptor, this);
         }
 
+        if (currentStatistics != null) {
+            long end = System.nanoTime();
+            currentStatistics.created(descriptor, end - start, end - initializationStart);
+        }
+
         return instance;
     }
 
@@ -366,25 +823,47 @@ protected Object createLogger(Class<?> instanceClass)
         return LoggerFactory.getLogger(instanceClass);
     }
 
-    @SuppressWarnings("unchecked")
     protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLookupException
+    {
+        return getComponentInstance(roleHint.getRoleType(), roleHint.getHint());
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param hint the hint of the component, not null
+     * @return the component instance
+     * @throws ComponentLookupException when the component can't be found or created
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getComponentInstance(Type roleType, String hint) throws ComponentLookupException
     {
         T instance;
 
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(roleHint);
+        ComponentEntry<T> componentEntry = (ComponentEntry<T>) getEntry(roleType, hint);
+
+        DefaultComponentManagerStatistics currentStatistics = this.statistics;
 
         if (componentEntry != null) {
+            if (currentStatistics != null) {
+                currentStatistics.lookup(this.namespace, roleType, hint);
+            }
+
             try {
                 instance = getComponentInstance(componentEntry);
             } catch (Throwable e) {
                 throw new ComponentLookupException(String.format("Failed to lookup component [%s] identified by [%s]",
-                    componentEntry.descriptor.getImplementation().getName(), roleHint.toString()), e);
+                    componentEntry.descriptor.getImplementation().getName(), new RoleHint<T>(roleType, hint)), e);
             }
         } else {
-            if (getParent() != null) {
-                instance = getParent().getInstance(roleHint.getRoleType(), roleHint.getHint());
+            if (getParent() != null && !isMissing(roleType, hint)) {
+                instance = getParent().getInstance(roleType, hint);
             } else {
-                throw new ComponentLookupException("Can't find descriptor for the component [" + roleHint + "]");
+                if (currentStatistics != null) {
+                    currentStatistics.miss(roleType, hint);
+                }
+
+                throw new ComponentLookupException("Can't find descriptor for the component ["
+                    + new RoleHint<T>(roleType, hint) + "]");
             }
         }
 
@@ -398,27 +877,95 @@ private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exce
         ComponentDescriptor<T> descriptor = componentEntry.descriptor;
 
         if (descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON) {
-            if (componentEntry.instance != null) {
-                // If the instance exists return it
-                instance = componentEntry.instance;
-            } else {
-                synchronized (componentEntry) {
-                    // Recheck in case it has been created while we were waiting
-                    if (componentEntry.instance != null) {
-                        instance = componentEntry.instance;
-                    } else {
-                        componentEntry.instance = createInstance(descriptor);
-                        instance = componentEntry.instance;
-                    }
-                }
+            instance = componentEntry.instance;
+
+            // If the instance exists return it
+            if (instance == null) {
+                instance = getSingletonInstance(componentEntry);
             }
         } else {
-            instance = createInstance(descriptor);
+            instance = createTrackedInstance(componentEntry);
         }
 
         return instance;
     }
 
+    private <T> T getSingletonInstance(final ComponentEntry<T> componentEntry) throws Exception
+    {
+        while (true) {
+            ComponentCreation<T> creation = componentEntry.creation.get();
+
+            if (creation != null) {
+                // Wait for the instance being created (unless it's by the current thread, which means a cycle)
+                if (!creation.isCreatedBy(Thread.currentThread())) {
+                    this.contendedCreations.incrementAndGet();
+                }
+
+                return creation.await(getCreationPath());
+            }
+
+            creation = new ComponentCreation<>(new Callable<T>()
+            {
+                @Override
+                public T call() throws Exception
+                {
+                    T instance = createTrackedInstance(componentEntry);
+                    componentEntry.instance = instance;
+
+                    return instance;
+                }
+            }, componentEntry.toString());
+
+            if (componentEntry.creation.compareAndSet(null, creation)) {
+                try {
+                    // Recheck in case it has been created since the caller checked
+                    T instance = componentEntry.instance;
+                    if (instance != null) {
+                        return instance;
+                    }
+
+                    creation.run();
+
+                    return creation.getInstance();
+                } finally {
+                    componentEntry.creation.compareAndSet(creation, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a new instance and fail if it's already being created by the current thread.
+     */
+    private <T> T createTrackedInstance(ComponentEntry<T> componentEntry) throws Exception
+    {
+        ArrayDeque<ComponentEntry<?>> path = CREATION_PATH.get();
+
+        if (path.contains(componentEntry)) {
+            throw ComponentCreation.createCycleException(getCreationPath(), componentEntry.toString());
+        }
+
+        path.addLast(componentEntry);
+        try {
+            return createInstance(componentEntry);
+        } finally {
+            path.removeLast();
+        }
+    }
+
+    /**
+     * @return the components being created by the current thread
+     */
+    private static Collection<String> getCreationPath()
+    {
+        Collection<String> path = new ArrayList<>();
+        for (ComponentEntry<?> componentEntry : CREATION_PATH.get()) {
+            path.add(componentEntry.toString());
+        }
+
+        return path;
+    }
+
     // Add
 
     private <T> RoleHint<T> getRoleHint(ComponentDescriptor<T> componentDescriptor)
@@ -451,6 +998,21 @@ private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descr
         // Register new component
         this.componentEntries.put(roleHint, componentEntry);
 
+        // Index it by role
+        ConcurrentMap<String, ComponentEntry<?>> entries = this.roleEntries.get(roleHint.getRoleType());
+        if (entries == null) {
+            entries = new ConcurrentHashMap<>();
+            ConcurrentMap<String, ComponentEntry<?>> existingEntries =
+                this.roleEntries.putIfAbsent(roleHint.getRoleType(), entries);
+            if (existingEntries != null) {
+                entries = existingEntries;
+            }
+        }
+        entries.put(roleHint.getHint(), componentEntry);
+
+        // The component might have been remembered as missing, and lists of components have changed
+        invalidateCaches();
+
         // Send event about component registration
         if (this.eventManager != null) {
             this.eventManager.notifyComponentRegistered(descriptor, this);
@@ -511,6 +1073,8 @@ private void releaseInstance(ComponentEntry<?> componentEntry) throws ComponentL
         // Make sure the singleton component instance can't be "lost" (impossible to dispose because returned but not
         // stored).
         synchronized (componentEntry) {
+            waitForCreation(componentEntry);
+
             Object instance = componentEntry.instance;
 
             // Give a chance to the component to clean up
@@ -522,6 +1086,18 @@ private void releaseInstance(ComponentEntry<?> componentEntry) throws ComponentL
         }
     }
 
+    /**
+     * Make sure an instance being created by another thread is not missed.
+     */
+    private void waitForCreation(ComponentEntry<?> componentEntry)
+    {
+        ComponentCreation<?> creation = componentEntry.creation.get();
+
+        if (creation != null && !creation.isCreatedBy(Thread.currentThread())) {
+            creation.awaitTermination();
+        }
+    }
+
     private void releaseComponentEntry(ComponentEntry<?> componentEntry) throws ComponentLifecycleException
     {
         // clean existing instance
@@ -532,7 +1108,7 @@ private void removeComponent(RoleHint<?> roleHint) throws ComponentLifecycleExce
     {
         // Make sure to remove the entry from the map before destroying it to reduce at the minimum the risk of
         // lookupping something invalid
-        ComponentEntry<?> componentEntry = this.componentEntries.remove(roleHint);
+        ComponentEntry<?> componentEntry = removeEntry(roleHint);
 
         if (componentEntry != null) {
             ComponentDescriptor<?> oldDescriptor = componentEntry.descriptor;
@@ -551,6 +1127,29 @@ private void removeComponent(RoleHint<?> roleHint) throws ComponentLifecycleExce
         }
     }
 
+    /**
+     * Remove the entry associated to the passed role and hint from the registry and its role index.
+     *
+     * @param roleHint the role and hint of the component to remove
+     * @return the removed entry or null if none was registered
+     */
+    private ComponentEntry<?> removeEntry(RoleHint<?> roleHint)
+    {
+        ComponentEntry<?> componentEntry = this.componentEntries.remove(roleHint);
+
+        if (componentEntry != null) {
+            ConcurrentMap<String, ComponentEntry<?>> entries = this.roleEntries.get(roleHint.getRoleType());
+            if (entries != null) {
+                // Only remove the entry if it has not been replaced in the meantime
+                entries.remove(roleHint.getHint(), componentEntry);
+            }
+
+            invalidateCaches();
+        }
+
+        return componentEntry;
+    }
+
     /**
      * Note: This method shouldn't exist but register/unregister methods should throw a
      * {@link ComponentLifecycleException} but that would break backward compatibility to add it.
@@ -564,34 +1163,6 @@ private <T> void removeComponentWithoutException(RoleHint<T> roleHint)
         }
     }
 
-    private int sortEntry(List<RoleHint<?>> keys, int index)
-    {
-        int oldIndex = index;
-        int newIndex = index;
-
-        RoleHint<?> key = keys.get(index);
-        ComponentEntry<?> componentEntry = this.componentEntries.get(key);
-
-        for (ComponentDependency<?> dependency : componentEntry.descriptor.getComponentDependencies()) {
-            RoleHint<?> dependencyRole = new RoleHint<Object>(dependency.getRoleType(), dependency.getRoleHint());
-
-            int dependencyIndex = keys.indexOf(dependencyRole);
-
-            if (dependencyIndex != -1 && dependencyIndex < newIndex) {
-                dependencyIndex = sortEntry(keys, dependencyIndex);
-
-                newIndex = dependencyIndex;
-            }
-        }
-
-        if (newIndex != oldIndex) {
-            key = keys.remove(oldIndex);
-            keys.add(newIndex, key);
-        }
-
-        return newIndex;
-    }
-
     @Override
     public void dispose()
     {
@@ -604,59 +1175,48 @@ public void dispose()
             keys.remove(cmRoleHint);
         }
 
-        // Order component based on dependencies relations
-        for (int i = 0; i < keys.size(); ++i) {
-            i = sortEntry(keys, i);
-        }
-
-        // Sort component by DisposePriority
-        Collections.sort(keys, new Comparator<RoleHint<?>>()
-        {
-            @Override
-            public int compare(RoleHint<?> rh1, RoleHint<?> rh2)
-            {
-                return getPriority(rh1) - getPriority(rh2);
-            }
-
-            private int getPriority(RoleHint<?> rh)
-            {
-                Object instance = componentEntries.get(rh).instance;
-                if (instance == null) {
-                    // The component has not been instantiated yet. We don't need to dispose it in this case... :)
-                    // Return the default priority since it doesn't matter.
-                    return DisposePriority.DEFAULT_PRIORITY;
-                } else {
-                    DisposePriority priorityAnnotation = instance.getClass().getAnnotation(DisposePriority.class);
-                    return (priorityAnnotation == null) ? DisposePriority.DEFAULT_PRIORITY : priorityAnnotation.value();
-                }
-            }
-        });
-
-        // Dispose old components
+        List<ComponentEntry<?>> entries = new ArrayList<>(keys.size());
         for (RoleHint<?> key : keys) {
             ComponentEntry<?> componentEntry = this.componentEntries.get(key);
-
-            synchronized (componentEntry) {
-                Object instance = componentEntry.instance;
-
-                if (instance instanceof Disposable) {
-                    try {
-                        SHUTDOWN_LOGGER.debug("Disposing component [{}]...", instance.getClass().getName());
-                        ((Disposable) instance).dispose();
-                        SHUTDOWN_LOGGER.debug("Component [{}] has been disposed", instance.getClass().getName());
-                    } catch (ComponentLifecycleException e) {
-                        this.logger.error("Failed to dispose component with role type [{}] and role hint [{}]",
-                            componentEntry.descriptor.getRoleType(), componentEntry.descriptor.getRoleHint(), e);
-                    }
-                }
+            if (componentEntry != null) {
+                entries.add(componentEntry);
             }
         }
 
+        // Dispose old components
+        new ComponentDisposal(this, this.disposeParallelism, this.disposeTimeout, this.disposeSlowThreshold)
+            .dispose(entries);
+
         // Remove disposed components from the map. Doing it in two steps to give as many chances as possible to the
         // components that have to use a component already disposed (usually because it dynamically requires it and
         // there is no way for the ComponentManager to know that dependency).
         for (RoleHint<?> key : keys) {
-            this.componentEntries.remove(key);
+            removeEntry(key);
+        }
+    }
+
+    /**
+     * Dispose the instance of the passed component, if any.
+     *
+     * @param componentEntry the component to dispose
+     */
+    void disposeEntry(ComponentEntry<?> componentEntry)
+    {
+        synchronized (componentEntry) {
+            waitForCreation(componentEntry);
+
+            Object instance = componentEntry.instance;
+
+            if (instance instanceof Disposable) {
+                try {
+                    SHUTDOWN_LOGGER.debug("Disposing component [{}]...", instance.getClass().getName());
+                    ((Disposable) instance).dispose();
+                    SHUTDOWN_LOGGER.debug("Component [{}] has been disposed", instance.getClass().getName());
+                } catch (ComponentLifecycleException e) {
+                    this.logger.error("Failed to dispose component with role type [{}] and role hint [{}]",
+                        componentEntry.descriptor.getRoleType(), componentEntry.descriptor.getRoleHint(), e);
+                }
+            }
         }
     }
 
@@ -0,0 +1,317 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+
+/**
+ * Component descriptors precomputed at build time by the {@code ComponentCheckerAnnotationProcessor} annotation
+ * processor and stored in {@code META-INF/component-descriptors.txt} files. They allow registering components without
+ * discovering their roles and dependencies by reflection.
+ * <p>
+ * Each line of the index describes one descriptor with space separated fields:
+ * {@code <implementation> <role type> <encoded hint> <instantiation strategy> [<field>[:<encoded hint>]:<type>]*}.
+ * Types are serialized using binary class names and {@code <>} for generic arguments and hints are URL encoded.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class ComponentDescriptorIndex
+{
+    /**
+     * Location in the classloader of the files containing the precomputed component descriptors.
+     */
+    public static final String INDEX_LOCATION = "META-INF/component-descriptors.txt";
+
+    /**
+     * The encoding used to parse and serialize the index.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    private static final String SEPARATOR = " ";
+
+    private static final String DEPENDENCY_SEPARATOR = ":";
+
+    /**
+     * The index lines, by component implementation class name. Lines are only parsed when needed.
+     */
+    private final Map<String, List<String>> lines = new HashMap<>();
+
+    /**
+     * Parse a serialized type.
+     *
+     * @version $Id$
+     */
+    private static final class TypeParser
+    {
+        private final String value;
+
+        private final ClassLoader classLoader;
+
+        private int position;
+
+        TypeParser(String value, ClassLoader classLoader)
+        {
+            this.value = value;
+            this.classLoader = classLoader;
+        }
+
+        Type parse() throws ClassNotFoundException
+        {
+            int start = this.position;
+            while (this.position < this.value.length() && "<>,".indexOf(this.value.charAt(this.position)) == -1) {
+                ++this.position;
+            }
+
+            Class<?> rawType = Class.forName(this.value.substring(start, this.position), false, this.classLoader);
+
+            if (this.position < this.value.length() && this.value.charAt(this.position) == '<') {
+                List<Type> arguments = new ArrayList<>();
+                do {
+                    // Skip '<' or ','
+                    ++this.position;
+                    arguments.add(parse());
+                } while (this.value.charAt(this.position) == ',');
+                // Skip '>'
+                ++this.position;
+
+                // Use the same owner type as the JDK
+                return new DefaultParameterizedType(rawType.getDeclaringClass(), rawType,
+                    arguments.toArray(new Type[arguments.size()]));
+            }
+
+            return rawType;
+        }
+    }
+
+    /**
+     * Load all the indexes available in the passed classloader.
+     *
+     * @param classLoader the classloader to use to find the indexes
+     * @throws IOException when failing to read an index
+     */
+    public void load(ClassLoader classLoader) throws IOException
+    {
+        Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+        while (urls.hasMoreElements()) {
+            try (InputStream stream = urls.nextElement().openStream()) {
+                load(stream);
+            }
+        }
+    }
+
+    /**
+     * @param stream the index content to load
+     * @throws IOException when failing to read the index
+     */
+    public void load(InputStream stream) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream, ENCODING));
+        String line;
+        while ((line = in.readLine()) != null) {
+            add(line);
+        }
+    }
+
+    /**
+     * @param line an index line, as produced by {@link #serialize(ComponentDescriptor)}
+     * @since 6.4M3
+     */
+    public void add(String line)
+    {
+        int index = line.indexOf(SEPARATOR);
+        if (index > 0) {
+            String implementation = line.substring(0, index);
+            List<String> implementationLines = this.lines.get(implementation);
+            if (implementationLines == null) {
+                implementationLines = new ArrayList<>();
+                this.lines.put(implementation, implementationLines);
+            }
+            implementationLines.add(line);
+        }
+    }
+
+    /**
+     * @param implementationClassName the name of the component implementation class
+     * @return the index lines of the passed component implementation, or null if it's not indexed
+     * @since 6.4M3
+     */
+    public List<String> getLines(String implementationClassName)
+    {
+        return this.lines.get(implementationClassName);
+    }
+
+    /**
+     * Serialize a component descriptor in the index format.
+     *
+     * @param descriptor the descriptor to serialize
+     * @return the index line, or null if the descriptor can't be represented in the index (e.g. its types contain
+     *         wildcards or it has custom dependencies)
+     * @throws IOException when failing to encode the hints
+     * @since 6.4M3
+     */
+    public static String serialize(ComponentDescriptor<?> descriptor) throws IOException
+    {
+        if (descriptor.getClass() != DefaultComponentDescriptor.class) {
+            return null;
+        }
+
+        StringBuilder line = new StringBuilder();
+
+        line.append(descriptor.getImplementation().getName());
+        line.append(SEPARATOR);
+        if (!serialize(descriptor.getRoleType(), line)) {
+            return null;
+        }
+        line.append(SEPARATOR);
+        line.append(URLEncoder.encode(descriptor.getRoleHint(), ENCODING));
+        line.append(SEPARATOR);
+        line.append(descriptor.getInstantiationStrategy().name());
+
+        for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+            if (dependency.getClass() != DefaultComponentDependency.class || dependency.getName() == null) {
+                return null;
+            }
+
+            line.append(SEPARATOR);
+            line.append(dependency.getName());
+            line.append(DEPENDENCY_SEPARATOR);
+            if (dependency.getRoleHint() != null) {
+                line.append(URLEncoder.encode(dependency.getRoleHint(), ENCODING));
+                line.append(DEPENDENCY_SEPARATOR);
+            }
+            if (!serialize(dependency.getRoleType(), line)) {
+                return null;
+            }
+        }
+
+        return line.toString();
+    }
+
+    private static boolean serialize(Type type, StringBuilder line)
+    {
+        if (type instanceof Class) {
+            line.append(((Class<?>) type).getName());
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+
+            line.append(((Class<?>) parameterizedType.getRawType()).getName());
+            line.append('<');
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            for (int i = 0; i < arguments.length; ++i) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                if (!serialize(arguments[i], line)) {
+                    return false;
+                }
+            }
+            line.append('>');
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param implementationClassName the name of the component implementation class
+     * @return true if the index contains the descriptors of the passed component implementation
+     */
+    public boolean contains(String implementationClassName)
+    {
+        return this.lines.containsKey(implementationClassName);
+    }
+
+    /**
+     * @param componentClass the component implementation class
+     * @return the precomputed descriptors of the passed component implementation, or null if it's not indexed
+     * @throws ClassNotFoundException when a role or dependency type can't be found
+     * @throws IOException when the index is invalid
+     */
+    public List<ComponentDescriptor<?>> getComponentDescriptors(Class<?> componentClass)
+        throws ClassNotFoundException, IOException
+    {
+        List<String> implementationLines = this.lines.get(componentClass.getName());
+        if (implementationLines == null) {
+            return null;
+        }
+
+        List<ComponentDescriptor<?>> descriptors = new ArrayList<>(implementationLines.size());
+        for (String line : implementationLines) {
+            descriptors.add(parseDescriptor(line, componentClass));
+        }
+
+        return descriptors;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private ComponentDescriptor<?> parseDescriptor(String line, Class<?> componentClass)
+        throws ClassNotFoundException, IOException
+    {
+        String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length < 4) {
+            throw new IOException("Invalid component descriptor index line [" + line + "]");
+        }
+
+        ClassLoader classLoader = componentClass.getClassLoader();
+
+        DefaultComponentDescriptor descriptor = new DefaultComponentDescriptor();
+        descriptor.setImplementation(componentClass);
+        descriptor.setRoleType(new TypeParser(fields[1], classLoader).parse());
+        descriptor.setRoleHint(URLDecoder.decode(fields[2], ENCODING));
+        descriptor.setInstantiationStrategy(ComponentInstantiationStrategy.valueOf(fields[3]));
+
+        for (int i = 4; i < fields.length; ++i) {
+            String[] dependencyFields = fields[i].split(DEPENDENCY_SEPARATOR, -1);
+
+            DefaultComponentDependency dependency = new DefaultComponentDependency();
+            dependency.setName(dependencyFields[0]);
+            if (dependencyFields.length > 2) {
+                dependency.setRoleHint(URLDecoder.decode(dependencyFields[1], ENCODING));
+            }
+            dependency.setRoleType(new TypeParser(dependencyFields[dependencyFields.length - 1], classLoader).parse());
+
+            descriptor.addComponentDependency(dependency);
+        }
+
+        return descriptor;
+    }
+}
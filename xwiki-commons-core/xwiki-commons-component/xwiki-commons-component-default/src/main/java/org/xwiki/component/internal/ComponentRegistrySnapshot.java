@@ -0,0 +1,459 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLClassLoader;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of the component declarations and resolved component descriptors found in each jar of the classpath,
+ * stored on disk to avoid parsing the component lists and discovering the component descriptors by introspection at
+ * each restart. Only the jars which changed since the snapshot was taken (size or modification date) need to be
+ * scanned again.
+ * <p>
+ * A component descriptor also depends on the classes of other jars (role interfaces, super classes, dependency
+ * types), so the stored descriptors are only valid as long as none of the jars of the classpath changed, see
+ * {@link #getClasspathStamp(ClassLoader)}.
+ * <p>
+ * The snapshot is a text file containing one line per information, starting with its type:
+ * <ul>
+ * <li>{@code fingerprint <hash>}: the hash of the locations and stamps of all the sources, used to know if the
+ * snapshot needs to be written again</li>
+ * <li>{@code classpath <hash>}: the hash of the locations and stamps of all the jars of the classpath when the
+ * descriptors were resolved</li>
+ * <li>{@code source <encoded location> <stamp>}: a jar containing components, followed by its information</li>
+ * <li>{@code component <line>}: a line of the source {@code META-INF/components.txt} file</li>
+ * <li>{@code override <line>}: a line of the source {@code META-INF/component-overrides.txt} file</li>
+ * <li>{@code descriptor <line>}: a resolved component descriptor in the {@link ComponentDescriptorIndex} format</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class ComponentRegistrySnapshot
+{
+    /**
+     * The location of the snapshot file, relative to the permanent directory.
+     */
+    public static final String LOCATION = "cache/components/registry.txt";
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final String SEPARATOR = " ";
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private static final String CLASSPATH = "classpath";
+
+    private static final String SOURCE = "source";
+
+    private static final String COMPONENT = "component";
+
+    private static final String OVERRIDE = "override";
+
+    private static final String DESCRIPTOR = "descriptor";
+
+    private static final String JAR_FILE_PROTOCOL = "file";
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    /**
+     * The information stored for a jar.
+     *
+     * @version $Id$
+     */
+    public static final class Source
+    {
+        private final String location;
+
+        private final String stamp;
+
+        private final List<String> components = new ArrayList<>();
+
+        private final List<String> overrides = new ArrayList<>();
+
+        private final List<String> descriptors = new ArrayList<>();
+
+        /**
+         * @param location the location of the jar
+         * @param stamp the size and modification date of the jar, see {@link ComponentRegistrySnapshot#getStamp(URL)}
+         */
+        public Source(String location, String stamp)
+        {
+            this.location = location;
+            this.stamp = stamp;
+        }
+
+        /**
+         * @return the location of the jar
+         */
+        public String getLocation()
+        {
+            return this.location;
+        }
+
+        /**
+         * @return the size and modification date of the jar
+         */
+        public String getStamp()
+        {
+            return this.stamp;
+        }
+
+        /**
+         * @return the lines of the {@code META-INF/components.txt} file of the jar
+         */
+        public List<String> getComponents()
+        {
+            return this.components;
+        }
+
+        /**
+         * @return the lines of the {@code META-INF/component-overrides.txt} file of the jar
+         */
+        public List<String> getOverrides()
+        {
+            return this.overrides;
+        }
+
+        /**
+         * @return the resolved component descriptors of the components declared in the jar, in the
+         *         {@link ComponentDescriptorIndex} format
+         */
+        public List<String> getDescriptors()
+        {
+            return this.descriptors;
+        }
+    }
+
+    private final File file;
+
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+
+    private String fingerprint;
+
+    private String classpath;
+
+    /**
+     * @param file the file where the snapshot is stored
+     */
+    public ComponentRegistrySnapshot(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @param url the location of a resource
+     * @return the location of the jar containing the resource and its stamp (size and modification date), or null if
+     *         the resource is not located in a jar file (in which case its content can't be cached)
+     */
+    public static String[] getStamp(URL url)
+    {
+        if (!"jar".equals(url.getProtocol())) {
+            return null;
+        }
+
+        try {
+            URL jarURL = ((JarURLConnection) url.openConnection()).getJarFileURL();
+            if (!JAR_FILE_PROTOCOL.equals(jarURL.getProtocol())) {
+                return null;
+            }
+
+            File jarFile = new File(jarURL.toURI());
+            if (!jarFile.isFile()) {
+                return null;
+            }
+
+            return new String[] {jarURL.toString(), jarFile.length() + "-" + jarFile.lastModified()};
+        } catch (IOException | URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param classLoader the class loader used to load the component classes
+     * @return the hash of the locations and stamps of all the jars which can be seen by the passed class loader, or
+     *         null if some class loaders don't expose their jars (in which case the resolved descriptors can't be
+     *         reused); directories are ignored
+     */
+    public static String getClasspathStamp(ClassLoader classLoader)
+    {
+        ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+
+        List<String> locations = new ArrayList<>();
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (current == systemClassLoader) {
+                // Not necessarily a URLClassLoader but its jars are listed in the java.class.path system property
+                for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    locations.add(path);
+                }
+                break;
+            } else if (current instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) current).getURLs()) {
+                    if (!JAR_FILE_PROTOCOL.equals(url.getProtocol())) {
+                        return null;
+                    }
+                    try {
+                        locations.add(new File(url.toURI()).getPath());
+                    } catch (URISyntaxException | IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+            } else {
+                return null;
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            for (String location : locations) {
+                File jarFile = new File(location);
+                if (jarFile.isFile()) {
+                    digest.update((location + SEPARATOR + jarFile.length() + '-' + jarFile.lastModified() + '\n')
+                        .getBytes(ENCODING));
+                }
+            }
+
+            return new BigInteger(1, digest.digest()).toString(16);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Should never happen since SHA-1 and UTF-8 are always available
+            throw new RuntimeException("Failed to compute the classpath stamp", e);
+        }
+    }
+
+    /**
+     * Load the snapshot from the file, if it exists.
+     *
+     * @throws IOException when failing to read the snapshot
+     */
+    public void load() throws IOException
+    {
+        if (!this.file.isFile()) {
+            return;
+        }
+
+        try (InputStream stream = new FileInputStream(this.file)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(stream, ENCODING));
+            Source source = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                int index = line.indexOf(SEPARATOR);
+                if (index < 0) {
+                    continue;
+                }
+
+                String type = line.substring(0, index);
+                String value = line.substring(index + 1);
+                if (type.equals(FINGERPRINT)) {
+                    this.fingerprint = value;
+                } else if (type.equals(CLASSPATH)) {
+                    this.classpath = value;
+                } else if (type.equals(SOURCE)) {
+                    String[] fields = value.split(SEPARATOR);
+                    if (fields.length != 2) {
+                        throw new IOException("Invalid component registry snapshot line [" + line + "]");
+                    }
+                    source = new Source(URLDecoder.decode(fields[0], ENCODING), fields[1]);
+                    this.sources.put(source.getLocation(), source);
+                } else if (source != null) {
+                    addLine(source, type, value);
+                }
+            }
+        }
+    }
+
+    private void addLine(Source source, String type, String value)
+    {
+        if (type.equals(COMPONENT)) {
+            source.getComponents().add(value);
+        } else if (type.equals(OVERRIDE)) {
+            source.getOverrides().add(value);
+        } else if (type.equals(DESCRIPTOR)) {
+            source.getDescriptors().add(value);
+        }
+    }
+
+    /**
+     * @param location the location of a jar
+     * @param stamp the current stamp of the jar
+     * @return the information stored for the jar, or null if it's not in the snapshot or if it changed since the
+     *         snapshot was taken
+     */
+    public Source getSource(String location, String stamp)
+    {
+        Source source = this.sources.get(location);
+
+        return source != null && source.getStamp().equals(stamp) ? source : null;
+    }
+
+    /**
+     * @return the information stored for all the jars of the snapshot
+     */
+    public Collection<Source> getSources()
+    {
+        return this.sources.values();
+    }
+
+    /**
+     * @return the stamp of the classpath used to resolve the stored descriptors, see
+     *         {@link #getClasspathStamp(ClassLoader)}
+     */
+    public String getClasspath()
+    {
+        return this.classpath;
+    }
+
+    /**
+     * @param classpath the stamp of the classpath used to resolve the stored descriptors
+     */
+    public void setClasspath(String classpath)
+    {
+        this.classpath = classpath;
+    }
+
+    /**
+     * @param source the information of a jar to store in the snapshot
+     */
+    public void addSource(Source source)
+    {
+        this.sources.put(source.getLocation(), source);
+    }
+
+    /**
+     * @return the hash of the classpath stamp and of the locations and stamps of all the jars in the snapshot
+     */
+    public String getFingerprint()
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            digest.update(String.valueOf(this.classpath).getBytes(ENCODING));
+            for (Source source : this.sources.values()) {
+                digest.update((source.getLocation() + SEPARATOR + source.getStamp() + '\n').getBytes(ENCODING));
+            }
+
+            return new BigInteger(1, digest.digest()).toString(16);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Should never happen since SHA-1 and UTF-8 are always available
+            throw new RuntimeException("Failed to compute the component registry fingerprint", e);
+        }
+    }
+
+    /**
+     * @param previous the snapshot previously stored
+     * @return true if this snapshot contains the same jars as the passed snapshot
+     */
+    public boolean isSameAs(ComponentRegistrySnapshot previous)
+    {
+        return getFingerprint().equals(previous.fingerprint);
+    }
+
+    /**
+     * Write the snapshot to the file.
+     *
+     * @throws IOException when failing to write the snapshot
+     */
+    public void save() throws IOException
+    {
+        File directory = this.file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Failed to create directory [" + directory + "]");
+        }
+
+        // Write to a temporary file first to never leave a partial snapshot
+        File temporaryFile = new File(this.file.getPath() + ".tmp");
+        try (Writer writer =
+            new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporaryFile), ENCODING))) {
+            writeLine(writer, FINGERPRINT, getFingerprint());
+            if (this.classpath != null) {
+                writeLine(writer, CLASSPATH, this.classpath);
+            }
+            for (Source source : this.sources.values()) {
+                writeLine(writer, SOURCE, URLEncoder.encode(source.getLocation(), ENCODING) + SEPARATOR
+                    + source.getStamp());
+                writeLines(writer, COMPONENT, source.getComponents());
+                writeLines(writer, OVERRIDE, source.getOverrides());
+                writeLines(writer, DESCRIPTOR, source.getDescriptors());
+            }
+        }
+
+        if (this.file.exists() && !this.file.delete() || !temporaryFile.renameTo(this.file)) {
+            throw new IOException("Failed to move [" + temporaryFile + "] to [" + this.file + "]");
+        }
+    }
+
+    private void writeLines(Writer writer, String type, List<String> values) throws IOException
+    {
+        for (String value : values) {
+            writeLine(writer, type, value);
+        }
+    }
+
+    private void writeLine(Writer writer, String type, String value) throws IOException
+    {
+        writer.write(type);
+        writer.write(SEPARATOR);
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    /**
+     * @return the resolved component descriptors of all the jars in the snapshot, by implementation class name
+     */
+    public Map<String, List<String>> getDescriptors()
+    {
+        Map<String, List<String>> descriptors = new HashMap<>();
+        for (Source source : this.sources.values()) {
+            for (String line : source.getDescriptors()) {
+                String implementation = line.substring(0, line.indexOf(SEPARATOR));
+                List<String> lines = descriptors.get(implementation);
+                if (lines == null) {
+                    lines = new ArrayList<>();
+                    descriptors.put(implementation, lines);
+                }
+                lines.add(line);
+            }
+        }
+
+        return descriptors;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Eagerly create singleton components instead of waiting for their first lookup. Dependencies are created before the
+ * components requiring them and independent parts of the dependency graph are created in parallel.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class ComponentWarmUp
+{
+    /**
+     * The value to use to warm up all the singleton components.
+     */
+    public static final String ALL = "*";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentWarmUp.class);
+
+    private static final String SELECTION_SEPARATOR = ",";
+
+    private static final String HINT_SEPARATOR = ":";
+
+    private final ComponentManager componentManager;
+
+    private final int parallelism;
+
+    /**
+     * The time spent to create each component instance, in nanoseconds.
+     */
+    private final Map<ComponentDescriptor<?>, Long> initializationTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Create worker threads with the same context classloader as the thread which created the components.
+     *
+     * @version $Id$
+     */
+    private static final class WorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory
+    {
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setContextClassLoader(this.contextClassLoader);
+
+            return thread;
+        }
+    }
+
+    /**
+     * A component to warm up and the components it depends on.
+     *
+     * @version $Id$
+     */
+    private final class Node extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final ComponentDescriptor<?> descriptor;
+
+        private final List<Node> dependencies = new ArrayList<>();
+
+        Node(ComponentDescriptor<?> descriptor)
+        {
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        protected void compute()
+        {
+            // The graph is acyclic so waiting for the dependencies can't dead lock
+            for (Node dependency : this.dependencies) {
+                dependency.join();
+            }
+
+            if (this.descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON) {
+                createInstance(this.descriptor);
+            }
+        }
+    }
+
+    /**
+     * Execute all the nodes and wait for them.
+     *
+     * @version $Id$
+     */
+    private static final class Graph extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Collection<Node> nodes;
+
+        Graph(Collection<Node> nodes)
+        {
+            this.nodes = nodes;
+        }
+
+        @Override
+        protected void compute()
+        {
+            for (Node node : this.nodes) {
+                node.fork();
+            }
+            for (Node node : this.nodes) {
+                node.join();
+            }
+        }
+    }
+
+    /**
+     * @param componentManager the component manager where the components are registered
+     * @param parallelism the maximum number of components to create at the same time
+     */
+    public ComponentWarmUp(ComponentManager componentManager, int parallelism)
+    {
+        this.componentManager = componentManager;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param descriptors the registered components
+     * @param selection the components to warm up: {@link #ALL} or a comma separated list of role class names,
+     *            optionally followed by {@code :<hint>}
+     * @return the time spent to create each component instance, in nanoseconds
+     */
+    public Map<ComponentDescriptor<?>, Long> warmUp(Collection<ComponentDescriptor<?>> descriptors, String selection)
+    {
+        Map<RoleHint<?>, ComponentDescriptor<?>> descriptorsByRoleHint = new LinkedHashMap<>();
+        Map<Type, List<ComponentDescriptor<?>>> descriptorsByRole = new HashMap<>();
+        for (ComponentDescriptor<?> descriptor : descriptors) {
+            descriptorsByRoleHint.put(new RoleHint<>(descriptor.getRoleType(), descriptor.getRoleHint()), descriptor);
+            List<ComponentDescriptor<?>> roleDescriptors = descriptorsByRole.get(descriptor.getRoleType());
+            if (roleDescriptors == null) {
+                roleDescriptors = new ArrayList<>();
+                descriptorsByRole.put(descriptor.getRoleType(), roleDescriptors);
+            }
+            roleDescriptors.add(descriptor);
+        }
+
+        // Build the dependency graph of the selected components
+        Map<ComponentDescriptor<?>, Node> nodes = new LinkedHashMap<>();
+        Set<ComponentDescriptor<?>> visiting = new HashSet<>();
+        for (ComponentDescriptor<?> descriptor : descriptorsByRoleHint.values()) {
+            if (descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON
+                && isSelected(descriptor, selection)) {
+                getNode(descriptor, nodes, visiting, descriptorsByRoleHint, descriptorsByRole);
+            }
+        }
+
+        long start = System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism, new WorkerThreadFactory(), null, false);
+        try {
+            pool.invoke(new Graph(nodes.values()));
+        } finally {
+            pool.shutdown();
+        }
+
+        LOGGER.info("Created [{}] singleton components in [{}] ms", this.initializationTimes.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        return Collections.unmodifiableMap(this.initializationTimes);
+    }
+
+    private boolean isSelected(ComponentDescriptor<?> descriptor, String selection)
+    {
+        String roleName = ReflectionUtils.getTypeClass(descriptor.getRoleType()).getName();
+
+        for (String element : selection.split(SELECTION_SEPARATOR)) {
+            String selected = element.trim();
+            if (selected.equals(ALL) || selected.equals(roleName)
+                || selected.equals(roleName + HINT_SEPARATOR + descriptor.getRoleHint())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Node getNode(ComponentDescriptor<?> descriptor, Map<ComponentDescriptor<?>, Node> nodes,
+        Set<ComponentDescriptor<?>> visiting, Map<RoleHint<?>, ComponentDescriptor<?>> descriptorsByRoleHint,
+        Map<Type, List<ComponentDescriptor<?>>> descriptorsByRole)
+    {
+        Node node = nodes.get(descriptor);
+
+        if (node == null) {
+            node = new Node(descriptor);
+
+            visiting.add(descriptor);
+            for (ComponentDependency<?> dependency : descriptor.getComponentDependencies()) {
+                for (ComponentDescriptor<?> dependencyDescriptor : getDependencyDescriptors(dependency,
+                    descriptorsByRoleHint, descriptorsByRole)) {
+                    if (visiting.contains(dependencyDescriptor)) {
+                        // Don't wait for a component which is waiting for this one, the component manager will deal
+                        // with the cycle (or fail) when the instance is created
+                        LOGGER.debug("Ignoring dependency cycle between components [{}] and [{}]",
+                            descriptor.getImplementation(), dependencyDescriptor.getImplementation());
+                    } else {
+                        node.dependencies.add(getNode(dependencyDescriptor, nodes, visiting, descriptorsByRoleHint,
+                            descriptorsByRole));
+                    }
+                }
+            }
+            visiting.remove(descriptor);
+
+            nodes.put(descriptor, node);
+        }
+
+        return node;
+    }
+
+    /**
+     * @return the registered components which are going to be created when injecting the passed dependency
+     */
+    private Collection<ComponentDescriptor<?>> getDependencyDescriptors(ComponentDependency<?> dependency,
+        Map<RoleHint<?>, ComponentDescriptor<?>> descriptorsByRoleHint,
+        Map<Type, List<ComponentDescriptor<?>>> descriptorsByRole)
+    {
+        Class<?> dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+
+        Collection<ComponentDescriptor<?>> dependencyDescriptors;
+        if (dependencyRoleClass.isAssignableFrom(List.class) || dependencyRoleClass.isAssignableFrom(Map.class)) {
+            // All the components implementing the role are injected
+            dependencyDescriptors =
+                descriptorsByRole.get(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
+        } else {
+            // Note that a Provider is only created if it's registered as a component, a generic provider doesn't
+            // create anything until it's used
+            ComponentDescriptor<?> dependencyDescriptor = descriptorsByRoleHint.get(new RoleHint<>(dependency
+                .getRoleType(), dependency.getRoleHint()));
+            dependencyDescriptors =
+                dependencyDescriptor != null ? Collections.<ComponentDescriptor<?>>singletonList(dependencyDescriptor)
+                    : null;
+        }
+
+        return dependencyDescriptors != null ? dependencyDescriptors : Collections.<ComponentDescriptor<?>>emptyList();
+    }
+
+    private void createInstance(ComponentDescriptor<?> descriptor)
+    {
+        long start = System.nanoTime();
+
+        try {
+            this.componentManager.getInstance(descriptor.getRoleType(), descriptor.getRoleHint());
+        } catch (Exception e) {
+            // Don't prevent the application from starting, the error will happen again at the first lookup
+            LOGGER.warn("Failed to create component [{}] with hint [{}]: [{}]", descriptor.getRoleType(),
+                descriptor.getRoleHint(), e.getMessage());
+
+            return;
+        }
+
+        long time = System.nanoTime() - start;
+        this.initializationTimes.put(descriptor, time);
+
+        LOGGER.debug("Created component [{}] with hint [{}] in [{}] ms", descriptor.getRoleType(),
+            descriptor.getRoleHint(), TimeUnit.NANOSECONDS.toMillis(time));
+    }
+}
@@ -20,13 +20,25 @@
 package org.xwiki.component.embed;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.DisposePriority;
@@ -38,6 +50,7 @@
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerStatistics;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
@@ -306,6 +319,56 @@ public void testGetInstanceListAndMapWhenSomeComponentsInParent() throws Excepti
         Assert.assertSame(roleImpl, instances.get("default"));
     }
 
+    @Test
+    public void getInstanceListAfterRegistrationChanges() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRoleType(Role.class);
+        cd1.setRoleHint("hint1");
+        cd1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRoleType(Role.class);
+        cd2.setRoleHint("hint2");
+        cd2.setImplementation(OtherRoleImpl.class);
+        ecm.registerComponent(cd2);
+
+        // Register a component with another role to make sure it's not mixed with the Role ones
+        DefaultComponentDescriptor<Object> other = new DefaultComponentDescriptor<Object>();
+        other.setRoleType(Object.class);
+        other.setRoleHint("hint1");
+        other.setImplementation(Object.class);
+        ecm.registerComponent(other);
+
+        Assert.assertEquals(2, ecm.getInstanceList(Role.class).size());
+        Assert.assertEquals(2, ecm.getComponentDescriptorList((Type) Role.class).size());
+
+        ecm.unregisterComponent(Role.class, "hint1");
+
+        Map<String, Role> instances = ecm.getInstanceMap(Role.class);
+        Assert.assertEquals(1, instances.size());
+        Assert.assertSame(OtherRoleImpl.class, instances.get("hint2").getClass());
+
+        // Override the remaining component
+        DefaultComponentDescriptor<Role> cd3 = new DefaultComponentDescriptor<Role>();
+        cd3.setRoleType(Role.class);
+        cd3.setRoleHint("hint2");
+        cd3.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd3);
+
+        instances = ecm.getInstanceMap(Role.class);
+        Assert.assertEquals(1, instances.size());
+        Assert.assertSame(RoleImpl.class, instances.get("hint2").getClass());
+
+        ecm.dispose();
+
+        Assert.assertTrue(ecm.getInstanceList(Role.class).isEmpty());
+        Assert.assertTrue(ecm.getComponentDescriptorList((Type) Role.class).isEmpty());
+    }
+
     @Test
     public void testHasComponent() throws Exception
     {
@@ -368,6 +431,36 @@ private ComponentManager createParentComponentManager(String hint) throws Except
         return parent;
     }
 
+    public static class PerLookupLoggingRoleImpl extends LoggingRoleImpl
+    {
+    }
+
+    @Test
+    public void getPerLookupInstancesWithInheritedDependency() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> d = new DefaultComponentDescriptor<Role>();
+        d.setRoleType(Role.class);
+        d.setImplementation(PerLookupLoggingRoleImpl.class);
+        d.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+
+        DefaultComponentDependency dependencyDescriptor = new DefaultComponentDependency();
+        dependencyDescriptor.setMappingType(Logger.class);
+        dependencyDescriptor.setName("logger");
+
+        d.addComponentDependency(dependencyDescriptor);
+        ecm.registerComponent(d);
+
+        // The injection plan is computed during the first lookup and reused for the following ones
+        PerLookupLoggingRoleImpl impl1 = ecm.getInstance(Role.class);
+        PerLookupLoggingRoleImpl impl2 = ecm.getInstance(Role.class);
+
+        Assert.assertNotSame(impl1, impl2);
+        Assert.assertNotNull(impl1.getLogger());
+        Assert.assertNotNull(impl2.getLogger());
+    }
+
     @Test
     public void testRegisterInitializableComponent() throws Exception
     {
@@ -567,6 +660,195 @@ public void testDispose() throws Exception
         Assert.assertEquals("DisposableWithPriorityRoleImpl", lastDisposedComponent);
     }
 
+    public static class DisposableDependentRoleImpl implements Role, Disposable
+    {
+        private static final List<Object> DISPOSED = new CopyOnWriteArrayList<>();
+
+        private Role dependency;
+
+        @Override
+        public void dispose() throws ComponentLifecycleException
+        {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            DISPOSED.add(this);
+        }
+    }
+
+    @Test
+    public void disposeDependentsBeforeDependencies() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setDisposeParallelism(4);
+
+        // Each component depends on the previous one
+        List<Object> instances = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+            cd.setRoleType(Role.class);
+            cd.setRoleHint("component" + i);
+            cd.setImplementation(DisposableDependentRoleImpl.class);
+            if (i > 0) {
+                DefaultComponentDependency<Role> dependency = new DefaultComponentDependency<>();
+                dependency.setRoleType(Role.class);
+                dependency.setRoleHint("component" + (i - 1));
+                dependency.setName("dependency");
+                cd.addComponentDependency(dependency);
+            }
+            ecm.registerComponent(cd);
+        }
+        for (int i = 0; i < 8; ++i) {
+            instances.add(0, ecm.getInstance(Role.class, "component" + i));
+        }
+
+        DisposableDependentRoleImpl.DISPOSED.clear();
+
+        ecm.dispose();
+
+        Assert.assertEquals(instances, DisposableDependentRoleImpl.DISPOSED);
+    }
+
+    public static class BlockingDisposableRoleImpl implements Role, Disposable
+    {
+        private static final CountDownLatch RELEASED = new CountDownLatch(1);
+
+        @Override
+        public void dispose() throws ComponentLifecycleException
+        {
+            try {
+                RELEASED.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    public void disposeWithTimeout() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setDisposeParallelism(2);
+        ecm.setDisposeTimeout(100);
+
+        DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<>();
+        cd1.setRoleType(Role.class);
+        cd1.setRoleHint("blocking");
+        cd1.setImplementation(BlockingDisposableRoleImpl.class);
+        ecm.registerComponent(cd1);
+        ecm.getInstance(Role.class, "blocking");
+
+        DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<>();
+        cd2.setRoleType(Role.class);
+        cd2.setRoleHint("other");
+        cd2.setImplementation(DisposableRoleImpl.class);
+        ecm.registerComponent(cd2);
+        DisposableRoleImpl instance2 = ecm.getInstance(Role.class, "other");
+
+        DefaultComponentDescriptor<Role> cd3 = new DefaultComponentDescriptor<>();
+        cd3.setRoleType(Role.class);
+        cd3.setRoleHint("last");
+        cd3.setImplementation(DisposableWithPriorityRoleImpl.class);
+        ecm.registerComponent(cd3);
+        DisposableWithPriorityRoleImpl instance3 = ecm.getInstance(Role.class, "last");
+
+        try {
+            ecm.dispose();
+
+            // The components of the same priority are disposed in parallel
+            Assert.assertTrue(instance2.isFinalized());
+            // The shutdown doesn't wait for the following priorities
+            Assert.assertFalse(instance3.isFinalized());
+
+            Assert.assertNull(ecm.getComponentDescriptor(Role.class, "blocking"));
+            Assert.assertNull(ecm.getComponentDescriptor(Role.class, "last"));
+        } finally {
+            BlockingDisposableRoleImpl.RELEASED.countDown();
+        }
+    }
+
+    @DisposePriority(2000)
+    public static class SlowCreationRoleImpl implements Role, Initializable, Disposable
+    {
+        private static final CountDownLatch STARTED = new CountDownLatch(1);
+
+        private static final CountDownLatch RELEASED = new CountDownLatch(1);
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            STARTED.countDown();
+            try {
+                RELEASED.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void dispose() throws ComponentLifecycleException
+        {
+            lastDisposedComponent = "SlowCreationRoleImpl";
+        }
+    }
+
+    @Test
+    public void disposeWaitsForCreations() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<>();
+        cd1.setRoleType(Role.class);
+        cd1.setRoleHint("slow");
+        cd1.setImplementation(SlowCreationRoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<>();
+        cd2.setRoleType(Role.class);
+        cd2.setRoleHint("other");
+        cd2.setImplementation(DisposableRoleImpl.class);
+        ecm.registerComponent(cd2);
+        DisposableRoleImpl instance2 = ecm.getInstance(Role.class, "other");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(new Callable<Role>()
+            {
+                @Override
+                public Role call() throws Exception
+                {
+                    return ecm.getInstance(Role.class, "slow");
+                }
+            });
+            SlowCreationRoleImpl.STARTED.await();
+
+            Future<?> disposal = executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ecm.dispose();
+                }
+            });
+
+            Thread.sleep(50);
+            Assert.assertFalse(disposal.isDone());
+
+            SlowCreationRoleImpl.RELEASED.countDown();
+            disposal.get();
+        } finally {
+            SlowCreationRoleImpl.RELEASED.countDown();
+            executor.shutdownNow();
+        }
+
+        // Disposed according to its priority, after the default priority components
+        Assert.assertTrue(instance2.isFinalized());
+        Assert.assertEquals("SlowCreationRoleImpl", lastDisposedComponent);
+    }
+
     public static class ComponentDescriptorRoleImpl implements Role
     {
         private ComponentDescriptor<ComponentDescriptorRoleImpl> descriptor;
@@ -598,4 +880,353 @@ public void testComponentDescriptorInjection() throws Exception
         Assert.assertNotNull(impl.getComponentDescriptor());
     }
 
+    public static class CyclicRoleImpl implements Role
+    {
+        private Role dependency;
+    }
+
+    @Test
+    public void getInstanceWithDependencyCycle() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        registerCyclicComponent(ecm, "first", "second");
+        registerCyclicComponent(ecm, "second", "first");
+
+        try {
+            ecm.getInstance(Role.class, "first");
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            Throwable cause = expected;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+
+            String role = Role.class.toString();
+            Assert.assertEquals("Dependency cycle detected when creating component [" + role + ":first]: " + role
+                + ":first -> " + role + ":second -> " + role + ":first", cause.getMessage());
+        }
+
+        // Break the cycle
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setRoleHint("second");
+        cd.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd);
+
+        Assert.assertNotNull(ecm.getInstance(Role.class, "first"));
+    }
+
+    @Test
+    public void getPerLookupInstanceWithDependencyCycle() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = registerCyclicComponent(ecm, "self", "self");
+        cd.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(cd);
+
+        try {
+            ecm.getInstance(Role.class, "self");
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            // Used to overflow the stack
+        }
+    }
+
+    private DefaultComponentDescriptor<Role> registerCyclicComponent(EmbeddableComponentManager ecm, String hint,
+        String dependencyHint) throws Exception
+    {
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setRoleHint(hint);
+        cd.setImplementation(CyclicRoleImpl.class);
+
+        DefaultComponentDependency<Role> dependency = new DefaultComponentDependency<>();
+        dependency.setRoleType(Role.class);
+        dependency.setRoleHint(dependencyHint);
+        dependency.setName("dependency");
+        cd.addComponentDependency(dependency);
+
+        ecm.registerComponent(cd);
+
+        return cd;
+    }
+
+    public static class SlowInitializableRoleImpl implements Role, Initializable
+    {
+        private static final CountDownLatch STARTED = new CountDownLatch(1);
+
+        private static final CountDownLatch RELEASED = new CountDownLatch(1);
+
+        private static final AtomicInteger CREATIONS = new AtomicInteger();
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            CREATIONS.incrementAndGet();
+            STARTED.countDown();
+
+            try {
+                RELEASED.await();
+            } catch (InterruptedException e) {
+                throw new InitializationException("Interrupted", e);
+            }
+        }
+    }
+
+    @Test
+    public void getSingletonInstanceFromSeveralThreads() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(SlowInitializableRoleImpl.class);
+        ecm.registerComponent(cd);
+
+        Callable<Role> lookup = new Callable<Role>()
+        {
+            @Override
+            public Role call() throws Exception
+            {
+                return ecm.getInstance(Role.class);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Role> first = executor.submit(lookup);
+            SlowInitializableRoleImpl.STARTED.await();
+            Future<Role> second = executor.submit(lookup);
+
+            // Wait for the second lookup to wait for the first one
+            while (ecm.getContendedCreations() == 0) {
+                Thread.sleep(1);
+            }
+            SlowInitializableRoleImpl.RELEASED.countDown();
+
+            Assert.assertSame(first.get(), second.get());
+            Assert.assertEquals(1, SlowInitializableRoleImpl.CREATIONS.get());
+            Assert.assertEquals(1, ecm.getContendedCreations());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void hasComponentAfterRegistrationInParent() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+        EmbeddableComponentManager child = new EmbeddableComponentManager();
+        child.setParent(ecm);
+
+        // Remember the misses
+        Assert.assertFalse(child.hasComponent(Role.class));
+        Assert.assertFalse(child.hasComponent(Role.class));
+        try {
+            child.getInstance(Role.class);
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            // Expected
+        }
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        parent.registerComponent(cd);
+
+        Assert.assertTrue(child.hasComponent(Role.class));
+        Assert.assertNotNull(child.getInstance(Role.class));
+
+        // Forget the misses when the parent changes
+        Assert.assertFalse(child.hasComponent(Role.class, "other"));
+        EmbeddableComponentManager otherParent = new EmbeddableComponentManager();
+        cd.setRoleHint("other");
+        otherParent.registerComponent(cd);
+        ecm.setParent(otherParent);
+
+        Assert.assertTrue(child.hasComponent(Role.class, "other"));
+    }
+
+    @Test
+    public void missesAreBounded() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        for (int i = 0; i < 25000; ++i) {
+            Assert.assertFalse(ecm.hasComponent(Role.class, "missing" + i));
+        }
+
+        Assert.assertTrue(ecm.getMissCount() <= 10000);
+
+        // Still remembered after the misses have been forgotten
+        Assert.assertFalse(ecm.hasComponent(Role.class, "missing"));
+        Assert.assertTrue(ecm.getMissCount() > 0);
+    }
+
+    @Test
+    public void hasComponentWithNonEmbeddableParent() throws Exception
+    {
+        ComponentManager parent = mock(ComponentManager.class);
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        Assert.assertFalse(ecm.hasComponent(Role.class));
+        Assert.assertFalse(ecm.hasComponent(Role.class));
+
+        // Registrations in the parent can't be tracked so misses are not remembered
+        verify(parent, times(2)).hasComponent(Role.class, "default");
+    }
+
+    @Test
+    public void getInstanceListSnapshots() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRoleType(Role.class);
+        cd1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        // Only singletons so the same snapshot is returned
+        List<Role> list = ecm.getInstanceList(Role.class);
+        Assert.assertSame(list, ecm.getInstanceList(Role.class));
+        Assert.assertSame(ecm.getInstanceMap(Role.class), ecm.getInstanceMap(Role.class));
+        Assert.assertEquals(1, list.size());
+
+        // A registration in the parent invalidates the snapshot
+        DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRoleType(Role.class);
+        cd2.setRoleHint("parent");
+        cd2.setImplementation(OtherRoleImpl.class);
+        cd2.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        parent.registerComponent(cd2);
+
+        // Not only singletons anymore so a new list is returned each time
+        list = ecm.getInstanceList(Role.class);
+        Assert.assertEquals(2, list.size());
+        Assert.assertNotSame(list, ecm.getInstanceList(Role.class));
+
+        parent.unregisterComponent(cd2);
+
+        Assert.assertEquals(1, ecm.getInstanceList(Role.class).size());
+        Assert.assertSame(ecm.getInstanceList(Role.class), ecm.getInstanceList(Role.class));
+    }
+
+    @Test
+    public void lookupDoesNotAllocate() throws Exception
+    {
+        // Not a standard API so don't depend on it at compile time
+        Object threadMXBean = ManagementFactory.getThreadMXBean();
+        Method getThreadAllocatedBytes;
+        try {
+            getThreadAllocatedBytes =
+                Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            getThreadAllocatedBytes = null;
+        }
+        Assume.assumeTrue(getThreadAllocatedBytes != null
+            && getThreadAllocatedBytes.getDeclaringClass().isInstance(threadMXBean));
+        long threadId = Thread.currentThread().getId();
+        Assume.assumeTrue((Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId) >= 0);
+
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd);
+
+        int lookups = 100000;
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < 5; ++i) {
+            // The first rounds warm up the caches and the JIT, keep the best round to ignore the noise
+            long start = (Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId);
+            for (int j = 0; j < lookups; ++j) {
+                ecm.getInstance(Role.class);
+                ecm.hasComponent(Role.class, "missing");
+                ecm.getComponentDescriptor(Role.class, null);
+            }
+            allocated = Math.min(allocated, (Long) getThreadAllocatedBytes.invoke(threadMXBean, threadId) - start);
+        }
+
+        // A single key allocated per lookup would be several bytes per lookup
+        Assert.assertTrue("Allocated [" + allocated + "] bytes", allocated < lookups);
+    }
+
+    @Test
+    public void statistics() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        DefaultComponentManagerStatistics statistics = new DefaultComponentManagerStatistics();
+        parent.setStatistics(statistics);
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager("namespace");
+        ecm.setParent(parent);
+
+        Assert.assertSame(statistics, ecm.getStatistics());
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(InitializableRoleImpl.class);
+        cd.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        parent.registerComponent(cd);
+
+        ecm.getInstance(Role.class);
+        ecm.getInstance(Role.class);
+        try {
+            ecm.getInstance(Role.class, "missing");
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            // Expected
+        }
+
+        String component = Role.class.getName() + ":default";
+        Assert.assertEquals(2, statistics.getLookupCount());
+        Assert.assertEquals(Long.valueOf(2), statistics.getLookups().get(component));
+        // Counted in the namespace of the component manager where the component is registered
+        Assert.assertEquals(Long.valueOf(2),
+            statistics.getNamespaceLookups().get(ComponentManagerStatistics.NO_NAMESPACE));
+        Assert.assertEquals(1, statistics.getMissCount());
+        Assert.assertEquals(Long.valueOf(1), statistics.getMisses().get(Role.class.getName() + ":missing"));
+        Assert.assertEquals(2, statistics.getCreationCount());
+        Assert.assertEquals(Long.valueOf(2), statistics.getCreations().get(component));
+        Assert.assertTrue(statistics.getInitializationTimes().get(component) <= statistics.getCreationTimes().get(
+            component));
+
+        long histogramCount = 0;
+        for (long count : statistics.getCreationLatencies()) {
+            histogramCount += count;
+        }
+        Assert.assertEquals(2, histogramCount);
+
+        statistics.reset();
+
+        Assert.assertEquals(0, statistics.getLookupCount());
+        Assert.assertTrue(statistics.getLookups().isEmpty());
+
+        // Registered as a component so that it can be found without knowing the component manager implementation
+        Assert.assertSame(statistics, ecm.getInstance(ComponentManagerStatistics.class));
+
+        statistics.reset();
+
+        Assert.assertEquals(0, statistics.getLookupCount());
+        Assert.assertTrue(statistics.getLookups().isEmpty());
+
+        // Disabled
+        parent.setStatistics(null);
+        ecm.setStatistics(null);
+        ecm.getInstance(Role.class);
+
+        Assert.assertEquals(0, statistics.getLookupCount());
+        Assert.assertFalse(ecm.hasComponent(ComponentManagerStatistics.class));
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.ProviderTest;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * Unit tests for {@link ComponentDescriptorIndex}.
+ *
+ * @version $Id$
+ */
+public class ComponentDescriptorIndexTest
+{
+    private static final String INDEX = "org.xwiki.component.ProviderTest$TestComponentWithProviders"
+        + " org.xwiki.component.ProviderTest$TestComponentRole default SINGLETON"
+        + " provider1:javax.inject.Provider<java.lang.String>"
+        + " provider12:another:javax.inject.Provider<java.lang.String>"
+        + " provider2:javax.inject.Provider<java.lang.Integer>"
+        + " providerList:javax.inject.Provider<java.util.List"
+        + "<org.xwiki.component.embed.EmbeddableComponentManagerTest$Role>>"
+        + " providerMap:javax.inject.Provider<java.util.Map"
+        + "<java.lang.String,org.xwiki.component.embed.EmbeddableComponentManagerTest$Role>>\n"
+        + "org.xwiki.component.ProviderTest$TestProvider12 javax.inject.Provider<java.lang.String> another SINGLETON\n";
+
+    private ComponentDescriptorIndex index;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.index = new ComponentDescriptorIndex();
+        this.index.load(new ByteArrayInputStream(INDEX.getBytes("UTF-8")));
+    }
+
+    @Test
+    public void contains()
+    {
+        Assert.assertTrue(this.index.contains(ProviderTest.TestComponentWithProviders.class.getName()));
+        Assert.assertFalse(this.index.contains(ProviderTest.TestProvider1.class.getName()));
+    }
+
+    @Test
+    public void getComponentDescriptorsSameAsReflection() throws Exception
+    {
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+
+        assertDescriptors(loader.getComponentsDescriptors(ProviderTest.TestComponentWithProviders.class),
+            this.index.getComponentDescriptors(ProviderTest.TestComponentWithProviders.class));
+        assertDescriptors(loader.getComponentsDescriptors(ProviderTest.TestProvider12.class),
+            this.index.getComponentDescriptors(ProviderTest.TestProvider12.class));
+    }
+
+    @Test
+    public void getComponentDescriptorsWhenNotIndexed() throws Exception
+    {
+        Assert.assertNull(this.index.getComponentDescriptors(ProviderTest.TestProvider1.class));
+    }
+
+    private void assertDescriptors(List<ComponentDescriptor> expected, List<ComponentDescriptor<?>> actual)
+    {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+            Assert.assertEquals(expected.get(i).getRoleType().hashCode(), actual.get(i).getRoleType().hashCode());
+        }
+    }
+}
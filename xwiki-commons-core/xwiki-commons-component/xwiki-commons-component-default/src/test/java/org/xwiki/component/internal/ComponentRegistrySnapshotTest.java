@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.internal.ComponentWarmUpTest.DependencyComponent;
+import org.xwiki.component.internal.ComponentWarmUpTest.WarmUpRole;
+
+/**
+ * Unit tests for {@link ComponentRegistrySnapshot}.
+ *
+ * @version $Id$
+ */
+public class ComponentRegistrySnapshotTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File jar;
+
+    private File dependencyJar;
+
+    private File permanentDirectory;
+
+    private File snapshotFile;
+
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.jar = this.folder.newFile("components.jar");
+        this.permanentDirectory = this.folder.newFolder("permanent");
+        this.snapshotFile = new File(this.permanentDirectory, ComponentRegistrySnapshot.LOCATION);
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(this.jar))) {
+            zip.putNextEntry(new ZipEntry(ComponentAnnotationLoader.COMPONENT_LIST));
+            zip.write(DependencyComponent.class.getName().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        // A jar without components
+        this.dependencyJar = this.folder.newFile("dependency.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(this.dependencyJar))) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.closeEntry();
+        }
+
+        // Only find the components of the jar but load the classes from the test classpath
+        ClassLoader parent = new URLClassLoader(new URL[0], getClass().getClassLoader())
+        {
+            @Override
+            public Enumeration<URL> getResources(String name)
+            {
+                return Collections.emptyEnumeration();
+            }
+        };
+        this.classLoader =
+            new URLClassLoader(new URL[] {this.jar.toURI().toURL(), this.dependencyJar.toURI().toURL()}, parent);
+    }
+
+    private EmbeddableComponentManager initialize()
+    {
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        componentManager.initialize(this.classLoader, this.permanentDirectory);
+
+        return componentManager;
+    }
+
+    @Test
+    public void initializeFromSnapshot() throws Exception
+    {
+        Assert.assertTrue(initialize().hasComponent(WarmUpRole.class, "dependency"));
+
+        String snapshot = new String(Files.readAllBytes(this.snapshotFile.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(snapshot.contains("component " + DependencyComponent.class.getName() + '\n'));
+        Assert.assertTrue(snapshot.contains("descriptor " + DependencyComponent.class.getName() + ' '
+            + WarmUpRole.class.getName() + " dependency SINGLETON\n"));
+
+        // Make sure the snapshot is used when the jar didn't change
+        Files.write(this.snapshotFile.toPath(),
+            snapshot.replace(" dependency SINGLETON", " snapshot SINGLETON").getBytes(StandardCharsets.UTF_8));
+
+        EmbeddableComponentManager componentManager = initialize();
+        Assert.assertTrue(componentManager.hasComponent(WarmUpRole.class, "snapshot"));
+        Assert.assertFalse(componentManager.hasComponent(WarmUpRole.class, "dependency"));
+
+        // The jar is scanned again when it changes
+        Assert.assertTrue(this.jar.setLastModified(this.jar.lastModified() - 10000));
+
+        componentManager = initialize();
+        Assert.assertTrue(componentManager.hasComponent(WarmUpRole.class, "dependency"));
+        Assert.assertFalse(componentManager.hasComponent(WarmUpRole.class, "snapshot"));
+    }
+
+    @Test
+    public void initializeWhenDependencyChanged() throws Exception
+    {
+        initialize();
+
+        String snapshot = new String(Files.readAllBytes(this.snapshotFile.toPath()), StandardCharsets.UTF_8);
+        Files.write(this.snapshotFile.toPath(),
+            snapshot.replace(" dependency SINGLETON", " snapshot SINGLETON").getBytes(StandardCharsets.UTF_8));
+
+        // The descriptors can depend on the classes of any jar so they are all resolved again
+        Assert.assertTrue(this.dependencyJar.setLastModified(this.dependencyJar.lastModified() - 10000));
+
+        EmbeddableComponentManager componentManager = initialize();
+        Assert.assertTrue(componentManager.hasComponent(WarmUpRole.class, "dependency"));
+        Assert.assertFalse(componentManager.hasComponent(WarmUpRole.class, "snapshot"));
+
+        // And stored again
+        Assert.assertTrue(new String(Files.readAllBytes(this.snapshotFile.toPath()), StandardCharsets.UTF_8)
+            .contains("descriptor " + DependencyComponent.class.getName() + ' ' + WarmUpRole.class.getName()
+                + " dependency SINGLETON\n"));
+    }
+
+    @Test
+    public void initializeWithInvalidSnapshot() throws Exception
+    {
+        Assert.assertTrue(this.snapshotFile.getParentFile().mkdirs());
+        Files.write(this.snapshotFile.toPath(), "source invalid\n".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertTrue(initialize().hasComponent(WarmUpRole.class, "dependency"));
+
+        // The snapshot is fixed
+        Assert.assertTrue(new String(Files.readAllBytes(this.snapshotFile.toPath()), StandardCharsets.UTF_8)
+            .contains("descriptor " + DependencyComponent.class.getName()));
+    }
+}
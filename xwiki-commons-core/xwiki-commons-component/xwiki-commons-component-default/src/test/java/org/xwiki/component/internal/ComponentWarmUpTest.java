@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.annotation.ComponentDeclaration;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.annotation.Role;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.phase.Initializable;
+
+/**
+ * Unit tests for {@link ComponentWarmUp}.
+ *
+ * @version $Id$
+ */
+public class ComponentWarmUpTest
+{
+    private static final List<Class<?>> INITIALIZED = new CopyOnWriteArrayList<>();
+
+    @Role
+    public interface WarmUpRole
+    {
+    }
+
+    public abstract static class AbstractWarmUpRole implements WarmUpRole, Initializable
+    {
+        @Override
+        public void initialize()
+        {
+            INITIALIZED.add(getClass());
+        }
+    }
+
+    @Component(staticRegistration = false)
+    @Named("dependency")
+    @Singleton
+    public static class DependencyComponent extends AbstractWarmUpRole
+    {
+    }
+
+    @Component(staticRegistration = false)
+    @Named("perlookup")
+    @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+    public static class PerLookupComponent extends AbstractWarmUpRole
+    {
+        @Inject
+        @Named("dependency")
+        private WarmUpRole dependency;
+    }
+
+    @Component(staticRegistration = false)
+    @Singleton
+    public static class DependentComponent extends AbstractWarmUpRole
+    {
+        @Inject
+        @Named("perlookup")
+        private WarmUpRole dependency;
+    }
+
+    private EmbeddableComponentManager componentManager;
+
+    private ComponentAnnotationLoader loader;
+
+    private List<ComponentDeclaration> declarations;
+
+    @Before
+    public void setUp()
+    {
+        INITIALIZED.clear();
+
+        this.componentManager = new EmbeddableComponentManager();
+        this.loader = new ComponentAnnotationLoader();
+        this.declarations =
+            Arrays.asList(new ComponentDeclaration(DependentComponent.class.getName()), new ComponentDeclaration(
+                PerLookupComponent.class.getName()), new ComponentDeclaration(DependencyComponent.class.getName()));
+    }
+
+    @Test
+    public void warmUpAll() throws Exception
+    {
+        this.loader.setParallel(true);
+        this.loader.setWarmUp(ComponentWarmUp.ALL);
+        this.loader.initialize(this.componentManager, getClass().getClassLoader(), this.declarations);
+
+        // The per lookup component is only created when injected
+        Assert.assertEquals(Arrays.asList(DependencyComponent.class, PerLookupComponent.class,
+            DependentComponent.class), INITIALIZED);
+
+        this.componentManager.getInstance(WarmUpRole.class);
+        this.componentManager.getInstance(WarmUpRole.class, "dependency");
+
+        Assert.assertEquals(3, INITIALIZED.size());
+    }
+
+    @Test
+    public void warmUpSelection() throws Exception
+    {
+        this.loader.setWarmUp(WarmUpRole.class.getName() + ":dependency");
+        this.loader.initialize(this.componentManager, getClass().getClassLoader(), this.declarations);
+
+        Assert.assertEquals(Arrays.<Class<?>>asList(DependencyComponent.class), INITIALIZED);
+    }
+
+    @Test
+    public void noWarmUp() throws Exception
+    {
+        this.loader.setWarmUp(null);
+        this.loader.initialize(this.componentManager, getClass().getClassLoader(), this.declarations);
+
+        Assert.assertTrue(INITIALIZED.isEmpty());
+    }
+
+    @Test
+    public void initializationTimes() throws Exception
+    {
+        this.loader.register(this.componentManager, getClass().getClassLoader(), this.declarations);
+
+        List<ComponentDescriptor<?>> descriptors =
+            new ArrayList<ComponentDescriptor<?>>(this.componentManager.<WarmUpRole>getComponentDescriptorList(
+                (Type) WarmUpRole.class));
+        Map<ComponentDescriptor<?>, Long> times =
+            new ComponentWarmUp(this.componentManager, 2).warmUp(descriptors, ComponentWarmUp.ALL);
+
+        // Only the singleton components are reported
+        Assert.assertEquals(2, times.size());
+        Assert.assertTrue(times.containsKey(this.componentManager.getComponentDescriptor(WarmUpRole.class,
+            "default")));
+    }
+}
@@ -130,7 +130,13 @@ public static ComponentManager initialize(File permanentDirectory, File resource
     {
         // Step 1: Initialize Component system
         EmbeddableComponentManager ecm = new EmbeddableComponentManager();
-        ecm.initialize(classLoader == null ? System.class.getClassLoader() : classLoader);
+        ClassLoader componentClassLoader = classLoader == null ? System.class.getClassLoader() : classLoader;
+        if (permanentDirectory != null) {
+            // Speed up the next initializations by reusing the components found in the jars which didn't change
+            ecm.initialize(componentClassLoader, permanentDirectory);
+        } else {
+            ecm.initialize(componentClassLoader);
+        }
 
         // Step 2: Initialize Environment
         StandardEnvironment environment;
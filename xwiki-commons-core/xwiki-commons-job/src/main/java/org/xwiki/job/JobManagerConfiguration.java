@@ -36,4 +36,11 @@
      * @return the folder containing job executing status
      */
     File getStorage();
+
+    /**
+     * @return the maximum number of logs of a job to keep in memory, all the logs being stored in the job status folder
+     *         as they arrive; 0 to keep all of them in memory and store them with the job status
+     * @since 6.4M3
+     */
+    int getLogMemoryThreshold();
 }
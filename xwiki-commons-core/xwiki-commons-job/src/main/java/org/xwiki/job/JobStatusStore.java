@@ -23,6 +23,8 @@
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
 
 /**
  * Store and retrieve {@link JobStatus} instances.
@@ -39,6 +41,34 @@
      */
     JobStatus getJobStatus(List<String> id);
 
+    /**
+     * Get a page of the logs of a job matching some criteria. The logs of the jobs stored with their logs in a
+     * separate file are read from that file, going only through the logs of the requested levels.
+     *
+     * @param id the id of the job
+     * @param level the less severe level of the logs to return
+     * @param filter the text the formatted message of the logs to return should contain (ignoring the case),
+     *            {@code null} or empty to return all the logs of the requested levels
+     * @param offset the number of matching logs to skip
+     * @param limit the maximum number of logs to return
+     * @return the matching logs, in order, empty if the job status could not be found
+     * @since 6.4M3
+     */
+    List<LogEvent> getLogs(List<String> id, LogLevel level, String filter, int offset, int limit);
+
+    /**
+     * Count the logs of a job matching some criteria, for example to get the last logs with
+     * {@link #getLogs(List, LogLevel, String, int, int)}.
+     *
+     * @param id the id of the job
+     * @param level the less severe level of the logs to count
+     * @param filter the text the formatted message of the logs to count should contain (ignoring the case),
+     *            {@code null} or empty to count all the logs of the requested levels
+     * @return the number of matching logs, 0 if the job status could not be found
+     * @since 6.4M3
+     */
+    int getLogCount(List<String> id, LogLevel level, String filter);
+
     /**
      * @param status the job status
      */
@@ -37,6 +37,7 @@
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.job.Job;
 import org.xwiki.job.JobContext;
+import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.JobStatusStore;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.JobFinishedEvent;
@@ -97,6 +98,12 @@
     @Inject
     protected JobStatusStore store;
 
+    /**
+     * Used to know where and how to store the job logs.
+     */
+    @Inject
+    private JobManagerConfiguration configuration;
+
     /**
      * Used to get the Execution Context.
      */
@@ -235,6 +242,16 @@ protected void jobStarting()
         this.status.setStartDate(new Date());
         this.status.setState(JobStatus.State.RUNNING);
 
+        // Stream the logs to a file and keep only the most recent ones in memory (the logs of the previous run are
+        // replaced when the job status is stored)
+        int logMemoryThreshold = this.configuration.getLogMemoryThreshold();
+        if (logMemoryThreshold > 0 && getRequest().getId() != null) {
+            this.status.setLogFolder(
+                DefaultJobStatusStore.getJobLogFolder(this.configuration.getStorage(), getRequest().getId(),
+                    this.status.getStartDate()),
+                logMemoryThreshold);
+        }
+
         this.status.startListening();
 
         if (getStatus().getRequest().getId() != null) {
@@ -19,6 +19,7 @@
  */
 package org.xwiki.job.internal;
 
+import java.io.File;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.locks.Condition;
@@ -160,6 +161,27 @@ public void stopListening()
             this.observationManager.removeListener(this.logListener.getName());
         }
         this.observationManager.removeListener(this.progress.getName());
+
+        // Release the log file until more logs need to be stored
+        if (this.logs instanceof FileLogQueue) {
+            ((FileLogQueue) this.logs).close();
+        }
+    }
+
+    /**
+     * Store the logs in the passed folder as they arrive and keep only the most recent ones in memory. Should be
+     * called before {@link #startListening()}.
+     *
+     * @param folder the folder where to store the logs
+     * @param threshold the maximum number of logs to keep in memory
+     * @since 6.4M3
+     */
+    public void setLogFolder(File folder, int threshold)
+    {
+        FileLogQueue fileLogs = new FileLogQueue(folder, threshold);
+        fileLogs.addAll(getLog());
+
+        this.logs = fileLogs;
     }
 
     // JobStatus
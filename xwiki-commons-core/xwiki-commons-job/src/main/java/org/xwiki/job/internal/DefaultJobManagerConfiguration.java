@@ -40,6 +40,11 @@
 @Singleton
 public class DefaultJobManagerConfiguration implements JobManagerConfiguration
 {
+    /**
+     * The default maximum number of logs of a job to keep in memory.
+     */
+    private static final int DEFAULT_LOG_MEMORY_THRESHOLD = 10000;
+
     /**
      * Used to get permanent directory.
      */
@@ -82,4 +87,10 @@ public File getStorage()
 
         return this.store;
     }
+
+    @Override
+    public int getLogMemoryThreshold()
+    {
+        return this.configuration.get().getProperty("job.logMemoryThreshold", DEFAULT_LOG_MEMORY_THRESHOLD);
+    }
 }
@@ -25,6 +25,7 @@
 import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,8 @@
 import org.xwiki.job.Request;
 import org.xwiki.job.annotation.Serializable;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
 
 /**
  * Default implementation of {@link JobStatusStorage}.
@@ -187,6 +190,12 @@ public Set<java.util.Map.Entry<List<String>, JobStatus>> entrySet()
      */
     private static final String FOLDER_NULL = "&null";
 
+    /**
+     * The prefix of the folders where the running jobs store their logs, next to the folders of the jobs they contain.
+     * The logs are moved next to the job status when it's stored.
+     */
+    private static final String FOLDER_LOGS = "&logs-";
+
     private static final JobStatus NOSTATUS = new DefaultJobStatus<Request>(null, null, null, false);
 
     /**
@@ -250,7 +259,7 @@ public void initialize() throws InitializationException
      * @param name the file or directory name to encode
      * @return the encoding name
      */
-    private String encode(String name)
+    private static String encode(String name)
     {
         String encoded;
 
@@ -287,7 +296,10 @@ private void repair()
     private void repairFolder(File folder)
     {
         for (File file : folder.listFiles()) {
-            if (file.isDirectory()) {
+            if (file.isDirectory() && file.getName().startsWith(FOLDER_LOGS)) {
+                // The logs of a job which was still running or whose status could not be stored
+                deleteLogFolder(file);
+            } else if (file.isDirectory()) {
                 repairFolder(file);
             } else if (file.getName().equals(FILENAME_STATUS)) {
                 try {
@@ -297,9 +309,10 @@ private void repairFolder(File folder)
                         File properFolder = getJobFolder(status.getRequest().getId());
 
                         if (!folder.equals(properFolder)) {
-                            // Move the status in its right place
+                            // Move the status and its logs in their right place
                             try {
                                 FileUtils.moveFileToDirectory(file, properFolder, true);
+                                moveLogFiles(folder, properFolder);
                             } catch (IOException e) {
                                 this.logger.error("Failed to move job status file", e);
                             }
@@ -312,6 +325,24 @@ private void repairFolder(File folder)
         }
     }
 
+    private void moveLogFiles(File folder, File properFolder) throws IOException
+    {
+        for (File logFile : LogFile.getFiles(folder)) {
+            if (logFile.exists()) {
+                FileUtils.moveFileToDirectory(logFile, properFolder, true);
+            }
+        }
+    }
+
+    private void deleteLogFolder(File logFolder)
+    {
+        try {
+            FileUtils.deleteDirectory(logFolder);
+        } catch (IOException e) {
+            this.logger.warn("Failed to delete the log folder [{}]", logFolder, e);
+        }
+    }
+
     private JobStatus loadStatus(List<String> id)
     {
         return loadStatus(getJobFolder(id));
@@ -324,7 +355,14 @@ private JobStatus loadStatus(File folder)
     {
         File statusFile = new File(folder, FILENAME_STATUS);
         if (statusFile.exists()) {
-            return loadJobStatus(statusFile);
+            JobStatus status = loadJobStatus(statusFile);
+
+            // The logs which did not fit in memory are stored next to the status
+            if (status != null && status.getLog() instanceof FileLogQueue) {
+                ((FileLogQueue) status.getLog()).setFolder(folder);
+            }
+
+            return status;
         }
 
         return null;
@@ -348,7 +386,18 @@ private JobStatus loadJobStatus(File statusFile)
      */
     private File getJobFolder(List<String> id)
     {
-        File folder = this.configuration.getStorage();
+        return getJobFolder(this.configuration.getStorage(), id);
+    }
+
+    /**
+     * @param storage the folder containing all the job statuses
+     * @param id the id of the job
+     * @return the folder where to store the job related informations
+     * @since 6.4M3
+     */
+    public static File getJobFolder(File storage, List<String> id)
+    {
+        File folder = storage;
 
         if (id != null) {
             for (String idElement : id) {
@@ -359,6 +408,55 @@ private File getJobFolder(List<String> id)
         return folder;
     }
 
+    /**
+     * @param storage the folder containing all the job statuses
+     * @param id the id of the job
+     * @param startDate the date when the job started, to distinguish the concurrent runs of the same job
+     * @return the folder where the job stores its logs while running, so that they don't overwrite the logs of the
+     *         previous run until the new job status is stored
+     * @since 6.4M3
+     */
+    public static File getJobLogFolder(File storage, List<String> id, Date startDate)
+    {
+        return new File(getJobFolder(storage, id), FOLDER_LOGS + startDate.getTime());
+    }
+
+    /**
+     * Replace the logs of the previous run of the job with the logs of the passed status, if they are stored
+     * somewhere else.
+     *
+     * @param status the job status to store
+     */
+    private void storeLogs(JobStatus status)
+    {
+        if (status.getLog() instanceof FileLogQueue) {
+            FileLogQueue logs = (FileLogQueue) status.getLog();
+            File folder = getJobFolder(status.getRequest().getId());
+
+            // Don't add logs while the files are moved
+            synchronized (logs) {
+                File logFolder = logs.getFolder();
+
+                if (logFolder != null && !logFolder.equals(folder)) {
+                    logs.close();
+
+                    try {
+                        for (File logFile : LogFile.getFiles(folder)) {
+                            FileUtils.deleteQuietly(logFile);
+                        }
+                        moveLogFiles(logFolder, folder);
+                        deleteLogFolder(logFolder);
+
+                        logs.setFolder(folder);
+                    } catch (IOException e) {
+                        this.logger.warn("Failed to move the logs of job [{}] to folder [{}]",
+                            status.getRequest().getId(), folder, e);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * @param status the job status to save
      * @throws IOException when falling to store the provided status
@@ -401,6 +499,27 @@ public JobStatus getJobStatus(List<String> id)
         return status == NOSTATUS ? null : status;
     }
 
+    @Override
+    public List<LogEvent> getLogs(List<String> id, LogLevel level, String filter, int offset, int limit)
+    {
+        // The status itself is small when its logs are stored separately
+        JobStatus status = getJobStatus(id);
+
+        if (status == null) {
+            return Collections.emptyList();
+        }
+
+        return status.getLog().getLogsFrom(level, filter, offset, limit);
+    }
+
+    @Override
+    public int getLogCount(List<String> id, LogLevel level, String filter)
+    {
+        JobStatus status = getJobStatus(id);
+
+        return status != null ? status.getLog().getLogCountFrom(level, filter) : 0;
+    }
+
     @Override
     public void store(JobStatus status)
     {
@@ -416,12 +535,20 @@ public void storeAsync(JobStatus status)
     private void store(JobStatus status, boolean async)
     {
         if (status != null && status.getRequest() != null && status.getRequest().getId() != null) {
+            // Only store Serializable job status on file system
+            boolean serializable =
+                status.getClass().isAnnotationPresent(Serializable.class) || status instanceof java.io.Serializable;
+
             synchronized (this.cache) {
+                // The logs of a status which is not stored on file system could not be loaded with it
+                if (serializable) {
+                    storeLogs(status);
+                }
+
                 this.cache.put(status.getRequest().getId(), status);
             }
 
-            // Only store Serializable job status on file system
-            if (status.getClass().isAnnotationPresent(Serializable.class) || status instanceof java.io.Serializable) {
+            if (serializable) {
                 if (async) {
                     this.executorService.execute(new JobStatusSerializerRunnable(status));
                 } else {
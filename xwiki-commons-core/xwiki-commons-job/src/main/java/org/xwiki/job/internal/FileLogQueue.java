@@ -0,0 +1,790 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * A {@link LogQueue} appending its logs to a {@link LogFile} as they arrive and keeping only the most recent ones in
+ * memory.
+ * <p>
+ * Only the positions of the logs are serialized (plus the logs which could not be stored in the file), so storing the
+ * job status does not write its logs again and loading it does not read them. The logs are read from the file when
+ * needed.
+ * <p>
+ * The file is never rewritten: the logs removed individually (e.g. with {@link Iterator#remove()}) are only marked as
+ * removed and skipped when reading the queue.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class FileLogQueue extends LogQueue
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The object used to log messages.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileLogQueue.class);
+
+    /**
+     * The number of logs read at once from the file when iterating.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * The maximum number of logs to keep in memory.
+     */
+    private int threshold;
+
+    /**
+     * The position of the first log of the queue (the logs before it have been polled).
+     */
+    private int start;
+
+    /**
+     * The position of the first log kept in memory, the logs before it are only in the file.
+     */
+    private int memoryStart;
+
+    /**
+     * The number of logs in the file.
+     */
+    private int fileEnd;
+
+    /**
+     * For each level, the positions of the logs which have been removed from the queue but are still in the file or
+     * in memory.
+     */
+    private BitSet[] removed = newRemoved();
+
+    /**
+     * For each level, the number of positions in {@link #removed}.
+     */
+    private int[] removedCounts = new int[LogLevel.values().length];
+
+    /**
+     * The folder containing the file, not serialized since it's where the job status is stored.
+     */
+    private transient File folder;
+
+    private transient LogFile file;
+
+    /**
+     * @param folder the folder where to store the logs
+     * @param threshold the maximum number of logs to keep in memory
+     */
+    public FileLogQueue(File folder, int threshold)
+    {
+        this.folder = folder;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return the folder where the logs are stored
+     */
+    public synchronized File getFolder()
+    {
+        return this.folder;
+    }
+
+    /**
+     * @param folder the folder where the logs are stored (usually set when the queue is loaded from the job status
+     *            folder)
+     */
+    public synchronized void setFolder(File folder)
+    {
+        close();
+
+        this.folder = folder;
+        this.file = null;
+    }
+
+    /**
+     * @return the maximum number of logs to keep in memory
+     */
+    public synchronized int getThreshold()
+    {
+        return this.threshold;
+    }
+
+    /**
+     * Release the file opened to add logs. It's opened again if more logs need to be stored.
+     */
+    public synchronized void close()
+    {
+        if (this.file != null) {
+            try {
+                this.file.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close the log file in folder [{}]", this.folder, e);
+            }
+        }
+    }
+
+    /**
+     * Serialize only the positions and the logs which are not in the file.
+     *
+     * @return the object to serialize instead of this queue
+     */
+    private synchronized Object writeReplace()
+    {
+        FileLogQueue reference = new FileLogQueue(null, this.threshold);
+        reference.start = Math.min(this.start, this.fileEnd);
+        reference.memoryStart = this.fileEnd;
+        reference.fileEnd = this.fileEnd;
+        for (int i = 0; i < this.removed.length; ++i) {
+            reference.removed[i] = this.removed[i].get(0, this.fileEnd);
+            reference.removedCounts[i] = reference.removed[i].cardinality();
+        }
+
+        // The removed logs which are not in the file are not kept
+        int position = this.memoryStart;
+        for (Iterator<LogEvent> it = super.iterator(); it.hasNext(); ++position) {
+            LogEvent logEvent = it.next();
+            if (position >= this.fileEnd && !isRemoved(position)) {
+                reference.addToMemory(logEvent);
+            }
+        }
+
+        reference.setMaxSize(getMaxSize());
+        reference.setDroppedCount(getDroppedCount());
+
+        return reference;
+    }
+
+    /**
+     * Initialize the fields which are missing from the statuses stored before the logs could be removed.
+     *
+     * @return this queue
+     */
+    private Object readResolve()
+    {
+        if (this.removed == null) {
+            this.removed = newRemoved();
+            this.removedCounts = new int[this.removed.length];
+        }
+
+        return this;
+    }
+
+    private static BitSet[] newRemoved()
+    {
+        BitSet[] levelsRemoved = new BitSet[LogLevel.values().length];
+        for (int i = 0; i < levelsRemoved.length; ++i) {
+            levelsRemoved[i] = new BitSet();
+        }
+
+        return levelsRemoved;
+    }
+
+    private void addToMemory(LogEvent logEvent)
+    {
+        super.offer(logEvent);
+    }
+
+    private LogFile getFile()
+    {
+        if (this.file == null && this.folder != null) {
+            this.file = new LogFile(this.folder, this.fileEnd);
+            this.file.setIgnored(this.removed);
+        }
+
+        return this.file;
+    }
+
+    /**
+     * @return the number of logs of the queue which are only in the file, including the removed ones
+     */
+    private int getFileSize()
+    {
+        return this.memoryStart - this.start;
+    }
+
+    /**
+     * @return the number of removed logs which are still in the file or in memory
+     */
+    private int getRemovedCount()
+    {
+        int count = 0;
+        for (int levelCount : this.removedCounts) {
+            count += levelCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * @param position the position of a log
+     * @return true if the log has been removed from the queue
+     */
+    private boolean isRemoved(int position)
+    {
+        for (BitSet levelRemoved : this.removed) {
+            if (levelRemoved.get(position)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param from a position
+     * @return true if some logs have been removed after the passed position
+     */
+    private boolean isRemovedFrom(int from)
+    {
+        for (BitSet levelRemoved : this.removed) {
+            if (levelRemoved.nextSetBit(from) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the position after the last log of the queue
+     */
+    private int getEnd()
+    {
+        return this.memoryStart + super.size();
+    }
+
+    /**
+     * @param logEvent the new log to store in the file
+     */
+    private void store(LogEvent logEvent)
+    {
+        // Once a log could not be stored the next ones can't be either, they would not be at the right position
+        if (this.fileEnd == this.memoryStart + super.size()) {
+            LogFile logFile = getFile();
+
+            if (logFile != null) {
+                try {
+                    logFile.append(logEvent);
+
+                    ++this.fileEnd;
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to store logs in folder [{}], keeping the next ones in memory", this.folder,
+                        e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove from memory the oldest logs which are in the file.
+     */
+    private void evict()
+    {
+        while (super.size() > this.threshold && this.memoryStart < this.fileEnd) {
+            super.poll();
+            ++this.memoryStart;
+        }
+    }
+
+    private List<LogEvent> readFile(int offset, int limit)
+    {
+        LogFile logFile = getFile();
+
+        if (logFile != null) {
+            try {
+                return logFile.getLogs(offset, limit);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read logs in folder [{}]", this.folder, e);
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    private List<LogEvent> readFile(LogLevel level, boolean orMoreSevere)
+    {
+        LogFile logFile = getFileSize() > 0 ? getFile() : null;
+
+        if (logFile != null) {
+            try {
+                return logFile.getLogs(level, orMoreSevere, this.start, this.memoryStart);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read logs in folder [{}]", this.folder, e);
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param position the position of the first log to return, counted from the first log stored in the file and not
+     *            before {@link #start}
+     * @return the next logs, including the removed ones, empty when there is no more logs
+     */
+    private List<LogEvent> getPage(int position)
+    {
+        if (position < this.memoryStart) {
+            return readFile(position, Math.min(PAGE_SIZE, this.memoryStart - position));
+        }
+
+        return getMemoryLogs(position - this.memoryStart, PAGE_SIZE);
+    }
+
+    /**
+     * @param position the position of a log of the queue
+     * @return the log, null if it could not be read
+     */
+    private LogEvent get(int position)
+    {
+        List<LogEvent> logs =
+            position < this.memoryStart ? readFile(position, 1) : getMemoryLogs(position - this.memoryStart, 1);
+
+        return logs.isEmpty() ? null : logs.get(0);
+    }
+
+    private List<LogEvent> getMemoryLogs(int offset, int limit)
+    {
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+
+        int position = 0;
+        for (Iterator<LogEvent> it = super.iterator(); it.hasNext() && logs.size() < limit; ++position) {
+            LogEvent logEvent = it.next();
+            if (position >= offset) {
+                logs.add(logEvent);
+            }
+        }
+
+        return logs;
+    }
+
+    /**
+     * @param level the level of the logs to return
+     * @param orMoreSevere true if the logs with a level more severe than the passed one should also be returned
+     * @return the matching logs kept in memory which are not only in the file, in order
+     */
+    private List<LogEvent> getMemoryLogs(LogLevel level, boolean orMoreSevere)
+    {
+        if (!isRemovedFrom(this.memoryStart)) {
+            return orMoreSevere ? super.getLogsFrom(level) : super.getLogs(level);
+        }
+
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+
+        int position = this.memoryStart;
+        for (Iterator<LogEvent> it = super.iterator(); it.hasNext(); ++position) {
+            LogEvent logEvent = it.next();
+            int ordinal = logEvent.getLevel().ordinal();
+            boolean matches = orMoreSevere ? ordinal <= level.ordinal() : ordinal == level.ordinal();
+            if (matches && !isRemoved(position)) {
+                logs.add(logEvent);
+            }
+        }
+
+        return logs;
+    }
+
+    /**
+     * @param position the position of the log to remove from the queue
+     * @param level the level of the log
+     */
+    private synchronized void remove(int position, LogLevel level)
+    {
+        BitSet levelRemoved = this.removed[level.ordinal()];
+        if (position >= this.start && position < getEnd() && !levelRemoved.get(position)) {
+            levelRemoved.set(position);
+            ++this.removedCounts[level.ordinal()];
+        }
+    }
+
+    /**
+     * Remove the first log of the queue, without reading it.
+     */
+    private void discardFirst()
+    {
+        for (int i = 0; i < this.removed.length; ++i) {
+            if (this.removed[i].get(this.start)) {
+                this.removed[i].clear(this.start);
+                --this.removedCounts[i];
+            }
+        }
+
+        if (this.start == this.memoryStart) {
+            super.poll();
+            ++this.memoryStart;
+        }
+
+        ++this.start;
+    }
+
+    @Override
+    protected void dropOldest()
+    {
+        // Skip the logs which have already been removed
+        while (isRemoved(this.start)) {
+            discardFirst();
+        }
+
+        discardFirst();
+    }
+
+    // Queue
+
+    @Override
+    public synchronized boolean offer(LogEvent logEvent)
+    {
+        store(logEvent);
+
+        super.offer(logEvent);
+
+        evict();
+
+        return true;
+    }
+
+    @Override
+    public synchronized LogEvent poll()
+    {
+        while (this.start < getEnd()) {
+            LogEvent logEvent = isRemoved(this.start) ? null : get(this.start);
+
+            discardFirst();
+
+            if (logEvent != null) {
+                return logEvent;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized LogEvent peek()
+    {
+        for (int position = this.start; position < getEnd(); ++position) {
+            LogEvent logEvent = isRemoved(position) ? null : get(position);
+
+            if (logEvent != null) {
+                return logEvent;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized boolean remove(Object object)
+    {
+        for (Iterator<LogEvent> it = iterator(); it.hasNext();) {
+            if (it.next().equals(object)) {
+                it.remove();
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        close();
+
+        // Don't read the logs which are only in the file
+        this.start = this.memoryStart;
+        super.clear();
+
+        this.start = 0;
+        this.memoryStart = 0;
+        this.fileEnd = 0;
+        for (int i = 0; i < this.removed.length; ++i) {
+            this.removed[i].clear();
+            this.removedCounts[i] = 0;
+        }
+        this.file = null;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object object)
+    {
+        for (LogEvent logEvent : this) {
+            if (logEvent.equals(object)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public Object[] toArray()
+    {
+        return toList().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array)
+    {
+        return toList().toArray(array);
+    }
+
+    private List<LogEvent> toList()
+    {
+        List<LogEvent> logs = new ArrayList<LogEvent>(size());
+        for (LogEvent logEvent : this) {
+            logs.add(logEvent);
+        }
+
+        return logs;
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        final int iteratorStart;
+        synchronized (this) {
+            iteratorStart = this.start;
+        }
+
+        return new Iterator<LogEvent>()
+        {
+            /**
+             * The position of the log at {@link #pageIndex}.
+             */
+            private int position = iteratorStart;
+
+            private List<LogEvent> page = Collections.emptyList();
+
+            private int pageIndex;
+
+            /**
+             * The position of the last returned log, -1 if it can't be removed.
+             */
+            private int last = -1;
+
+            private LogEvent lastLogEvent;
+
+            @Override
+            public boolean hasNext()
+            {
+                synchronized (FileLogQueue.this) {
+                    do {
+                        if (this.pageIndex == this.page.size()) {
+                            // The logs before the start of the queue have been polled
+                            this.position = Math.max(this.position, start);
+                            this.page = getPage(this.position);
+                            this.pageIndex = 0;
+                        } else if (isRemoved(this.position)) {
+                            ++this.pageIndex;
+                            ++this.position;
+                        } else {
+                            return true;
+                        }
+                    } while (!this.page.isEmpty());
+
+                    return false;
+                }
+            }
+
+            @Override
+            public LogEvent next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                this.last = this.position++;
+                this.lastLogEvent = this.page.get(this.pageIndex++);
+
+                return this.lastLogEvent;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (this.last < 0) {
+                    throw new IllegalStateException();
+                }
+
+                FileLogQueue.this.remove(this.last, this.lastLogEvent.getLevel());
+                this.last = -1;
+            }
+        };
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return getFileSize() + super.size() - getRemovedCount();
+    }
+
+    @Override
+    public synchronized List<LogEvent> getLogs(int offset, int limit)
+    {
+        if (getRemovedCount() > 0) {
+            // The positions don't match the offset anymore
+            return super.getLogs(offset, limit);
+        }
+
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+
+        if (offset < getFileSize()) {
+            logs.addAll(readFile(this.start + offset, Math.min(limit, getFileSize() - offset)));
+        }
+
+        if (logs.size() < limit) {
+            logs.addAll(getMemoryLogs(Math.max(offset - getFileSize(), 0), limit - logs.size()));
+        }
+
+        return logs;
+    }
+
+    @Override
+    public synchronized List<LogEvent> getLogs(LogLevel level)
+    {
+        List<LogEvent> logs = new ArrayList<LogEvent>(readFile(level, false));
+        logs.addAll(getMemoryLogs(level, false));
+
+        return logs;
+    }
+
+    @Override
+    public synchronized List<LogEvent> getLogsFrom(LogLevel level)
+    {
+        List<LogEvent> logs = new ArrayList<LogEvent>(readFile(level, true));
+        logs.addAll(getMemoryLogs(level, true));
+
+        return logs;
+    }
+
+    @Override
+    public synchronized List<LogEvent> getLogsFrom(LogLevel level, String filter, int offset, int limit)
+    {
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+
+        // Use the level indexes of the file for the logs it contains
+        int skipped = 0;
+        LogFile logFile = this.start < this.fileEnd ? getFile() : null;
+        if (logFile != null) {
+            try {
+                skipped = logFile.getLogsFrom(level, filter, this.start, offset, limit, logs);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read logs in folder [{}]", this.folder, e);
+            }
+        }
+
+        // Go through the logs which could not be stored in the file
+        int position = this.memoryStart;
+        for (Iterator<LogEvent> it = super.iterator(); it.hasNext() && logs.size() < limit; ++position) {
+            LogEvent logEvent = it.next();
+            if (position >= this.fileEnd && !isRemoved(position) && LogFile.matches(logEvent, level, filter)) {
+                if (skipped < offset) {
+                    ++skipped;
+                } else {
+                    logs.add(logEvent);
+                }
+            }
+        }
+
+        return logs;
+    }
+
+    @Override
+    public synchronized int getLogCountFrom(LogLevel level, String filter)
+    {
+        if (StringUtils.isEmpty(filter)) {
+            // Use the level counts
+            return super.getLogCountFrom(level, filter);
+        }
+
+        int count = 0;
+
+        LogFile logFile = this.start < this.fileEnd ? getFile() : null;
+        if (logFile != null) {
+            try {
+                count = logFile.getLogCountFrom(level, filter, this.start);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read logs in folder [{}]", this.folder, e);
+            }
+        }
+
+        // Go through the logs which could not be stored in the file
+        int position = this.memoryStart;
+        for (Iterator<LogEvent> it = super.iterator(); it.hasNext(); ++position) {
+            LogEvent logEvent = it.next();
+            if (position >= this.fileEnd && !isRemoved(position) && LogFile.matches(logEvent, level, filter)) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public synchronized int getLogCount(LogLevel level)
+    {
+        int count = super.getLogCount(level) - this.removedCounts[level.ordinal()];
+
+        LogFile logFile = getFileSize() > 0 ? getFile() : null;
+        if (logFile != null) {
+            try {
+                count += logFile.getLogCount(level, this.start, this.memoryStart);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read logs in folder [{}]", this.folder, e);
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public synchronized boolean containLogsFrom(LogLevel level)
+    {
+        for (int i = 0; i <= level.ordinal(); ++i) {
+            if (getLogCount(LogLevel.values()[i]) > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
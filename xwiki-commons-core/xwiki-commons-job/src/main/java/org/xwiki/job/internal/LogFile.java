@@ -0,0 +1,776 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.job.internal.xstream.SafeXStream;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
+
+/**
+ * Append-only storage of {@link LogEvent}s in a folder.
+ * <p>
+ * The logs are stored in several files:
+ * <ul>
+ * <li>{@value #FILENAME_DATA}: the logs one after the other, each one being the size of its content as an int
+ * followed by its content serialized with XStream (without indentation)</li>
+ * <li>{@value #FILENAME_INDEX}: for each log the position of its content in {@value #FILENAME_DATA} as a long
+ * followed by the ordinal of its level as a byte, which allows accessing any log without reading the previous
+ * ones</li>
+ * <li>one {@code log.<level>.idx} file per level: for each log of the level its position in the queue as an int
+ * followed by the position of its content in {@value #FILENAME_DATA} as a long, which allows going through the logs
+ * of some levels without reading the other ones</li>
+ * </ul>
+ * <p>
+ * The files are never rewritten: the logs removed from the queue are only ignored when reading the logs by level (see
+ * {@link #setIgnored(BitSet)}).
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class LogFile
+{
+    /**
+     * The name of the file containing the logs.
+     */
+    public static final String FILENAME_DATA = "log.dat";
+
+    /**
+     * The name of the file containing the position and level of each log.
+     */
+    public static final String FILENAME_INDEX = "log.idx";
+
+    /**
+     * The size of a log entry in the index file: a long position and a byte level.
+     */
+    private static final int INDEX_ENTRY_SIZE = 9;
+
+    /**
+     * The size of a log entry in a level index file: an int position in the queue and a long position in the data
+     * file.
+     */
+    private static final int LEVEL_INDEX_ENTRY_SIZE = 12;
+
+    /**
+     * The number of index entries read at once when going through an index.
+     */
+    private static final int INDEX_BLOCK_SIZE = 1024;
+
+    private static final int INT_SIZE = Integer.SIZE / Byte.SIZE;
+
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    private static final String WRITE_MODE = "rw";
+
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    /**
+     * Used to serialize and unserialize the logs. XStream is thread safe once configured.
+     */
+    private static final XStream XSTREAM = new SafeXStream();
+
+    private final File dataFile;
+
+    private final File indexFile;
+
+    private final File[] levelIndexFiles = new File[LEVELS.length];
+
+    /**
+     * The number of logs in the file.
+     */
+    private int size;
+
+    private FileChannel dataWriter;
+
+    private FileChannel indexWriter;
+
+    private FileChannel[] levelIndexWriters;
+
+    /**
+     * The position where to write the next log in the data file.
+     */
+    private long dataLength;
+
+    /**
+     * The number of logs of each level, known once the files are opened to add logs.
+     */
+    private int[] levelCounts;
+
+    /**
+     * The positions of the logs to ignore when reading the logs by level, for each level.
+     */
+    private BitSet[] ignored = new BitSet[LEVELS.length];
+
+    /**
+     * Go through the entries of a level index file, skipping the ignored logs.
+     *
+     * @version $Id$
+     */
+    private static final class LevelCursor implements Closeable
+    {
+        private final FileInputStream stream;
+
+        private final int end;
+
+        private final BitSet ignored;
+
+        private int next;
+
+        private ByteBuffer block;
+
+        private int position;
+
+        private long offset;
+
+        LevelCursor(File file, int start, int end, BitSet ignored) throws IOException
+        {
+            this.stream = new FileInputStream(file);
+            this.next = start;
+            this.end = end;
+            this.ignored = ignored;
+        }
+
+        /**
+         * @return true if there was a next entry
+         * @throws IOException when failing to read the index
+         */
+        boolean advance() throws IOException
+        {
+            do {
+                if (this.block == null || !this.block.hasRemaining()) {
+                    if (this.next >= this.end) {
+                        return false;
+                    }
+
+                    int count = Math.min(INDEX_BLOCK_SIZE, this.end - this.next);
+                    this.block = ByteBuffer.allocate(count * LEVEL_INDEX_ENTRY_SIZE);
+                    readFully(this.stream.getChannel(), this.block, (long) this.next * LEVEL_INDEX_ENTRY_SIZE);
+                    this.block.flip();
+                    this.next += count;
+                }
+
+                this.position = this.block.getInt();
+                this.offset = this.block.getLong();
+            } while (this.ignored.get(this.position));
+
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.stream.close();
+        }
+    }
+
+    /**
+     * Open the logs stored in the passed folder.
+     *
+     * @param folder the folder containing the files
+     */
+    public LogFile(File folder)
+    {
+        this(folder, (int) (new File(folder, FILENAME_INDEX).length() / INDEX_ENTRY_SIZE));
+    }
+
+    /**
+     * @param folder the folder containing the files
+     * @param size the number of logs already stored in the files and to keep, anything after them is overwritten by
+     *            the next {@link #append(LogEvent)}
+     */
+    public LogFile(File folder, int size)
+    {
+        this.dataFile = new File(folder, FILENAME_DATA);
+        this.indexFile = new File(folder, FILENAME_INDEX);
+        for (LogLevel level : LEVELS) {
+            this.levelIndexFiles[level.ordinal()] = getLevelIndexFile(folder, level);
+            this.ignored[level.ordinal()] = new BitSet();
+        }
+        this.size = size;
+    }
+
+    private static File getLevelIndexFile(File folder, LogLevel level)
+    {
+        return new File(folder, "log." + level.name().toLowerCase(Locale.ROOT) + ".idx");
+    }
+
+    /**
+     * @param folder a folder
+     * @return true if the folder contains stored logs
+     */
+    public static boolean exists(File folder)
+    {
+        return new File(folder, FILENAME_INDEX).exists();
+    }
+
+    /**
+     * @param folder a folder
+     * @return the files used to store logs in the passed folder
+     */
+    public static List<File> getFiles(File folder)
+    {
+        List<File> files = new ArrayList<File>(LEVELS.length + 2);
+        files.add(new File(folder, FILENAME_DATA));
+        files.add(new File(folder, FILENAME_INDEX));
+        for (LogLevel level : LEVELS) {
+            files.add(getLevelIndexFile(folder, level));
+        }
+
+        return files;
+    }
+
+    /**
+     * @param logEvent a log
+     * @param level the less severe level of the logs to accept
+     * @param filter the text the message of the logs to accept should contain (ignoring the case), {@code null} or
+     *            empty to accept any message
+     * @return true if the passed log is accepted
+     */
+    public static boolean matches(LogEvent logEvent, LogLevel level, String filter)
+    {
+        return logEvent.getLevel().ordinal() <= level.ordinal()
+            && (StringUtils.isEmpty(filter) || StringUtils.containsIgnoreCase(logEvent.getFormattedMessage(), filter));
+    }
+
+    /**
+     * @param ignored for each level, the positions of the logs to ignore when reading the logs by level (i.e. with
+     *            {@link #getLogs(LogLevel, boolean, int, int)} and {@link #getLogsFrom(LogLevel, String, int, int, int,
+     *            List)}), usually the logs removed from the queue. The passed sets are not copied.
+     */
+    public synchronized void setIgnored(BitSet[] ignored)
+    {
+        this.ignored = ignored;
+    }
+
+    /**
+     * @return true if some logs of the passed range are ignored
+     */
+    private boolean isIgnored(int from, int to)
+    {
+        for (BitSet levelIgnored : this.ignored) {
+            int position = levelIgnored.nextSetBit(from);
+            if (position >= 0 && position < to) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the number of logs in the file
+     */
+    public synchronized int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @param logEvent the log to add at the end of the file
+     * @throws IOException when failing to write the log
+     */
+    public synchronized void append(LogEvent logEvent) throws IOException
+    {
+        if (this.dataWriter == null) {
+            openWriters();
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        // Make room for the size of the content
+        stream.write(new byte[INT_SIZE]);
+        Writer writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
+        XSTREAM.marshal(logEvent, new CompactWriter(writer));
+        writer.flush();
+
+        ByteBuffer data = ByteBuffer.wrap(stream.toByteArray());
+        data.putInt(0, data.capacity() - INT_SIZE);
+
+        int level = logEvent.getLevel().ordinal();
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(this.dataLength);
+        entry.put((byte) level);
+        entry.flip();
+
+        ByteBuffer levelEntry = ByteBuffer.allocate(LEVEL_INDEX_ENTRY_SIZE);
+        levelEntry.putInt(this.size);
+        levelEntry.putLong(this.dataLength);
+        levelEntry.flip();
+
+        writeFully(this.dataWriter, data, this.dataLength);
+        writeFully(this.indexWriter, entry, (long) this.size * INDEX_ENTRY_SIZE);
+        writeFully(this.levelIndexWriters[level], levelEntry, (long) this.levelCounts[level] * LEVEL_INDEX_ENTRY_SIZE);
+
+        this.dataLength += data.capacity();
+        ++this.size;
+        ++this.levelCounts[level];
+    }
+
+    private void openWriters() throws IOException
+    {
+        this.dataFile.getParentFile().mkdirs();
+
+        // Forget anything written after the logs to keep
+        long length = getDataLength();
+        int[] counts = new int[LEVELS.length];
+        for (LogLevel level : LEVELS) {
+            counts[level.ordinal()] = getLevelCount(level, this.size);
+        }
+
+        List<FileChannel> channels = new ArrayList<FileChannel>(LEVELS.length + 2);
+        try {
+            channels.add(new RandomAccessFile(this.dataFile, WRITE_MODE).getChannel());
+            channels.add(new RandomAccessFile(this.indexFile, WRITE_MODE).getChannel());
+            for (File levelIndexFile : this.levelIndexFiles) {
+                channels.add(new RandomAccessFile(levelIndexFile, WRITE_MODE).getChannel());
+            }
+
+            channels.get(0).truncate(length);
+            channels.get(1).truncate((long) this.size * INDEX_ENTRY_SIZE);
+            for (LogLevel level : LEVELS) {
+                channels.get(level.ordinal() + 2).truncate((long) counts[level.ordinal()] * LEVEL_INDEX_ENTRY_SIZE);
+            }
+        } catch (IOException e) {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+
+            throw e;
+        }
+
+        this.dataWriter = channels.get(0);
+        this.indexWriter = channels.get(1);
+        this.levelIndexWriters = channels.subList(2, channels.size()).toArray(new FileChannel[LEVELS.length]);
+        this.dataLength = length;
+        this.levelCounts = counts;
+    }
+
+    private long getDataLength() throws IOException
+    {
+        if (this.size == 0) {
+            return 0;
+        }
+
+        long position = readIndex(this.size - 1, 1).getLong();
+
+        FileInputStream data = new FileInputStream(this.dataFile);
+        try {
+            ByteBuffer length = ByteBuffer.allocate(INT_SIZE);
+            readFully(data.getChannel(), length, position);
+
+            return position + length.capacity() + length.getInt(0);
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * @param level a level
+     * @param position a position in the queue
+     * @return the number of logs of the passed level before the passed position
+     */
+    private int getLevelCount(LogLevel level, int position) throws IOException
+    {
+        if (this.levelCounts != null && position == this.size) {
+            return this.levelCounts[level.ordinal()];
+        }
+
+        File levelIndexFile = this.levelIndexFiles[level.ordinal()];
+        if (position == 0 || !levelIndexFile.exists()) {
+            return 0;
+        }
+
+        FileInputStream index = new FileInputStream(levelIndexFile);
+        try {
+            FileChannel channel = index.getChannel();
+            ByteBuffer entry = ByteBuffer.allocate(INT_SIZE);
+
+            // Binary search of the first entry not before the passed position
+            int low = 0;
+            int high = (int) (channel.size() / LEVEL_INDEX_ENTRY_SIZE);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                entry.clear();
+                readFully(channel, entry, (long) middle * LEVEL_INDEX_ENTRY_SIZE);
+                if (entry.getInt(0) < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Release the files opened to write logs. They are opened again if more logs are added.
+     *
+     * @throws IOException when failing to close the files
+     */
+    public synchronized void close() throws IOException
+    {
+        if (this.dataWriter != null) {
+            List<FileChannel> channels = new ArrayList<FileChannel>(LEVELS.length + 2);
+            channels.add(this.dataWriter);
+            channels.add(this.indexWriter);
+            Collections.addAll(channels, this.levelIndexWriters);
+
+            this.dataWriter = null;
+            this.indexWriter = null;
+            this.levelIndexWriters = null;
+            this.levelCounts = null;
+
+            IOException exception = null;
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * @param offset the position of the first log to return
+     * @param limit the maximum number of logs to return
+     * @return the logs between {@code offset} (included) and {@code offset + limit} (excluded), in order
+     * @throws IOException when failing to read the logs
+     */
+    public synchronized List<LogEvent> getLogs(int offset, int limit) throws IOException
+    {
+        int end = (int) Math.min((long) offset + limit, this.size);
+        if (offset >= end) {
+            return Collections.emptyList();
+        }
+
+        List<LogEvent> logs = new ArrayList<LogEvent>(end - offset);
+
+        FileInputStream data = new FileInputStream(this.dataFile);
+        try {
+            // The logs are contiguous
+            long position = readIndex(offset, 1).getLong();
+            for (int i = offset; i < end; ++i) {
+                ByteBuffer content = readContent(data.getChannel(), position);
+                position += INT_SIZE + content.capacity();
+
+                logs.add(toLogEvent(content));
+            }
+        } finally {
+            data.close();
+        }
+
+        return logs;
+    }
+
+    /**
+     * @param level the level of the logs to return
+     * @param orMoreSevere true if the logs with a level more severe than the passed one should also be returned
+     * @param from the position of the first log to consider
+     * @param to the position after the last log to consider
+     * @return the matching logs, in order
+     * @throws IOException when failing to read the logs
+     */
+    public synchronized List<LogEvent> getLogs(LogLevel level, boolean orMoreSevere, int from, int to)
+        throws IOException
+    {
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+
+        List<LogLevel> levels =
+            orMoreSevere ? Arrays.asList(LEVELS).subList(0, level.ordinal() + 1) : Collections.singletonList(level);
+        read(levels, null, from, Math.min(to, this.size), 0, Integer.MAX_VALUE, logs);
+
+        return logs;
+    }
+
+    /**
+     * Get a page of the logs matching some criteria, reading only the logs of the requested levels.
+     *
+     * @param level the less severe level of the logs to return
+     * @param filter the text the message of the logs to return should contain (ignoring the case), {@code null} or
+     *            empty to return all the logs of the requested levels
+     * @param from the position of the first log to consider
+     * @param offset the number of matching logs to skip
+     * @param limit the maximum number of logs to return
+     * @param logs where to add the matching logs, in order
+     * @return the number of matching logs which have been skipped
+     * @throws IOException when failing to read the logs
+     */
+    public synchronized int getLogsFrom(LogLevel level, String filter, int from, int offset, int limit,
+        List<LogEvent> logs) throws IOException
+    {
+        if (level == LEVELS[LEVELS.length - 1] && StringUtils.isEmpty(filter) && !isIgnored(from, this.size)) {
+            // All the logs are matching
+            int skipped = Math.min(offset, Math.max(this.size - from, 0));
+            logs.addAll(getLogs(from + skipped, limit));
+
+            return skipped;
+        }
+
+        return read(Arrays.asList(LEVELS).subList(0, level.ordinal() + 1), filter, from, this.size, offset, limit,
+            logs);
+    }
+
+    /**
+     * @param level the less severe level of the logs to count
+     * @param filter the text the message of the logs to count should contain (ignoring the case), {@code null} or
+     *            empty to count all the logs of the requested levels
+     * @param from the position of the first log to consider
+     * @return the number of matching logs
+     * @throws IOException when failing to read the logs
+     */
+    public synchronized int getLogCountFrom(LogLevel level, String filter, int from) throws IOException
+    {
+        // Skip all the matching logs
+        return read(Arrays.asList(LEVELS).subList(0, level.ordinal() + 1), filter, from, this.size,
+            Integer.MAX_VALUE, 1, new ArrayList<LogEvent>());
+    }
+
+    /**
+     * @param level the level of the logs to count
+     * @param from the position of the first log to consider
+     * @param to the position after the last log to consider
+     * @return the number of logs of the passed level
+     * @throws IOException when failing to read the index
+     */
+    public synchronized int getLogCount(LogLevel level, int from, int to) throws IOException
+    {
+        int end = Math.min(to, this.size);
+
+        return from < end ? getLevelCount(level, end) - getLevelCount(level, from) : 0;
+    }
+
+    /**
+     * Go through the logs of the passed levels in order, using their level index files.
+     */
+    private int read(List<LogLevel> levels, String filter, int from, int to, int offset, int limit,
+        List<LogEvent> logs) throws IOException
+    {
+        int start = skip(levels, filter, from, to, offset);
+
+        int skipped = count(levels, from, start);
+        int added = 0;
+
+        List<LevelCursor> cursors = new ArrayList<LevelCursor>(levels.size());
+        FileInputStream data = null;
+        try {
+            List<LevelCursor> heads = openCursors(levels, start, to, cursors);
+            while (!heads.isEmpty() && added < limit) {
+                LevelCursor oldest = getOldest(heads);
+
+                if (StringUtils.isEmpty(filter) && skipped < offset) {
+                    // No need to read a log to skip it
+                    ++skipped;
+                } else {
+                    if (data == null) {
+                        data = new FileInputStream(this.dataFile);
+                    }
+
+                    LogEvent logEvent = toLogEvent(readContent(data.getChannel(), oldest.offset));
+                    if (matches(logEvent, LEVELS[LEVELS.length - 1], filter)) {
+                        if (skipped < offset) {
+                            ++skipped;
+                        } else {
+                            logs.add(logEvent);
+                            ++added;
+                        }
+                    }
+                }
+
+                if (!oldest.advance()) {
+                    heads.remove(oldest);
+                }
+            }
+        } finally {
+            close(data, cursors);
+        }
+
+        return skipped;
+    }
+
+    /**
+     * Without filter, find the first log to read using the level indexes instead of going through the skipped ones.
+     *
+     * @return the position after the {@code offset} first logs of the passed levels in the passed range, {@code from}
+     *         if the logs have to be read to know if they match or if some of them are ignored
+     */
+    private int skip(List<LogLevel> levels, String filter, int from, int to, int offset) throws IOException
+    {
+        if (offset <= 0 || !StringUtils.isEmpty(filter) || isIgnored(from, to)) {
+            return from;
+        }
+
+        // Binary search of the last position with at most offset logs of the passed levels before it
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (count(levels, from, middle) <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return the number of logs of the passed levels in the passed range
+     */
+    private int count(List<LogLevel> levels, int from, int to) throws IOException
+    {
+        int count = 0;
+        if (from < to) {
+            for (LogLevel level : levels) {
+                count += getLevelCount(level, to) - getLevelCount(level, from);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param cursors where to add the opened cursors, to close them
+     * @return the cursors positioned on their first log, in other words the ones which are not empty
+     */
+    private List<LevelCursor> openCursors(List<LogLevel> levels, int from, int to, List<LevelCursor> cursors)
+        throws IOException
+    {
+        List<LevelCursor> heads = new ArrayList<LevelCursor>(levels.size());
+        for (LogLevel level : levels) {
+            int start = getLevelCount(level, from);
+            int end = getLevelCount(level, to);
+            if (start < end) {
+                LevelCursor cursor =
+                    new LevelCursor(this.levelIndexFiles[level.ordinal()], start, end, this.ignored[level.ordinal()]);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+        }
+
+        return heads;
+    }
+
+    /**
+     * Merge the levels.
+     */
+    private static LevelCursor getOldest(List<LevelCursor> heads)
+    {
+        LevelCursor oldest = heads.get(0);
+        for (LevelCursor cursor : heads) {
+            if (cursor.position < oldest.position) {
+                oldest = cursor;
+            }
+        }
+
+        return oldest;
+    }
+
+    private static void close(Closeable data, List<LevelCursor> cursors) throws IOException
+    {
+        if (data != null) {
+            data.close();
+        }
+        for (LevelCursor cursor : cursors) {
+            cursor.close();
+        }
+    }
+
+    private ByteBuffer readIndex(int offset, int count) throws IOException
+    {
+        ByteBuffer entries = ByteBuffer.allocate(count * INDEX_ENTRY_SIZE);
+
+        FileInputStream index = new FileInputStream(this.indexFile);
+        try {
+            readFully(index.getChannel(), entries, (long) offset * INDEX_ENTRY_SIZE);
+        } finally {
+            index.close();
+        }
+
+        entries.flip();
+
+        return entries;
+    }
+
+    private ByteBuffer readContent(FileChannel data, long position) throws IOException
+    {
+        ByteBuffer length = ByteBuffer.allocate(INT_SIZE);
+        readFully(data, length, position);
+
+        ByteBuffer content = ByteBuffer.allocate(length.getInt(0));
+        readFully(data, content, position + length.capacity());
+
+        return content;
+    }
+
+    private LogEvent toLogEvent(ByteBuffer content) throws IOException
+    {
+        return (LogEvent) XSTREAM.fromXML(new String(content.array(), DEFAULT_ENCODING));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of log file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -33,6 +34,8 @@
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import static org.mockito.Mockito.when;
@@ -85,6 +88,35 @@ public void testGetJobStatusWithMultipleId() throws Exception
             this.componentManager.getComponentUnderTest().getJobStatus(Arrays.asList("id1", "id2")));
     }
 
+    @Test
+    public void testGetLogs() throws Exception
+    {
+        List<LogEvent> logs =
+            this.componentManager.getComponentUnderTest().getLogs(Arrays.asList("id1", "id2"), LogLevel.WARN, null,
+                0, 10);
+
+        Assert.assertEquals(2, logs.size());
+        Assert.assertEquals(LogLevel.WARN, logs.get(0).getLevel());
+        Assert.assertEquals(LogLevel.ERROR, logs.get(1).getLevel());
+
+        logs =
+            this.componentManager.getComponentUnderTest().getLogs(Arrays.asList("id1", "id2"), LogLevel.INFO, "ERROR",
+                0, 10);
+
+        Assert.assertEquals(1, logs.size());
+        Assert.assertEquals(LogLevel.ERROR, logs.get(0).getLevel());
+
+        Assert.assertTrue(this.componentManager.getComponentUnderTest()
+            .getLogs(Arrays.asList("unknown"), LogLevel.INFO, null, 0, 10).isEmpty());
+
+        Assert.assertEquals(2, this.componentManager.getComponentUnderTest().getLogCount(Arrays.asList("id1", "id2"),
+            LogLevel.WARN, null));
+        Assert.assertEquals(1, this.componentManager.getComponentUnderTest().getLogCount(Arrays.asList("id1", "id2"),
+            LogLevel.INFO, "ERROR"));
+        Assert.assertEquals(0,
+            this.componentManager.getComponentUnderTest().getLogCount(Arrays.asList("unknown"), LogLevel.INFO, null));
+    }
+
     @Test
     public void testGetJobStatusInOldPlace() throws Exception
     {
@@ -136,4 +168,70 @@ public void testStoreJobStatus() throws ComponentLookupException
 
         Assert.assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus(id));
     }
+
+    @Test
+    public void testStoreJobStatusReplacingLogs() throws ComponentLookupException
+    {
+        // The store cleans the logs of the unfinished runs when it's initialized
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+
+        List<String> id = Arrays.asList("newstatus");
+        File storage = new File("target/test/jobs/status");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<Request> jobStatus = new DefaultJobStatus<Request>(request, null, null, false);
+        jobStatus.setLogFolder(DefaultJobStatusStore.getJobLogFolder(storage, id, new Date(1)), 1);
+        jobStatus.getLog().error("error1");
+        jobStatus.getLog().error("error2");
+
+        store.store(jobStatus);
+
+        // The next run doesn't overwrite the logs of the stored status
+        DefaultJobStatus<Request> nextJobStatus = new DefaultJobStatus<Request>(request, null, null, false);
+        File nextLogFolder = DefaultJobStatusStore.getJobLogFolder(storage, id, new Date(2));
+        nextJobStatus.setLogFolder(nextLogFolder, 1);
+        nextJobStatus.getLog().warn("warn1");
+
+        Assert.assertEquals(2, store.getLogs(id, LogLevel.ERROR, null, 0, 10).size());
+
+        store.store(nextJobStatus);
+
+        Assert.assertFalse(nextLogFolder.exists());
+        Assert.assertEquals(DefaultJobStatusStore.getJobFolder(storage, id),
+            ((FileLogQueue) nextJobStatus.getLog()).getFolder());
+        Assert.assertEquals(1, new LogFile(DefaultJobStatusStore.getJobFolder(storage, id)).size());
+        Assert.assertEquals("warn1", store.getLogs(id, LogLevel.WARN, null, 0, 10).get(0).getMessage());
+    }
+
+    @Test
+    public void testStoreNotSerializableJobStatusKeepsLogs() throws ComponentLookupException
+    {
+        // The store cleans the logs of the unfinished runs when it's initialized
+        DefaultJobStatusStore store = this.componentManager.getComponentUnderTest();
+
+        List<String> id = Arrays.asList("notserializable");
+        File storage = new File("target/test/jobs/status");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        JobStatus jobStatus = new DefaultJobStatus<Request>(request, null, null, false);
+
+        store.store(jobStatus);
+
+        // The logs of a status which is not stored on file system stay where they are
+        AbstractJobStatus<Request> nextJobStatus = new AbstractJobStatus<Request>(request, null, null, false)
+        {
+        };
+        File logFolder = DefaultJobStatusStore.getJobLogFolder(storage, id, new Date(1));
+        nextJobStatus.setLogFolder(logFolder, 1);
+        nextJobStatus.getLog().error("error1");
+        nextJobStatus.getLog().error("error2");
+
+        store.store(nextJobStatus);
+
+        Assert.assertEquals(logFolder, ((FileLogQueue) nextJobStatus.getLog()).getFolder());
+        Assert.assertEquals(2, store.getLogs(id, LogLevel.ERROR, null, 0, 10).size());
+        Assert.assertFalse(new File(DefaultJobStatusStore.getJobFolder(storage, id), LogFile.FILENAME_DATA).exists());
+    }
 }
@@ -0,0 +1,279 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Validate {@link FileLogQueue}.
+ *
+ * @version $Id$
+ */
+public class FileLogQueueTest
+{
+    private File folder = new File("target/test/filelogqueue/");
+
+    @Before
+    public void before() throws Exception
+    {
+        FileUtils.deleteDirectory(this.folder);
+    }
+
+    private List<String> getMessages(Iterable<LogEvent> logs)
+    {
+        List<String> messages = new ArrayList<String>();
+        for (LogEvent log : logs) {
+            messages.add(log.getMessage());
+        }
+
+        return messages;
+    }
+
+    private FileLogQueue createQueue()
+    {
+        FileLogQueue queue = new FileLogQueue(this.folder, 2);
+
+        queue.info("info1");
+        queue.error("error1");
+        queue.warn("warn1");
+        queue.error("error2");
+        queue.debug("debug1");
+
+        return queue;
+    }
+
+    // Tests
+
+    @Test
+    public void testLogs() throws Exception
+    {
+        FileLogQueue queue = createQueue();
+
+        // All the logs are in the file
+        Assert.assertEquals(Arrays.asList("info1", "error1", "warn1", "error2", "debug1"),
+            getMessages(new LogFile(this.folder, 5).getLogs(0, 5)));
+
+        Assert.assertEquals(5, queue.size());
+        Assert.assertEquals(Arrays.asList("info1", "error1", "warn1", "error2", "debug1"), getMessages(queue));
+        Assert.assertEquals(Arrays.asList("warn1", "error2"), getMessages(queue.getLogs(2, 2)));
+        Assert.assertEquals(Arrays.asList("debug1"), getMessages(queue.getLogs(4, 10)));
+        Assert.assertEquals(2, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(Arrays.asList("error1", "error2"), getMessages(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertEquals(Arrays.asList("error1", "warn1", "error2"),
+            getMessages(queue.getLogsFrom(LogLevel.WARN)));
+        Assert.assertTrue(queue.containLogsFrom(LogLevel.ERROR));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.TRACE));
+
+        Assert.assertEquals("info1", queue.poll().getMessage());
+        Assert.assertEquals("error1", queue.peek().getMessage());
+        Assert.assertEquals(4, queue.size());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.INFO));
+        Assert.assertEquals(Arrays.asList("error1", "warn1", "error2", "debug1"), getMessages(queue));
+    }
+
+    @Test
+    public void testGetLogsFrom() throws Exception
+    {
+        FileLogQueue queue = createQueue();
+        queue.error("error3");
+
+        Assert.assertEquals(Arrays.asList("error2", "error3"),
+            getMessages(queue.getLogsFrom(LogLevel.ERROR, null, 1, 10)));
+        Assert.assertEquals(Arrays.asList("warn1"), getMessages(queue.getLogsFrom(LogLevel.WARN, null, 1, 1)));
+        Assert.assertEquals(Arrays.asList("error2", "error3"),
+            getMessages(queue.getLogsFrom(LogLevel.TRACE, "ERROR", 1, 10)));
+        Assert.assertEquals(Arrays.asList("warn1", "error2"),
+            getMessages(queue.getLogsFrom(LogLevel.TRACE, null, 2, 2)));
+        Assert.assertTrue(queue.getLogsFrom(LogLevel.ERROR, "info", 0, 10).isEmpty());
+
+        Assert.assertEquals(3, queue.getLogCountFrom(LogLevel.ERROR, null));
+        Assert.assertEquals(4, queue.getLogCountFrom(LogLevel.WARN, null));
+        Assert.assertEquals(3, queue.getLogCountFrom(LogLevel.TRACE, "error"));
+        Assert.assertEquals(0, queue.getLogCountFrom(LogLevel.ERROR, "info"));
+        Assert.assertEquals(1, new LogFile(this.folder).getLogCountFrom(LogLevel.WARN, "warn", 0));
+        Assert.assertEquals(2, new LogFile(this.folder).getLogCountFrom(LogLevel.ERROR, "error", 2));
+
+        // Read the logs of the reloaded file
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+        Assert.assertEquals(1, new LogFile(this.folder).getLogsFrom(LogLevel.WARN, null, 0, 1, 2, logs));
+        Assert.assertEquals(Arrays.asList("warn1", "error2"), getMessages(logs));
+        Assert.assertEquals(3, new LogFile(this.folder).getLogCount(LogLevel.ERROR, 0, 6));
+        Assert.assertEquals(1, new LogFile(this.folder).getLogCount(LogLevel.ERROR, 2, 5));
+    }
+
+    @Test
+    public void testGetLastLogs()
+    {
+        FileLogQueue queue = new FileLogQueue(this.folder, 2);
+        for (int i = 0; i < 100; ++i) {
+            queue.info("info" + i);
+            if (i % 10 == 0) {
+                queue.error("error" + i);
+            }
+            queue.warn("warn" + i);
+        }
+
+        int count = queue.getLogCountFrom(LogLevel.ERROR, null);
+        Assert.assertEquals(10, count);
+        Assert.assertEquals(Arrays.asList("error80", "error90"),
+            getMessages(queue.getLogsFrom(LogLevel.ERROR, null, count - 2, 2)));
+        Assert.assertEquals(Arrays.asList("warn98", "warn99"), getMessages(queue.getLogsFrom(LogLevel.WARN, null,
+            queue.getLogCountFrom(LogLevel.WARN, null) - 2, 10)));
+        Assert.assertTrue(queue.getLogsFrom(LogLevel.ERROR, null, count, 10).isEmpty());
+
+        // The removed logs have to be skipped one by one
+        queue.remove(queue.getLogs(LogLevel.ERROR).get(8));
+        Assert.assertEquals(Arrays.asList("error70", "error90"),
+            getMessages(queue.getLogsFrom(LogLevel.ERROR, null, count - 3, 2)));
+    }
+
+    @Test
+    public void testClear()
+    {
+        FileLogQueue queue = createQueue();
+
+        queue.clear();
+
+        Assert.assertEquals(0, queue.size());
+        Assert.assertTrue(queue.isEmpty());
+
+        queue.info("info2");
+        queue.info("info3");
+        queue.info("info4");
+
+        Assert.assertEquals(Arrays.asList("info2", "info3", "info4"), getMessages(queue));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.ERROR));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        FileLogQueue queue = createQueue();
+
+        // error1 is only in the file
+        Iterator<LogEvent> it = queue.iterator();
+        it.next();
+        it.next();
+        it.remove();
+
+        Assert.assertTrue(queue.remove(queue.getLogs(LogLevel.DEBUG).get(0)));
+        Assert.assertFalse(queue.remove(new LogEvent(LogLevel.DEBUG, "debug1", null, null)));
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(Arrays.asList("info1", "warn1", "error2"), getMessages(queue));
+        Assert.assertEquals(Arrays.asList("warn1", "error2"), getMessages(queue.getLogs(1, 5)));
+        Assert.assertEquals(Arrays.asList("error2"), getMessages(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertEquals(Arrays.asList("warn1", "error2"), getMessages(queue.getLogsFrom(LogLevel.WARN)));
+        Assert.assertEquals(Arrays.asList("error2"), getMessages(queue.getLogsFrom(LogLevel.ERROR, null, 0, 5)));
+        Assert.assertEquals(1, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.DEBUG));
+        Assert.assertEquals(1, queue.getLogCountFrom(LogLevel.ERROR, "error"));
+
+        Assert.assertEquals("info1", queue.poll().getMessage());
+        Assert.assertEquals("warn1", queue.poll().getMessage());
+        Assert.assertEquals(1, queue.size());
+
+        queue.info("info2");
+
+        Assert.assertEquals(Arrays.asList("error2", "info2"), getMessages(queue));
+    }
+
+    @Test
+    public void testRemoveAll()
+    {
+        FileLogQueue queue = createQueue();
+
+        Assert.assertTrue(queue.removeAll(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertEquals(Arrays.asList("info1", "warn1", "debug1"), getMessages(queue));
+        Assert.assertFalse(queue.containLogsFrom(LogLevel.ERROR));
+
+        Assert.assertTrue(queue.retainAll(queue.getLogs(LogLevel.WARN)));
+        Assert.assertEquals(Arrays.asList("warn1"), getMessages(queue));
+        Assert.assertEquals("warn1", queue.peek().getMessage());
+        Assert.assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testMaxSize()
+    {
+        FileLogQueue queue = createQueue();
+
+        queue.setMaxSize(3);
+
+        Assert.assertEquals(3, queue.getMaxSize());
+        Assert.assertEquals(2, queue.getDroppedCount());
+        Assert.assertEquals(Arrays.asList("warn1", "error2", "debug1"), getMessages(queue));
+
+        queue.error("error3");
+
+        Assert.assertEquals(3, queue.getDroppedCount());
+        Assert.assertEquals(Arrays.asList("error2", "debug1", "error3"), getMessages(queue));
+        Assert.assertEquals(2, queue.getLogCount(LogLevel.ERROR));
+        // The removed logs are not counted as dropped
+        queue.remove(queue.peek());
+        queue.info("info2");
+        queue.info("info3");
+
+        Assert.assertEquals(4, queue.getDroppedCount());
+        Assert.assertEquals(Arrays.asList("error3", "info2", "info3"), getMessages(queue));
+        Assert.assertEquals(1, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.DEBUG));
+        Assert.assertTrue(queue.containLogsFrom(LogLevel.ERROR));
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        DefaultJobStatus<Request> status = new DefaultJobStatus<Request>(new DefaultRequest(), null, null, false);
+        status.setLogFolder(this.folder, 1);
+
+        status.getLog().error("error1");
+        status.getLog().info("info1");
+        status.getLog().warn("warn1");
+
+        JobStatusSerializer serializer = new JobStatusSerializer();
+        File statusFile = new File(this.folder, "status.xml");
+        serializer.write(status, statusFile);
+
+        // The logs are not serialized with the status
+        Assert.assertFalse(FileUtils.readFileToString(statusFile).contains("warn1"));
+
+        JobStatus loadedStatus = serializer.read(statusFile);
+        ((FileLogQueue) loadedStatus.getLog()).setFolder(this.folder);
+
+        Assert.assertEquals(3, loadedStatus.getLog().size());
+        Assert.assertEquals(Arrays.asList("error1", "info1", "warn1"), getMessages(loadedStatus.getLog()));
+        Assert.assertEquals(Arrays.asList("error1"), getMessages(loadedStatus.getLog().getLogs(LogLevel.ERROR)));
+    }
+}
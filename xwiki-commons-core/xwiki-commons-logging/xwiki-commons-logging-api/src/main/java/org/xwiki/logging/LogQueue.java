@@ -19,17 +19,30 @@
  */
 package org.xwiki.logging;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Marker;
 import org.xwiki.logging.event.LogEvent;
 
 /**
  * A queue of {@link LogEvent}s.
+ * <p>
+ * The logs are also indexed by level so that the severity queries (like {@link #containLogsFrom(LogLevel)}) don't
+ * need to go through all the logs. The number of logs to keep can be bounded (see {@link #setMaxSize(int)}), in which
+ * case the oldest logs are dropped.
+ * <p>
+ * Keeping the index consistent with the queue means that the methods modifying the queue (and the ones reading the
+ * index) hold the lock of the queue: adding a log is not lock free anymore and costs an additional index entry. The
+ * bulk removals go through {@link #iterator()}, which updates the index. Note that {@code removeIf}, which can't be
+ * overridden while this API is compatible with Java 7, bypasses the index on Java 9 and later and must not be used.
  *
  * @version $Id$
  * @since 3.2M3
@@ -41,6 +54,356 @@ public class LogQueue extends ConcurrentLinkedQueue<LogEvent> implements Logger
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The maximum number of logs to keep, 0 for no limit.
+     */
+    private int maxSize;
+
+    /**
+     * The number of logs dropped because there was more than {@link #maxSize} logs.
+     */
+    private long droppedCount;
+
+    /**
+     * The logs by level. Rebuilt when needed (e.g. after the queue has been deserialized) and only accessed while
+     * holding the lock of this queue.
+     */
+    private transient LogIndex index;
+
+    /**
+     * A log and its position in the queue.
+     *
+     * @version $Id$
+     */
+    private static final class IndexedLogEvent
+    {
+        private final long sequence;
+
+        private final LogEvent logEvent;
+
+        IndexedLogEvent(long sequence, LogEvent logEvent)
+        {
+            this.sequence = sequence;
+            this.logEvent = logEvent;
+        }
+    }
+
+    /**
+     * The logs of each level, in order.
+     *
+     * @version $Id$
+     */
+    private static final class LogIndex
+    {
+        private final List<ArrayDeque<IndexedLogEvent>> levels;
+
+        private long sequence;
+
+        private int size;
+
+        LogIndex()
+        {
+            this.levels = new ArrayList<>(LogLevel.values().length);
+            for (int i = 0; i < LogLevel.values().length; ++i) {
+                this.levels.add(new ArrayDeque<IndexedLogEvent>());
+            }
+        }
+
+        void add(LogEvent logEvent)
+        {
+            this.levels.get(logEvent.getLevel().ordinal()).add(new IndexedLogEvent(this.sequence++, logEvent));
+            ++this.size;
+        }
+
+        void remove(LogEvent logEvent)
+        {
+            // The removed log is usually the oldest one. Compare the instances since the queue can contain equal logs.
+            Iterator<IndexedLogEvent> it = this.levels.get(logEvent.getLevel().ordinal()).iterator();
+            while (it.hasNext()) {
+                if (it.next().logEvent == logEvent) {
+                    it.remove();
+                    --this.size;
+
+                    break;
+                }
+            }
+        }
+
+        int count(LogLevel level)
+        {
+            return this.levels.get(level.ordinal()).size();
+        }
+
+        /**
+         * @param level the less severe level to return
+         * @return the logs of the passed level or a more severe level, in order
+         */
+        List<LogEvent> getLogsFrom(LogLevel level)
+        {
+            List<Iterator<IndexedLogEvent>> iterators = new ArrayList<>(level.ordinal() + 1);
+            List<IndexedLogEvent> heads = new ArrayList<>(level.ordinal() + 1);
+            int count = 0;
+            for (int i = 0; i <= level.ordinal(); ++i) {
+                ArrayDeque<IndexedLogEvent> levelLogs = this.levels.get(i);
+                if (!levelLogs.isEmpty()) {
+                    Iterator<IndexedLogEvent> iterator = levelLogs.iterator();
+                    iterators.add(iterator);
+                    heads.add(iterator.next());
+                    count += levelLogs.size();
+                }
+            }
+
+            // Merge the levels
+            List<LogEvent> logs = new ArrayList<>(count);
+            while (!heads.isEmpty()) {
+                int oldest = 0;
+                for (int i = 1; i < heads.size(); ++i) {
+                    if (heads.get(i).sequence < heads.get(oldest).sequence) {
+                        oldest = i;
+                    }
+                }
+
+                logs.add(heads.get(oldest).logEvent);
+
+                if (iterators.get(oldest).hasNext()) {
+                    heads.set(oldest, iterators.get(oldest).next());
+                } else {
+                    heads.remove(oldest);
+                    iterators.remove(oldest);
+                }
+            }
+
+            return logs;
+        }
+    }
+
+    /**
+     * Create a queue keeping all the logs.
+     */
+    public LogQueue()
+    {
+    }
+
+    /**
+     * @param maxSize the maximum number of logs to keep, 0 for no limit
+     * @since 6.4M3
+     */
+    public LogQueue(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    private LogIndex getIndex()
+    {
+        if (this.index == null) {
+            LogIndex newIndex = new LogIndex();
+            for (Iterator<LogEvent> it = super.iterator(); it.hasNext();) {
+                newIndex.add(it.next());
+            }
+            this.index = newIndex;
+        }
+
+        return this.index;
+    }
+
+    /**
+     * @return the maximum number of logs to keep, 0 for no limit
+     * @since 6.4M3
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * @param maxSize the maximum number of logs to keep, 0 for no limit. The oldest logs are dropped when there is
+     *            more.
+     * @since 6.4M3
+     */
+    public synchronized void setMaxSize(int maxSize)
+    {
+        this.maxSize = maxSize;
+
+        trim();
+    }
+
+    /**
+     * @return the number of logs dropped because there was more than {@link #getMaxSize()} logs
+     * @since 6.4M3
+     */
+    public synchronized long getDroppedCount()
+    {
+        return this.droppedCount;
+    }
+
+    /**
+     * @param droppedCount the number of logs dropped because there was more than {@link #getMaxSize()} logs (e.g. when
+     *            copying the state of another queue)
+     * @since 6.4M3
+     */
+    protected synchronized void setDroppedCount(long droppedCount)
+    {
+        this.droppedCount = droppedCount;
+    }
+
+    private void trim()
+    {
+        if (this.maxSize > 0) {
+            while (size() > this.maxSize) {
+                dropOldest();
+                ++this.droppedCount;
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest log of the queue because there is more than {@link #getMaxSize()} logs. Called while holding
+     * the lock of the queue.
+     *
+     * @since 6.4M3
+     */
+    protected void dropOldest()
+    {
+        getIndex().remove(super.poll());
+    }
+
+    // Queue
+
+    @Override
+    public synchronized boolean offer(LogEvent logEvent)
+    {
+        LogIndex currentIndex = getIndex();
+
+        super.offer(logEvent);
+        currentIndex.add(logEvent);
+
+        trim();
+
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends LogEvent> logEvents)
+    {
+        if (logEvents == this) {
+            throw new IllegalArgumentException();
+        }
+
+        boolean modified = false;
+        for (LogEvent logEvent : logEvents) {
+            modified |= offer(logEvent);
+        }
+
+        return modified;
+    }
+
+    @Override
+    public synchronized LogEvent poll()
+    {
+        LogIndex currentIndex = getIndex();
+
+        LogEvent logEvent = super.poll();
+        if (logEvent != null) {
+            currentIndex.remove(logEvent);
+        }
+
+        return logEvent;
+    }
+
+    @Override
+    public synchronized boolean remove(Object object)
+    {
+        LogIndex currentIndex = getIndex();
+
+        // Find the removed instance, which is not necessarily the passed one, to remove it from the index
+        for (Iterator<LogEvent> it = super.iterator(); it.hasNext();) {
+            LogEvent logEvent = it.next();
+            if (logEvent.equals(object)) {
+                it.remove();
+                currentIndex.remove(logEvent);
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> objects)
+    {
+        return removeAll(objects, true);
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> objects)
+    {
+        return removeAll(objects, false);
+    }
+
+    private boolean removeAll(Collection<?> objects, boolean contained)
+    {
+        boolean modified = false;
+        for (Iterator<LogEvent> it = iterator(); it.hasNext();) {
+            if (objects.contains(it.next()) == contained) {
+                it.remove();
+                modified = true;
+            }
+        }
+
+        return modified;
+    }
+
+    @Override
+    public void clear()
+    {
+        for (LogEvent logEvent = poll(); logEvent != null; logEvent = poll()) {
+            // Remove all the logs
+        }
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        final Iterator<LogEvent> iterator = super.iterator();
+
+        return new Iterator<LogEvent>()
+        {
+            private LogEvent current;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public LogEvent next()
+            {
+                this.current = iterator.next();
+
+                return this.current;
+            }
+
+            @Override
+            public void remove()
+            {
+                synchronized (LogQueue.this) {
+                    LogIndex currentIndex = getIndex();
+
+                    iterator.remove();
+                    currentIndex.remove(this.current);
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return getIndex().size;
+    }
+
     /**
      * Copy the stored log into a passed {@link org.slf4j.Logger}.
      *
@@ -132,14 +495,12 @@ public void log(LogEvent logEvent)
      * @return the filtered logs
      * @since 4.1RC1
      */
-    public List<LogEvent> getLogs(LogLevel level)
+    public synchronized List<LogEvent> getLogs(LogLevel level)
     {
-        List<LogEvent> levelLogs = new LinkedList<LogEvent>();
+        List<LogEvent> levelLogs = new ArrayList<LogEvent>(getIndex().count(level));
 
-        for (LogEvent log : this) {
-            if (log.getLevel() == level) {
-                levelLogs.add(log);
-            }
+        for (IndexedLogEvent log : getIndex().levels.get(level.ordinal())) {
+            levelLogs.add(log.logEvent);
         }
 
         return levelLogs;
@@ -152,17 +513,108 @@ public List<LogEvent> getLogs(LogLevel level)
      * @return the filtered logs
      * @since 4.2M1
      */
-    public List<LogEvent> getLogsFrom(LogLevel level)
+    public synchronized List<LogEvent> getLogsFrom(LogLevel level)
+    {
+        return getIndex().getLogsFrom(level);
+    }
+
+    /**
+     * Get a page of logs without copying the whole queue.
+     *
+     * @param offset the position of the first log to return
+     * @param limit the maximum number of logs to return
+     * @return the logs between {@code offset} (included) and {@code offset + limit} (excluded), in order
+     * @since 6.4M3
+     */
+    public List<LogEvent> getLogs(int offset, int limit)
     {
-        List<LogEvent> levelLogs = new LinkedList<LogEvent>();
+        List<LogEvent> page = new ArrayList<LogEvent>(Math.min(Math.max(limit, 0), size()));
 
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(level) <= 0) {
-                levelLogs.add(log);
+        int position = 0;
+        for (Iterator<LogEvent> it = iterator(); it.hasNext() && page.size() < limit; ++position) {
+            LogEvent logEvent = it.next();
+            if (position >= offset) {
+                page.add(logEvent);
             }
         }
 
-        return levelLogs;
+        return page;
+    }
+
+    /**
+     * Get a page of the logs matching some criteria without copying the whole queue. Use
+     * {@link #getLogCountFrom(LogLevel, String)} to get the last pages.
+     *
+     * @param level the less severe level of the logs to return
+     * @param filter the text the formatted message of the logs to return should contain (ignoring the case),
+     *            {@code null} or empty to return all the logs of the requested levels
+     * @param offset the number of matching logs to skip
+     * @param limit the maximum number of logs to return
+     * @return the matching logs, in order
+     * @since 6.4M3
+     */
+    public List<LogEvent> getLogsFrom(LogLevel level, String filter, int offset, int limit)
+    {
+        List<LogEvent> page = new ArrayList<LogEvent>();
+
+        int skipped = 0;
+        for (Iterator<LogEvent> it = iterator(); it.hasNext() && page.size() < limit;) {
+            LogEvent logEvent = it.next();
+            if (matches(logEvent, level, filter)) {
+                if (skipped < offset) {
+                    ++skipped;
+                } else {
+                    page.add(logEvent);
+                }
+            }
+        }
+
+        return page;
+    }
+
+    /**
+     * Count the logs matching some criteria, for example to get the last logs with
+     * {@link #getLogsFrom(LogLevel, String, int, int)}.
+     *
+     * @param level the less severe level of the logs to count
+     * @param filter the text the formatted message of the logs to count should contain (ignoring the case),
+     *            {@code null} or empty to count all the logs of the requested levels
+     * @return the number of matching logs
+     * @since 6.4M3
+     */
+    public int getLogCountFrom(LogLevel level, String filter)
+    {
+        int count = 0;
+
+        if (StringUtils.isEmpty(filter)) {
+            for (int i = 0; i <= level.ordinal(); ++i) {
+                count += getLogCount(LogLevel.values()[i]);
+            }
+        } else {
+            for (LogEvent logEvent : this) {
+                if (matches(logEvent, level, filter)) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean matches(LogEvent logEvent, LogLevel level, String filter)
+    {
+        return logEvent.getLevel().ordinal() <= level.ordinal()
+            && (StringUtils.isEmpty(filter) || StringUtils.containsIgnoreCase(logEvent.getFormattedMessage(), filter));
+    }
+
+    /**
+     * @param level the level of the logs to count
+     * @return the number of logs of the passed level
+     * @since 6.4M3
+     */
+    public synchronized int getLogCount(LogLevel level)
+    {
+        return getIndex().count(level);
     }
 
     /**
@@ -172,10 +624,11 @@ public List<LogEvent> getLogsFrom(LogLevel level)
      * @return true if log of provided level or less exist
      * @since 6.0M1
      */
-    public boolean containLogsFrom(LogLevel level)
+    public synchronized boolean containLogsFrom(LogLevel level)
     {
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(level) <= 0) {
+        LogIndex currentIndex = getIndex();
+        for (int i = 0; i <= level.ordinal(); ++i) {
+            if (currentIndex.levels.get(i).size() > 0) {
                 return true;
             }
         }
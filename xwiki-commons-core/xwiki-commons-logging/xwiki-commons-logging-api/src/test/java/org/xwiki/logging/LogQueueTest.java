@@ -19,7 +19,14 @@
  */
 package org.xwiki.logging;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -117,4 +124,185 @@ public void testGetLogsFrom()
         Assert.assertFalse(queue.getLogsFrom(LogLevel.WARN).isEmpty());
         Assert.assertTrue(queue.getLogsFrom(LogLevel.ERROR).isEmpty());
     }
+
+    @Test
+    public void testGetLogs()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.info("info1");
+        queue.error("error1");
+        queue.warn("warn1");
+        queue.error("error2");
+        queue.debug("debug1");
+
+        Assert.assertEquals(2, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.TRACE));
+        Assert.assertEquals(Arrays.asList("error1", "error2"), getMessages(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertEquals(Arrays.asList("error1", "warn1", "error2"),
+            getMessages(queue.getLogsFrom(LogLevel.WARN)));
+        Assert.assertEquals(Arrays.asList("info1", "error1", "warn1", "error2", "debug1"),
+            getMessages(queue.getLogsFrom(LogLevel.TRACE)));
+
+        queue.poll();
+        Iterator<LogEvent> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(Arrays.asList("warn1", "error2"), getMessages(queue.getLogsFrom(LogLevel.WARN)));
+        Assert.assertEquals(1, queue.getLogCount(LogLevel.ERROR));
+    }
+
+    @Test
+    public void testGetLogsPage()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.info("info1");
+        queue.error("error1");
+        queue.warn("warn1");
+
+        Assert.assertEquals(Arrays.asList("error1", "warn1"), getMessages(queue.getLogs(1, 5)));
+        Assert.assertEquals(Arrays.asList("info1"), getMessages(queue.getLogs(0, 1)));
+        Assert.assertTrue(queue.getLogs(3, 5).isEmpty());
+    }
+
+    @Test
+    public void testGetLogsFromWithFilter()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.info("info1");
+        queue.error("error1");
+        queue.warn("warn1");
+        queue.error("error2 {}", "argument");
+
+        Assert.assertEquals(Arrays.asList("warn1", "error2 argument"),
+            getMessages(queue.getLogsFrom(LogLevel.WARN, null, 1, 10)));
+        Assert.assertEquals(Arrays.asList("error1"), getMessages(queue.getLogsFrom(LogLevel.ERROR, null, 0, 1)));
+        Assert.assertEquals(Arrays.asList("error2 argument"),
+            getMessages(queue.getLogsFrom(LogLevel.TRACE, "ARGUMENT", 0, 10)));
+        Assert.assertTrue(queue.getLogsFrom(LogLevel.ERROR, "info", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testGetLogCountFrom()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.info("info1");
+        queue.error("error1");
+        queue.warn("warn1");
+        queue.error("error2 {}", "argument");
+
+        Assert.assertEquals(2, queue.getLogCountFrom(LogLevel.ERROR, null));
+        Assert.assertEquals(4, queue.getLogCountFrom(LogLevel.TRACE, ""));
+        Assert.assertEquals(1, queue.getLogCountFrom(LogLevel.ERROR, "ARGUMENT"));
+        Assert.assertEquals(0, queue.getLogCountFrom(LogLevel.ERROR, "info"));
+
+        // Get the last error
+        Assert.assertEquals(Arrays.asList("error2 argument"), getMessages(
+            queue.getLogsFrom(LogLevel.ERROR, null, queue.getLogCountFrom(LogLevel.ERROR, null) - 1, 1)));
+    }
+
+    @Test
+    public void testMaxSize()
+    {
+        LogQueue queue = new LogQueue(2);
+
+        queue.error("error1");
+        queue.info("info1");
+        queue.info("info2");
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getDroppedCount());
+        Assert.assertFalse(queue.containLogsFrom(LogLevel.WARN));
+        Assert.assertEquals(Arrays.asList("info1", "info2"), getMessages(queue));
+
+        queue.setMaxSize(1);
+
+        Assert.assertEquals(2, queue.getDroppedCount());
+        Assert.assertEquals(Arrays.asList("info2"), getMessages(queue.getLogs(LogLevel.INFO)));
+    }
+
+    @Test
+    public void testRemoveEqualLogs()
+    {
+        LogQueue queue = new LogQueue();
+
+        LogEvent first = queue.addLogEvent(LogLevel.INFO, "same", new Object[0]);
+        queue.error("error");
+        LogEvent second = queue.addLogEvent(LogLevel.INFO, "same", new Object[0]);
+        Assert.assertEquals(first, second);
+
+        for (Iterator<LogEvent> it = queue.iterator(); it.hasNext();) {
+            if (it.next() == second) {
+                it.remove();
+            }
+        }
+
+        Assert.assertEquals(1, queue.getLogs(LogLevel.INFO).size());
+        Assert.assertSame(first, queue.getLogs(LogLevel.INFO).get(0));
+
+        Assert.assertTrue(queue.remove(second));
+        Assert.assertEquals(Arrays.asList("error"), getMessages(queue));
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.INFO));
+    }
+
+    @Test
+    public void testRemoveAll()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.info("info");
+        queue.error("error1");
+        queue.warn("warn");
+        queue.error("error2");
+
+        Assert.assertTrue(queue.removeAll(queue.getLogs(LogLevel.WARN)));
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.WARN));
+
+        Assert.assertTrue(queue.retainAll(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertFalse(queue.retainAll(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertEquals(Arrays.asList("error1", "error2"), getMessages(queue));
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.INFO));
+        Assert.assertEquals(Arrays.asList("error1", "error2"), getMessages(queue.getLogsFrom(LogLevel.TRACE)));
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        LogQueue queue = new LogQueue();
+        queue.error("error");
+        queue.info("info");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(queue);
+        output.close();
+
+        LogQueue deserializedQueue =
+            (LogQueue) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        Assert.assertEquals(2, deserializedQueue.size());
+        Assert.assertTrue(deserializedQueue.containLogsFrom(LogLevel.ERROR));
+
+        deserializedQueue.warn("warn");
+
+        Assert.assertEquals(Arrays.asList("error", "warn"),
+            getMessages(deserializedQueue.getLogsFrom(LogLevel.WARN)));
+    }
+
+    private List<String> getMessages(Iterable<LogEvent> logs)
+    {
+        List<String> messages = new ArrayList<>();
+        for (LogEvent log : logs) {
+            messages.add(log.getFormattedMessage());
+        }
+
+        return messages;
+    }
 }
@@ -27,6 +27,7 @@
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
+import org.slf4j.Marker;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -36,6 +37,8 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogUtils;
+import org.xwiki.logging.event.BeginLogEvent;
+import org.xwiki.logging.event.EndLogEvent;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
@@ -84,6 +87,11 @@ public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implement
      */
     private LogbackUtils utils = new LogbackUtils();
 
+    /**
+     * Cached to avoid a lookup for each log.
+     */
+    private volatile ObservationManager observationManager;
+
     @Override
     public String getName()
     {
@@ -127,26 +135,37 @@ public void onEvent(Event event, Object source, Object data)
      */
     private ObservationManager getObservationManager() throws ComponentLookupException
     {
-        return this.componentManager.getInstance(ObservationManager.class);
+        if (this.observationManager == null) {
+            this.observationManager = this.componentManager.getInstance(ObservationManager.class);
+        }
+
+        return this.observationManager;
     }
 
     @Override
     protected void append(ILoggingEvent event)
     {
-        Throwable throwable = null;
-        IThrowableProxy throwableProxy = event.getThrowableProxy();
-        if (throwableProxy instanceof ThrowableProxy) {
-            throwable = ((ThrowableProxy) throwableProxy).getThrowable();
-        }
-
         try {
+            ObservationManager currentObservationManager = getObservationManager();
+
+            // Most of the time nobody captures the logs
+            if (!currentObservationManager.hasListener(getLogEventClass(event.getMarker()))) {
+                return;
+            }
+
+            Throwable throwable = null;
+            IThrowableProxy throwableProxy = event.getThrowableProxy();
+            if (throwableProxy instanceof ThrowableProxy) {
+                throwable = ((ThrowableProxy) throwableProxy).getThrowable();
+            }
+
             LogLevel logLevel = this.utils.toLogLevel(event.getLevel());
 
             LogEvent logevent =
                 LogUtils.newLogEvent(event.getMarker(), logLevel, event.getMessage(), event.getArgumentArray(),
                     throwable, event.getTimeStamp());
 
-            getObservationManager().notify(logevent, event.getLoggerName(), null);
+            currentObservationManager.notify(logevent, event.getLoggerName(), null);
         } catch (IllegalArgumentException e) {
             this.logger.debug("Unsupported log level [{}]", event.getLevel());
         } catch (ComponentLookupException e) {
@@ -154,6 +173,24 @@ protected void append(ILoggingEvent event)
         }
     }
 
+    /**
+     * @param marker the marker of the log
+     * @return the class of the event {@link LogUtils#newLogEvent(Marker, LogLevel, String, Object[], Throwable, long)}
+     *         creates for the passed marker
+     */
+    private Class<? extends LogEvent> getLogEventClass(Marker marker)
+    {
+        if (marker != null) {
+            if (marker.contains(LogEvent.MARKER_BEGIN)) {
+                return BeginLogEvent.class;
+            } else if (marker.contains(LogEvent.MARKER_END)) {
+                return EndLogEvent.class;
+            }
+        }
+
+        return LogEvent.class;
+    }
+
     /**
      * @return the Logback root logger or null if Logback is not available
      */
@@ -28,6 +28,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.BeginLogEvent;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
@@ -90,6 +91,27 @@ public void verifyThatLoggingGeneratesALogEvent()
         verify(listener).onEvent(eq(expected), eq(getClass().getName()), eq(null));
     }
 
+    /**
+     * Verify that the listeners of the sub classes of {@link LogEvent} receive the corresponding logs.
+     */
+    @Test
+    public void verifyThatLoggingWithMarkerGeneratesABeginLogEvent()
+    {
+        EventListener listener = mock(EventListener.class);
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(
+            Arrays.<Event>asList(new BeginLogEvent(null, LogLevel.INFO, "dummy", null, null)));
+
+        this.observationManager.addListener(listener);
+
+        this.logger.error("error message");
+        this.logger.error(LogEvent.MARKER_BEGIN, "begin message");
+
+        Event expected = new BeginLogEvent(LogEvent.MARKER_BEGIN, LogLevel.ERROR, "begin message", null, null);
+        verify(listener).onEvent(eq(expected), eq(getClass().getName()), eq(null));
+        verify(listener).onEvent(any(Event.class), any(), any());
+    }
+
     @Test
     public void initializeWhenNoLogback() throws Exception
     {
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.management.internal.jmx.JMXObservationManager;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManagerStatistics;
+import org.xwiki.observation.event.ApplicationStartedEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Register a MBean exposing the statistics collected by the Observation Manager when it collects some (i.e. when a
+ * {@link ObservationManagerStatistics} component is registered).
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+@Component
+@Singleton
+@Named(ObservationManagerStatisticsListener.NAME)
+public class ObservationManagerStatisticsListener implements EventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "ObservationManagerStatisticsListener";
+
+    /**
+     * The list of events observed.
+     */
+    private static final List<Event> EVENTS = Collections.<Event>singletonList(new ApplicationStartedEvent());
+
+    /**
+     * Used to find the statistics collected by the Observation Manager.
+     */
+    @Inject
+    private ComponentManager componentManager;
+
+    /**
+     * In order to register the Observation Manager MBean for management.
+     */
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    /**
+     * The logger to use for logging.
+     */
+    @Inject
+    private Logger logger;
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return EVENTS;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.componentManager.hasComponent(ObservationManagerStatistics.class)) {
+            try {
+                ObservationManagerStatistics statistics =
+                    this.componentManager.getInstance(ObservationManagerStatistics.class);
+
+                this.jmxRegistration.registerMBean(new JMXObservationManager(statistics),
+                    "type=ObservationManager,name=Statistics");
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to get the Observation Manager statistics. Reason = [{}]",
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+}
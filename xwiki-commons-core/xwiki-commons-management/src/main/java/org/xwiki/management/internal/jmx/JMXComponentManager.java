@@ -0,0 +1,202 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.jmx;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.component.manager.ComponentManagerStatistics;
+
+/**
+ * Expose the {@link ComponentManagerStatistics} collected by the Component Manager.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class JMXComponentManager implements JMXComponentManagerMBean
+{
+    private static final String COMPONENT = "component";
+
+    private static final String COUNT = "count";
+
+    private static final String[] COUNT_DESCRIPTIONS = new String[] {"The component as <role>:<hint>",
+        "The number of lookups"};
+
+    private static final String[] CREATION_COLUMNS = new String[] {COMPONENT, "instances", "creationTime",
+        "initializationTime"};
+
+    private static final String[] LATENCY_COLUMNS = new String[] {"lowerThanMicroseconds", COUNT};
+
+    /**
+     * The statistics to expose.
+     */
+    private final ComponentManagerStatistics statistics;
+
+    /**
+     * @param statistics the statistics to expose
+     */
+    public JMXComponentManager(ComponentManagerStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public long getLookupCount()
+    {
+        return this.statistics.getLookupCount();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return this.statistics.getMissCount();
+    }
+
+    @Override
+    public long getCreationCount()
+    {
+        return this.statistics.getCreationCount();
+    }
+
+    @Override
+    public TabularData getLookups()
+    {
+        return toTabularData("lookups", COMPONENT, COUNT_DESCRIPTIONS, this.statistics.getLookups());
+    }
+
+    @Override
+    public TabularData getMisses()
+    {
+        return toTabularData("misses", COMPONENT, COUNT_DESCRIPTIONS, this.statistics.getMisses());
+    }
+
+    @Override
+    public TabularData getNamespaceLookups()
+    {
+        return toTabularData("namespaceLookups", "namespace", new String[] {"The namespace (empty for the root)",
+            "The number of lookups"}, this.statistics.getNamespaceLookups());
+    }
+
+    @Override
+    public TabularData getCreations()
+    {
+        Map<String, Long> creations = this.statistics.getCreations();
+        Map<String, Long> creationTimes = this.statistics.getCreationTimes();
+        Map<String, Long> initializationTimes = this.statistics.getInitializationTimes();
+
+        try {
+            CompositeType rowType =
+                new CompositeType("creation", "The instances created for a component", CREATION_COLUMNS,
+                    new String[] {"The component as <role>:<hint>", "The number of created instances",
+                        "The total time spent to create the instances, in milliseconds",
+                        "The total time spent to initialize the instances, in milliseconds"}, new OpenType[] {
+                        SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            TabularDataSupport data =
+                new TabularDataSupport(new TabularType("creations", "The instances created for each component",
+                    rowType, new String[] {COMPONENT}));
+
+            for (Map.Entry<String, Long> entry : creations.entrySet()) {
+                data.put(new CompositeDataSupport(rowType, CREATION_COLUMNS, new Object[] {entry.getKey(),
+                    entry.getValue(), toMillis(creationTimes.get(entry.getKey())),
+                    toMillis(initializationTimes.get(entry.getKey()))}));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on component creations", e);
+        }
+    }
+
+    @Override
+    public TabularData getCreationLatencies()
+    {
+        return toHistogram("creationLatencies", this.statistics.getCreationLatencies());
+    }
+
+    @Override
+    public TabularData getInitializationLatencies()
+    {
+        return toHistogram("initializationLatencies", this.statistics.getInitializationLatencies());
+    }
+
+    @Override
+    public void reset()
+    {
+        this.statistics.reset();
+    }
+
+    private long toMillis(Long nanos)
+    {
+        return nanos != null ? TimeUnit.NANOSECONDS.toMillis(nanos) : 0;
+    }
+
+    private TabularData toTabularData(String name, String keyColumn, String[] descriptions, Map<String, Long> counts)
+    {
+        String[] columnNames = new String[] {keyColumn, COUNT};
+
+        try {
+            CompositeType rowType =
+                new CompositeType(keyColumn, descriptions[0], columnNames, descriptions, new OpenType[] {
+                    SimpleType.STRING, SimpleType.LONG});
+            TabularDataSupport data =
+                new TabularDataSupport(new TabularType(name, descriptions[1], rowType, new String[] {keyColumn}));
+
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                data.put(new CompositeDataSupport(rowType, columnNames, new Object[] {entry.getKey(),
+                    entry.getValue()}));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on component " + name, e);
+        }
+    }
+
+    private TabularData toHistogram(String name, long[] histogram)
+    {
+        try {
+            CompositeType rowType =
+                new CompositeType("bucket", "A bucket of the histogram", LATENCY_COLUMNS, new String[] {
+                    "The exclusive upper bound of the latencies in the bucket, in microseconds",
+                    "The number of latencies in the bucket"}, new OpenType[] {SimpleType.LONG, SimpleType.LONG});
+            TabularDataSupport data =
+                new TabularDataSupport(new TabularType(name, "Latencies histogram", rowType,
+                    new String[] {LATENCY_COLUMNS[0]}));
+
+            for (int i = 0; i < histogram.length; ++i) {
+                data.put(new CompositeDataSupport(rowType, LATENCY_COLUMNS, new Object[] {
+                    this.statistics.getHistogramBucketLimit(i), histogram[i]}));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on component " + name, e);
+        }
+    }
+}
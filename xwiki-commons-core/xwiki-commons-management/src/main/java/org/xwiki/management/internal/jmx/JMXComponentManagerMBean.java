@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to the Component Manager. Supports the following features:
+ * <ul>
+ *   <li>Retrieve the number of lookups of each component and of each namespace</li>
+ *   <li>Retrieve the lookups of components which are not registered</li>
+ *   <li>Retrieve the number of created instances and the time spent to create and initialize them</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public interface JMXComponentManagerMBean
+{
+    /**
+     * @return the number of lookups of registered components
+     */
+    long getLookupCount();
+
+    /**
+     * @return the number of lookups of components which are not registered
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of created component instances
+     */
+    long getCreationCount();
+
+    /**
+     * @return the number of lookups of each registered component
+     */
+    TabularData getLookups();
+
+    /**
+     * @return the number of lookups of each component which is not registered
+     */
+    TabularData getMisses();
+
+    /**
+     * @return the number of lookups of registered components for each namespace
+     */
+    TabularData getNamespaceLookups();
+
+    /**
+     * @return the number of instances created for each component along with the time spent to create and initialize
+     *         them
+     */
+    TabularData getCreations();
+
+    /**
+     * @return the histogram of the time spent to create component instances
+     */
+    TabularData getCreationLatencies();
+
+    /**
+     * @return the histogram of the time spent to initialize component instances
+     */
+    TabularData getInitializationLatencies();
+
+    /**
+     * Forget all the collected statistics.
+     */
+    void reset();
+}
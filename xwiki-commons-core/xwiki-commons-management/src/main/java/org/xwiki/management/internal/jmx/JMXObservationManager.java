@@ -0,0 +1,119 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.jmx;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.ObservationManagerStatistics;
+import org.xwiki.observation.ObservationManagerStatistics.ListenerStatistics;
+
+/**
+ * Expose the {@link ObservationManagerStatistics} collected by the Observation Manager.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class JMXObservationManager implements JMXObservationManagerMBean
+{
+    private static final String LISTENER = "listener";
+
+    private static final String[] LISTENER_COLUMNS = new String[] {LISTENER, "calls", "errors", "time", "maxTime",
+        "p50", "p90", "p99"};
+
+    private static final int P50 = 50;
+
+    private static final int P90 = 90;
+
+    private static final int P99 = 99;
+
+    /**
+     * The statistics to expose.
+     */
+    private final ObservationManagerStatistics statistics;
+
+    /**
+     * @param statistics the statistics to expose
+     */
+    public JMXObservationManager(ObservationManagerStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public TabularData getListeners()
+    {
+        try {
+            CompositeType rowType =
+                new CompositeType(LISTENER, "The calls made to a listener", LISTENER_COLUMNS, new String[] {
+                    "The name of the listener", "The number of calls", "The number of calls which failed",
+                    "The total time spent in the listener, in milliseconds",
+                    "The time spent in the slowest call, in milliseconds",
+                    "The upper bound of the time spent by half of the calls, in microseconds",
+                    "The upper bound of the time spent by 90% of the calls, in microseconds",
+                    "The upper bound of the time spent by 99% of the calls, in microseconds"}, new OpenType[] {
+                    SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            TabularDataSupport data =
+                new TabularDataSupport(new TabularType("listeners", "The calls made to each listener", rowType,
+                    new String[] {LISTENER}));
+
+            for (Map.Entry<String, ListenerStatistics> entry : this.statistics.getListeners().entrySet()) {
+                ListenerStatistics listener = entry.getValue();
+                data.put(new CompositeDataSupport(rowType, LISTENER_COLUMNS, new Object[] {entry.getKey(),
+                    listener.getInvocationCount(), listener.getErrorCount(),
+                    TimeUnit.NANOSECONDS.toMillis(listener.getInvocationTime()),
+                    TimeUnit.NANOSECONDS.toMillis(listener.getMaxInvocationTime()), listener.getPercentile(P50),
+                    listener.getPercentile(P90), listener.getPercentile(P99)}));
+            }
+
+            return data;
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on listener calls", e);
+        }
+    }
+
+    @Override
+    public long getSlowThreshold()
+    {
+        return this.statistics.getSlowThreshold();
+    }
+
+    @Override
+    public void setSlowThreshold(long slowThreshold)
+    {
+        this.statistics.setSlowThreshold(slowThreshold);
+    }
+
+    @Override
+    public void reset()
+    {
+        this.statistics.reset();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.management.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to the Observation Manager. Supports the following features:
+ * <ul>
+ *   <li>Retrieve the number of calls made to each listener along with their latency and the number of failures</li>
+ *   <li>Configure the time after which a listener call is logged as slow</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public interface JMXObservationManagerMBean
+{
+    /**
+     * @return the calls made to each listener: their number, the number of failed ones and their latency
+     */
+    TabularData getListeners();
+
+    /**
+     * @return the time after which a listener call is logged as slow, in milliseconds
+     */
+    long getSlowThreshold();
+
+    /**
+     * @param slowThreshold the time after which a listener call is logged as slow, in milliseconds
+     */
+    void setSlowThreshold(long slowThreshold);
+
+    /**
+     * Forget all the collected statistics.
+     */
+    void reset();
+}
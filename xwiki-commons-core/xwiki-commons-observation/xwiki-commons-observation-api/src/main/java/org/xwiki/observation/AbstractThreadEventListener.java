@@ -50,6 +50,15 @@ public AbstractThreadEventListener(Thread thread)
         this.thread = thread;
     }
 
+    /**
+     * @return the thread to match to receive events
+     * @since 6.4M3
+     */
+    public Thread getThread()
+    {
+        return this.thread;
+    }
+
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Indicate that an {@link EventListener} should receive the events in a dedicated thread instead of the thread which
+ * sent them, so that it doesn't delay it.
+ * <p>
+ * Each asynchronous listener has its own bounded queue of events and receives them in the order they have been sent.
+ * The {@link #whenFull() backpressure policy} decides what to do when the queue is full. Note that the events are
+ * received after {@link ObservationManager#notify(org.xwiki.observation.event.Event, Object, Object)} returned so the
+ * listener can't cancel them and the source and data might have been modified in the meantime. The listeners without
+ * this annotation keep receiving the events synchronously.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+@Inherited
+public @interface AsynchronousEventListener
+{
+    /**
+     * What to do with a new event when the queue of the listener is full.
+     *
+     * @version $Id$
+     */
+    enum Backpressure
+    {
+        /**
+         * Wait for some space in the queue, slowing down the thread sending the event.
+         */
+        BLOCK,
+
+        /**
+         * Don't deliver the event to the listener.
+         */
+        DROP,
+
+        /**
+         * Deliver the event in the thread sending it, after the events waiting in the queue. The listener still
+         * receives the events in order and one at a time but the thread sending the event is slowed down.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Default maximum number of events waiting to be delivered to the listener.
+     */
+    int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * The maximum number of events waiting to be delivered to the listener.
+     */
+    int queueSize() default DEFAULT_QUEUE_SIZE;
+
+    /**
+     * What to do with a new event when the queue of the listener is full.
+     */
+    Backpressure whenFull() default Backpressure.BLOCK;
+}
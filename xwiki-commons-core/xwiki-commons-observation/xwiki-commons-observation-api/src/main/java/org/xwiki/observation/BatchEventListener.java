@@ -0,0 +1,46 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.List;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * An {@link EventListener} able to process at once several events sent together with
+ * {@link ObservationManager#notify(List, Object, Object)}, for example to save a single index update instead of one
+ * per event. The events sent one by one are still received through {@link #onEvent(Event, Object, Object)}.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public interface BatchEventListener extends EventListener
+{
+    /**
+     * The {@link ObservationManager} calls this method once all the events of a batch have been sent to the other
+     * listeners, with the events of the batch matching one of the events for which this listener is registered (see
+     * {@link #getEvents()}).
+     *
+     * @param events the matching events of the batch, in the order they have been sent
+     * @param source the source of the events
+     * @param data some additional and optional data passed that can be acted on
+     */
+    void onEvents(List<Event> events, Object source, Object data);
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation;
 
+import java.util.List;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.observation.event.Event;
 
@@ -70,6 +72,16 @@
      */
     EventListener getListener(String listenerName);
 
+    /**
+     * Indicate if sending events of the passed class can reach any listener, which allows callers to avoid creating
+     * events nobody is interested in.
+     *
+     * @param eventClass the class of the events
+     * @return false if no registered listener can receive the events of the passed class
+     * @since 6.4M3
+     */
+    boolean hasListener(Class<? extends Event> eventClass);
+
     /**
      * Call the registered listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
      * purely up to the communicating classes.
@@ -80,6 +92,18 @@
      */
     void notify(Event event, Object source, Object data);
 
+    /**
+     * Call the registered listeners matching each of the passed events, in order. It's equivalent to calling
+     * {@link #notify(Event, Object, Object)} for each event except that the {@link BatchEventListener}s receive all
+     * their matching events at once, after the other listeners.
+     *
+     * @param events the events to pass to the registered listeners
+     * @param source the source of the events (or <code>null</code>)
+     * @param data the additional data related to the events (or <code>null</code>)
+     * @since 6.4M3
+     */
+    void notify(List<? extends Event> events, Object source, Object data);
+
     /**
      * Convenience front-end where the additional data parameter is <code>null</code>.
      *
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Statistics about the calls made by the {@link ObservationManager} to the listeners. Registered as a component by the
+ * observation managers which collect some.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+@Role
+public interface ObservationManagerStatistics
+{
+    /**
+     * The number of buckets of the latency histograms. Bucket 0 counts the latencies lower than 1 microsecond, bucket
+     * {@code i} the latencies between 2<sup>i-1</sup> (included) and 2<sup>i</sup> (excluded) microseconds and the
+     * last bucket all the latencies greater than that (around 17 seconds).
+     */
+    int HISTOGRAM_SIZE = 26;
+
+    /**
+     * The calls made to a listener.
+     *
+     * @version $Id$
+     */
+    interface ListenerStatistics
+    {
+        /**
+         * @return the number of calls made to the listener
+         */
+        long getInvocationCount();
+
+        /**
+         * @return the number of calls which failed with an exception
+         */
+        long getErrorCount();
+
+        /**
+         * @return the total time spent in the listener, in nanoseconds
+         */
+        long getInvocationTime();
+
+        /**
+         * @return the time spent in the slowest call, in nanoseconds
+         */
+        long getMaxInvocationTime();
+
+        /**
+         * @return the histogram of the time spent in each call, see {@link ObservationManagerStatistics#HISTOGRAM_SIZE}
+         */
+        long[] getLatencies();
+
+        /**
+         * @param percentile the percentage of calls, between 0 and 100
+         * @return the upper bound of the time spent by the passed percentage of the calls, in microseconds (the
+         *         precision is the one of the {@link ObservationManagerStatistics#HISTOGRAM_SIZE histogram}), 0 if
+         *         there was no call
+         */
+        long getPercentile(double percentile);
+    }
+
+    /**
+     * @param bucket the index of a histogram bucket
+     * @return the exclusive upper bound of the latencies counted in the passed bucket, in microseconds, or
+     *         {@link Long#MAX_VALUE} for the last bucket
+     */
+    long getHistogramBucketLimit(int bucket);
+
+    /**
+     * @return the statistics of each listener which has been called, indexed by listener name
+     */
+    Map<String, ListenerStatistics> getListeners();
+
+    /**
+     * @return the time after which a listener call is logged as slow, in milliseconds
+     */
+    long getSlowThreshold();
+
+    /**
+     * @param slowThreshold the time after which a listener call is logged as slow, in milliseconds
+     */
+    void setSlowThreshold(long slowThreshold);
+
+    /**
+     * Forget all the collected statistics.
+     */
+    void reset();
+}
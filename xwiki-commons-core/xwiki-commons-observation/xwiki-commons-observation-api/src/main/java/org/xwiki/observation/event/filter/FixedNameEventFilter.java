@@ -29,7 +29,7 @@
  *
  * @version $Id$
  */
-public class FixedNameEventFilter implements EventFilter, Serializable
+public class FixedNameEventFilter implements IndexableEventFilter, Serializable
 {
     /**
      * The version identifier for this Serializable class. Increment only if the <i>serialized</i> form of the class
@@ -56,6 +56,20 @@ public String getFilter()
         return this.filter;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This filter only matches the filters having the same name.
+     * </p>
+     *
+     * @since 6.4M3
+     */
+    @Override
+    public String getIndexKey()
+    {
+        return getFilter();
+    }
+
     @Override
     public boolean matches(EventFilter eventFilter)
     {
@@ -0,0 +1,41 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.event.filter;
+
+/**
+ * An {@link EventFilter} which can only match the filters having a given criterion. This allows the observation
+ * manager to index the listeners using such a filter and to only call {@link #matches(EventFilter)} for the ones which
+ * have a chance to match a sent event, instead of all the listeners registered for the type of the event.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public interface IndexableEventFilter extends EventFilter
+{
+    /**
+     * The key under which to index this filter. {@link #matches(EventFilter)} must return <code>false</code> for any
+     * filter whose {@link EventFilter#getFilter()} is not equal to this key. A subclass overriding
+     * {@link #matches(EventFilter)} without overriding this method is not indexed.
+     *
+     * @return the criterion of the filters this filter can match, or <code>null</code> if this filter should not be
+     *         indexed
+     */
+    String getIndexKey();
+}
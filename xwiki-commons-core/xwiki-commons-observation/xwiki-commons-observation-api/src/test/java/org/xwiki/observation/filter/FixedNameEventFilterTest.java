@@ -38,4 +38,13 @@ public void testFixedNameEventFilterTest()
         Assert.assertTrue(filter.equals(filter));
         Assert.assertTrue(filter.equals(new FixedNameEventFilter("filter")));
     }
+
+    @Test
+    public void testIndexKey()
+    {
+        FixedNameEventFilter filter = new FixedNameEventFilter("filter");
+
+        Assert.assertEquals("filter", filter.getIndexKey());
+        Assert.assertTrue(filter.matches(new FixedNameEventFilter(filter.getIndexKey())));
+    }
 }
@@ -0,0 +1,343 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.AsynchronousEventListener.Backpressure;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * The events waiting to be delivered to an {@link AsynchronousEventListener}. The events are delivered one at a time,
+ * in the order they have been sent, by a thread which is only kept while there are events to deliver.
+ * <p>
+ * The events are kept in their own queue, the queue of the executor only holds the requests to deliver the next
+ * event. This way a thread applying the {@link Backpressure#CALLER_RUNS} policy delivers the events queued before its
+ * own first, and all the deliveries are made while holding the same lock, so that the listener never receives the
+ * events out of order or in two threads at the same time.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class AsynchronousListenerQueue
+{
+    /**
+     * How long to keep the delivery thread when there is no more event to deliver, in seconds.
+     */
+    private static final long KEEP_ALIVE = 60;
+
+    private final EventListener listener;
+
+    private final Backpressure backpressure;
+
+    private final DefaultObservationManagerStatistics statistics;
+
+    private final Logger logger;
+
+    /**
+     * The events waiting to be delivered, in the order they have been sent.
+     */
+    private final Queue<Delivery> events = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The requests to deliver the next event, bounded by the queue size of the listener.
+     */
+    private final BlockingQueue<Runnable> queue;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Held while delivering an event to the listener.
+     */
+    private final Object deliveryLock = new Object();
+
+    /**
+     * Deliver the next waiting event, if any.
+     */
+    private final Runnable nextDelivery = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            synchronized (deliveryLock) {
+                Delivery delivery = events.poll();
+                if (delivery != null) {
+                    delivery.run();
+                }
+            }
+        }
+    };
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    private final AtomicInteger maxQueueSize = new AtomicInteger();
+
+    /**
+     * The delivery of an event to the listener.
+     *
+     * @version $Id$
+     */
+    private final class Delivery implements Runnable
+    {
+        private final Event event;
+
+        private final Object source;
+
+        private final Object data;
+
+        Delivery(Event event, Object source, Object data)
+        {
+            this.event = event;
+            this.source = source;
+            this.data = data;
+        }
+
+        @Override
+        public void run()
+        {
+            long start = statistics != null ? System.nanoTime() : 0;
+            boolean failed = false;
+            try {
+                listener.onEvent(this.event, this.source, this.data);
+            } catch (Exception e) {
+                failed = true;
+                // protect from bad listeners
+                logger.error("Failed to send event [{}] to listener [{}]", new Object[] { this.event, listener, e });
+            }
+
+            if (statistics != null) {
+                long time = System.nanoTime() - start;
+                if (statistics.record(listener.getName(), time, failed)) {
+                    logger.warn("Asynchronous listener [{}] took [{}] ms to handle [{}]", new Object[] {
+                        listener.getName(), TimeUnit.NANOSECONDS.toMillis(time), this.event });
+                }
+            }
+
+            deliveredCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param listener the listener to deliver the events to
+     * @param configuration the configuration of the listener
+     * @param statistics where to collect statistics about the calls made to the listener, null to not collect any
+     * @param logger the logger to use to log delivery errors
+     */
+    public AsynchronousListenerQueue(EventListener listener, AsynchronousEventListener configuration,
+        DefaultObservationManagerStatistics statistics, Logger logger)
+    {
+        this.listener = listener;
+        this.backpressure = configuration.whenFull();
+        this.statistics = statistics;
+        this.logger = logger;
+
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, configuration.queueSize()));
+
+        final String threadName = "XWiki asynchronous listener [" + listener.getName() + "]";
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        this.executor =
+            new ThreadPoolExecutor(1, 1, KEEP_ALIVE, TimeUnit.SECONDS, this.queue, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(contextClassLoader);
+
+                    return thread;
+                }
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue an event for the listener.
+     *
+     * @param event the event to deliver
+     * @param source the source of the event
+     * @param data the data of the event
+     */
+    public void send(Event event, Object source, Object data)
+    {
+        Delivery delivery = new Delivery(event, source, data);
+        this.events.add(delivery);
+
+        try {
+            this.executor.execute(this.nextDelivery);
+        } catch (RejectedExecutionException e) {
+            // The queue is full or the listener has been removed
+            rejected(delivery);
+        }
+
+        int size = this.events.size();
+        int max = this.maxQueueSize.get();
+        while (size > max && !this.maxQueueSize.compareAndSet(max, size)) {
+            max = this.maxQueueSize.get();
+        }
+    }
+
+    /**
+     * Apply the {@link Backpressure} policy of the listener when its queue is full.
+     *
+     * @param delivery the delivery which could not be queued
+     */
+    private void rejected(Delivery delivery)
+    {
+        if (this.executor.isShutdown()) {
+            drop(delivery);
+        } else if (this.backpressure == Backpressure.CALLER_RUNS) {
+            this.callerRunsCount.incrementAndGet();
+            deliverAll();
+        } else if (this.backpressure == Backpressure.BLOCK) {
+            try {
+                // The queue is only full when the delivery thread is busy so it will take the request
+                this.queue.put(this.nextDelivery);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                drop(delivery);
+
+                return;
+            }
+
+            // The delivery thread might have stopped (shutdown or keep alive timeout) while we were waiting
+            if (this.executor.getPoolSize() == 0 && !this.executor.prestartCoreThread()
+                && this.queue.remove(this.nextDelivery)) {
+                this.nextDelivery.run();
+            }
+        } else {
+            drop(delivery);
+        }
+    }
+
+    /**
+     * Deliver in the current thread all the waiting events, including the ones queued before the current one.
+     */
+    private void deliverAll()
+    {
+        synchronized (this.deliveryLock) {
+            for (Delivery delivery = this.events.poll(); delivery != null; delivery = this.events.poll()) {
+                delivery.run();
+            }
+        }
+    }
+
+    private void drop(Delivery delivery)
+    {
+        // The event might have been delivered already by a thread applying the CALLER_RUNS policy
+        if (this.events.remove(delivery)) {
+            this.droppedCount.incrementAndGet();
+
+            this.logger.debug("Dropped event [{}] for listener [{}]", delivery.event, this.listener.getName());
+        }
+    }
+
+    /**
+     * Stop accepting new events, the events already queued are still delivered.
+     */
+    public void shutdown()
+    {
+        this.executor.shutdown();
+    }
+
+    /**
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all the queued events have been delivered
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return the listener receiving the events
+     */
+    public EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * @return the number of events waiting to be delivered
+     */
+    public int getQueueSize()
+    {
+        return this.events.size();
+    }
+
+    /**
+     * @return the maximum number of events which can wait to be delivered
+     */
+    public int getQueueCapacity()
+    {
+        return this.queue.size() + this.queue.remainingCapacity();
+    }
+
+    /**
+     * @return the highest number of events which waited to be delivered at the same time
+     */
+    public int getMaxQueueSize()
+    {
+        return this.maxQueueSize.get();
+    }
+
+    /**
+     * @return the number of events delivered by the delivery thread
+     */
+    public long getDeliveredCount()
+    {
+        return this.deliveredCount.get();
+    }
+
+    /**
+     * @return the number of events which have not been delivered because the queue was full
+     */
+    public long getDroppedCount()
+    {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * @return the number of times the thread sending an event delivered the waiting events because the queue was full
+     */
+    public long getCallerRunsCount()
+    {
+        return this.callerRunsCount.get();
+    }
+}
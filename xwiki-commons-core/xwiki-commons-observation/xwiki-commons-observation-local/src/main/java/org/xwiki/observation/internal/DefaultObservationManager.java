@@ -20,50 +20,103 @@
 package org.xwiki.observation.internal;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.component.event.ComponentDescriptorEvent;
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentRepositoryException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.observation.AbstractThreadEventListener;
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.BatchEventListener;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.ObservationManagerStatistics;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.FilterableEvent;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.IndexableEventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
 
 /**
  * Default implementation of the {@link ObservationManager}.
  * <p>
- * This component use synchronized for concurrent protection instead of having
- * {@link java.util.concurrent.ConcurrentHashMap} everywhere because it's more efficient since most of methods access to
- * several maps and generally do enumerations.
+ * The registration methods are synchronized and, after each modification, publish immutable arrays of the listeners
+ * registered for each event class. This way {@link #notify(Event, Object, Object)}, which is called much more often
+ * than the listeners are modified, only reads a volatile field and never locks.
+ * <p>
+ * The listeners whose events all use an {@link IndexableEventFilter} are also indexed by filter key so that only the
+ * ones which can match the filter of a sent event are checked. Similarly, the regular expressions of the listeners
+ * whose events all use a {@link RegexEventFilter} are evaluated together by a {@link MultiRegexMatcher}. The
+ * {@link AbstractThreadEventListener}s which keep its thread filtering, and thus only accept the events sent by a given
+ * thread, are indexed by thread.
+ * <p>
+ * The events of the listeners annotated with {@link AsynchronousEventListener} are queued in an
+ * {@link AsynchronousListenerQueue} instead of being sent in the notifying thread.
+ * <p>
+ * When enabled (see {@link DefaultObservationManagerStatistics#ENABLED_PROPERTY}), the time spent in each listener
+ * is measured, the slow calls are logged and the statistics are registered as an {@link ObservationManagerStatistics}
+ * component.
  *
  * @version $Id$
  */
 @Component
 @Singleton
-public class DefaultObservationManager implements ObservationManager
+public class DefaultObservationManager implements ObservationManager, Disposable
 {
     /**
-     * @see #getListenersByEvent()
+     * How long to wait for the asynchronous listeners to receive their queued events when disposing, in seconds.
+     */
+    private static final long DISPOSE_TIMEOUT = 10;
+
+    /**
+     * The listeners to notify for each event class, rebuilt each time a listener or an event is added or removed.
+     * Neither the map nor its values are modified once published.
+     */
+    private volatile Map<Class<? extends Event>, EventDispatch> dispatchTable = Collections.emptyMap();
+
+    /**
+     * The events of each listener, indexed by event class and then by listener name, in registration order. Only
+     * accessed while holding the lock of this object.
      */
-    private volatile Map<Class<? extends Event>, Map<String, RegisteredListener>> listenersByEvent;
+    private Map<Class<? extends Event>, Map<String, List<Event>>> listenersByEvent;
 
     /**
      * @see #getListenersByName()
      */
     private volatile Map<String, EventListener> listenersByName;
 
+    /**
+     * @see #getAsynchronousListenerQueues()
+     */
+    private final Map<String, AsynchronousListenerQueue> asynchronousQueues = new ConcurrentHashMap<>();
+
+    /**
+     * @see #getStatistics()
+     */
+    private volatile DefaultObservationManagerStatistics statistics =
+        Boolean.getBoolean(DefaultObservationManagerStatistics.ENABLED_PROPERTY)
+            ? new DefaultObservationManagerStatistics() : null;
+
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
      */
@@ -78,60 +131,162 @@ public class DefaultObservationManager implements ObservationManager
 
     /**
      * Helper class to store the list of events of a given type associated with a given listener. We need this for
-     * performance reasons and also in order to be able to add events after a listener has been registered.
+     * performance reasons and also in order to be able to add events after a listener has been registered. Immutable:
+     * a new instance is created when the events change.
      */
-    private static class RegisteredListener
+    private static final class RegisteredListener
     {
         /**
          * Events of a given type associated with a given listener.
          */
-        private List<Event> events = new ArrayList<Event>();
+        private final Event[] events;
 
         /**
          * Listener associated with the events.
          */
-        private EventListener listener;
+        private final EventListener listener;
+
+        /**
+         * The queue of the listener if it's asynchronous, null otherwise.
+         */
+        private final AsynchronousListenerQueue queue;
 
         /**
          * @param listener the listener associated with the events.
-         * @param event the first event to associate with the passed listener. More events are added by calling
-         *            {@link #addEvent(Event)}
+         * @param events the events of a given type associated with the passed listener
+         * @param queue the queue of the listener if it's asynchronous, null otherwise
          */
-        RegisteredListener(EventListener listener, Event event)
+        RegisteredListener(EventListener listener, List<Event> events, AsynchronousListenerQueue queue)
         {
-            addEvent(event);
-
             this.listener = listener;
+            this.events = events.toArray(new Event[events.size()]);
+            this.queue = queue;
         }
+    }
+
+    /**
+     * The listeners to notify for a given event class.
+     */
+    private static final class EventDispatch
+    {
+        /**
+         * The listeners to check for all the events.
+         */
+        private final RegisteredListener[] listeners;
+
+        /**
+         * The listeners to check only for the events whose filter has a given value, indexed by this value.
+         */
+        private final Map<String, RegisteredListener[]> indexedListeners;
 
         /**
-         * @param event the event to add
+         * The listeners to notify when the filter of an event matches one of their regular expressions, null if there
+         * is none.
          */
-        void addEvent(Event event)
+        private final MultiRegexMatcher<RegisteredListener> regexListeners;
+
+        /**
+         * The listeners to check only for the events sent by a given thread, indexed by this thread.
+         */
+        private final Map<Thread, RegisteredListener[]> threadListeners;
+
+        /**
+         * @param listeners the listeners to check for all the events
+         * @param indexedListeners the listeners to check only for the events whose filter has a given value
+         * @param regexListeners the regular expressions of the listeners whose events all use a
+         *            {@link RegexEventFilter}
+         * @param threadListeners the listeners to check only for the events sent by a given thread
+         * @param previous the listeners this instance replaces, null if there is none
+         */
+        EventDispatch(List<RegisteredListener> listeners, Map<String, List<RegisteredListener>> indexedListeners,
+            Map<RegisteredListener, List<String>> regexListeners, Map<Thread, List<RegisteredListener>> threadListeners,
+            EventDispatch previous)
+        {
+            this.listeners = listeners.toArray(new RegisteredListener[listeners.size()]);
+            this.regexListeners = regexListeners.isEmpty() ? null
+                : new MultiRegexMatcher<>(regexListeners, previous != null ? previous.regexListeners : null);
+            this.indexedListeners = toArrays(indexedListeners);
+            this.threadListeners = toArrays(threadListeners);
+        }
+
+        private static <K> Map<K, RegisteredListener[]> toArrays(Map<K, List<RegisteredListener>> listeners)
+        {
+            if (listeners.isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            Map<K, RegisteredListener[]> arrays = new HashMap<>(listeners.size());
+            for (Map.Entry<K, List<RegisteredListener>> entry : listeners.entrySet()) {
+                arrays.put(entry.getKey(), entry.getValue().toArray(new RegisteredListener[entry.getValue().size()]));
+            }
+
+            return arrays;
+        }
+
+        /**
+         * @return the listeners waiting for the events sent by the current thread, null if there is none
+         */
+        RegisteredListener[] getThreadListeners()
+        {
+            return this.threadListeners.isEmpty() ? null : this.threadListeners.get(Thread.currentThread());
+        }
+
+        /**
+         * @param event the sent event
+         * @return the indexed listeners which might match the passed event, null if there is none
+         */
+        RegisteredListener[] getIndexedListeners(Event event)
         {
-            this.events.add(event);
+            if (!this.indexedListeners.isEmpty()) {
+                String filterValue = getFilterValue(event);
+                if (filterValue != null) {
+                    return this.indexedListeners.get(filterValue);
+                }
+            }
+
+            return null;
         }
 
         /**
-         * @param event the event to remove
+         * @param event the sent event
+         * @return the listeners having a regular expression matching the passed event
          */
-        void removeEvent(Event event)
+        List<RegisteredListener> getRegexListeners(Event event)
+        {
+            if (this.regexListeners != null) {
+                String filterValue = getFilterValue(event);
+                if (filterValue != null) {
+                    return this.regexListeners.getMatchingElements(filterValue);
+                }
+            }
+
+            return Collections.emptyList();
+        }
+
+        private String getFilterValue(Event event)
         {
-            this.events.remove(event);
+            if (event instanceof FilterableEvent) {
+                EventFilter eventFilter = ((FilterableEvent) event).getEventFilter();
+                if (eventFilter != null) {
+                    return eventFilter.getFilter();
+                }
+            }
+
+            return null;
         }
     }
 
     /**
-     * @return the registered listeners indexed on Event classes so that it's fast to find all the listeners registered
-     *         for a given event, so that {@link #notify} calls execute fast and in a fixed amount a time.
+     * @return the listeners to notify for each event class, so that {@link #notify} calls execute fast and in a fixed
+     *         amount a time.
      */
-    private Map<Class<? extends Event>, Map<String, RegisteredListener>> getListenersByEvent()
+    private Map<Class<? extends Event>, EventDispatch> getDispatchTable()
     {
-        if (this.listenersByEvent == null) {
+        if (this.listenersByName == null) {
             initializeListeners();
         }
 
-        return this.listenersByEvent;
+        return this.dispatchTable;
     }
 
     /**
@@ -155,7 +310,7 @@ private Map<String, EventListener> getListenersByName()
     private synchronized void initializeListeners()
     {
         if (this.listenersByName == null) {
-            this.listenersByEvent = new ConcurrentHashMap<Class<? extends Event>, Map<String, RegisteredListener>>();
+            this.listenersByEvent = new HashMap<Class<? extends Event>, Map<String, List<Event>>>();
             this.listenersByName = new ConcurrentHashMap<String, EventListener>();
 
             // Can be null in unit tests
@@ -168,12 +323,16 @@ private synchronized void initializeListeners()
                 } catch (ComponentLookupException e) {
                     this.logger.error("Failed to lookup listeners", e);
                 }
+
+                if (this.statistics != null) {
+                    registerStatistics(this.statistics);
+                }
             }
         }
     }
 
     @Override
-    public void addListener(EventListener eventListener)
+    public synchronized void addListener(EventListener eventListener)
     {
         Map<String, EventListener> listeners = getListenersByName();
 
@@ -193,64 +352,271 @@ public void addListener(EventListener eventListener)
         // Register the listener by name. If already registered, override it.
         listeners.put(eventListener.getName(), eventListener);
 
+        AsynchronousEventListener asynchronous =
+            eventListener.getClass().getAnnotation(AsynchronousEventListener.class);
+        if (asynchronous != null) {
+            this.asynchronousQueues.put(eventListener.getName(),
+                new AsynchronousListenerQueue(eventListener, asynchronous, this.statistics, this.logger));
+        }
+
         // For each event defined for this listener, add it to the Event Map.
+        Map<Class<? extends Event>, EventDispatch> table = new HashMap<>(this.dispatchTable);
         for (Event event : eventListener.getEvents()) {
-            // Check if this is a new Event type not already registered
-            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
-            if (eventListeners == null) {
-                // No listener registered for this event yet. Create a map to store listeners for this event.
-                eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
-                this.listenersByEvent.put(event.getClass(), eventListeners);
-                // There is no RegisteredListener yet, create one
-                eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-            } else {
-                // Add an event to existing RegisteredListener object
-                RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
-                if (registeredListener == null) {
-                    eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-                } else {
-                    registeredListener.addEvent(event);
-                }
-            }
+            addEvent(eventListener.getName(), event, table);
         }
+        this.dispatchTable = table;
     }
 
     @Override
-    public void removeListener(String listenerName)
+    public synchronized void removeListener(String listenerName)
     {
         getListenersByName().remove(listenerName);
-        for (Map.Entry<Class<? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
-            .entrySet()) {
-            entry.getValue().remove(listenerName);
-            if (entry.getValue().isEmpty()) {
-                this.listenersByEvent.remove(entry.getKey());
+
+        // The events already queued are still delivered
+        AsynchronousListenerQueue queue = this.asynchronousQueues.remove(listenerName);
+        if (queue != null) {
+            queue.shutdown();
+        }
+
+        Map<Class<? extends Event>, EventDispatch> table = new HashMap<>(this.dispatchTable);
+        for (Map.Entry<Class<? extends Event>, Map<String, List<Event>>> entry : new ArrayList<>(this.listenersByEvent
+            .entrySet())) {
+            if (entry.getValue().remove(listenerName) != null) {
+                updateDispatchTable(entry.getKey(), table);
             }
         }
+        this.dispatchTable = table;
     }
 
     @Override
-    public void addEvent(String listenerName, Event event)
+    public synchronized void addEvent(String listenerName, Event event)
+    {
+        getListenersByName();
+
+        Map<Class<? extends Event>, EventDispatch> table = new HashMap<>(this.dispatchTable);
+        addEvent(listenerName, event, table);
+        this.dispatchTable = table;
+    }
+
+    private void addEvent(String listenerName, Event event, Map<Class<? extends Event>, EventDispatch> table)
     {
-        Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
-        if (listeners == null) {
-            listeners = new ConcurrentHashMap<String, RegisteredListener>();
-            this.listenersByEvent.put(event.getClass(), listeners);
+        Map<String, List<Event>> eventListeners = this.listenersByEvent.get(event.getClass());
+        if (eventListeners == null) {
+            // No listener registered for this event yet. Create a map to store listeners for this event.
+            eventListeners = new LinkedHashMap<String, List<Event>>();
+            this.listenersByEvent.put(event.getClass(), eventListeners);
         }
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.addEvent(event);
-        } else {
-            listeners.put(listenerName, new RegisteredListener(this.getListener(listenerName), event));
+
+        List<Event> events = eventListeners.get(listenerName);
+        if (events == null) {
+            events = new ArrayList<Event>();
+            eventListeners.put(listenerName, events);
         }
+        events.add(event);
+
+        updateDispatchTable(event.getClass(), table);
     }
 
     @Override
-    public void removeEvent(String listenerName, Event event)
+    public synchronized void removeEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.removeEvent(event);
+        getListenersByName();
+
+        Map<String, List<Event>> eventListeners = this.listenersByEvent.get(event.getClass());
+        if (eventListeners != null) {
+            List<Event> events = eventListeners.get(listenerName);
+            if (events != null) {
+                events.remove(event);
+
+                Map<Class<? extends Event>, EventDispatch> table = new HashMap<>(this.dispatchTable);
+                updateDispatchTable(event.getClass(), table);
+                this.dispatchTable = table;
+            }
+        }
+    }
+
+    /**
+     * Rebuild the listeners to notify for the passed event class.
+     *
+     * @param eventClass the class of the events whose listeners have been modified
+     * @param table the dispatch table to update
+     */
+    private void updateDispatchTable(Class<? extends Event> eventClass,
+        Map<Class<? extends Event>, EventDispatch> table)
+    {
+        Map<String, List<Event>> eventListeners = this.listenersByEvent.get(eventClass);
+
+        List<RegisteredListener> registeredListeners = new ArrayList<>(eventListeners.size());
+        Map<String, List<RegisteredListener>> indexedListeners = new HashMap<>();
+        Map<RegisteredListener, List<String>> regexListeners = new LinkedHashMap<>();
+        Map<Thread, List<RegisteredListener>> threadListeners = new HashMap<>();
+        for (Map.Entry<String, List<Event>> entry : eventListeners.entrySet()) {
+            EventListener listener = this.listenersByName.get(entry.getKey());
+            // Events can't be sent to a listener which is not registered
+            if (listener != null && !entry.getValue().isEmpty()) {
+                AsynchronousListenerQueue queue = this.asynchronousQueues.get(entry.getKey());
+                boolean threadListener = isThreadListener(listener);
+                Map<String, List<Event>> eventsByKey = threadListener ? null : getEventsByIndexKey(entry.getValue());
+                if (threadListener) {
+                    // The listener ignores the events sent by the other threads anyway
+                    add(threadListeners, ((AbstractThreadEventListener) listener).getThread(),
+                        new RegisteredListener(listener, entry.getValue(), queue));
+                } else if (eventsByKey != null) {
+                    for (Map.Entry<String, List<Event>> keyEntry : eventsByKey.entrySet()) {
+                        add(indexedListeners, keyEntry.getKey(),
+                            new RegisteredListener(listener, keyEntry.getValue(), queue));
+                    }
+                } else {
+                    RegisteredListener registeredListener = new RegisteredListener(listener, entry.getValue(), queue);
+                    List<String> regexes = getRegexes(entry.getValue());
+                    if (regexes != null) {
+                        regexListeners.put(registeredListener, regexes);
+                    } else {
+                        registeredListeners.add(registeredListener);
+                    }
+                }
+            }
+        }
+
+        if (eventListeners.isEmpty()) {
+            this.listenersByEvent.remove(eventClass);
+        }
+
+        if (registeredListeners.isEmpty() && indexedListeners.isEmpty() && regexListeners.isEmpty()
+            && threadListeners.isEmpty()) {
+            table.remove(eventClass);
+        } else {
+            // Reuse the regular expressions compiled for the previous listeners
+            table.put(eventClass, new EventDispatch(registeredListeners, indexedListeners, regexListeners,
+                threadListeners, table.get(eventClass)));
+        }
+    }
+
+    private static <K> void add(Map<K, List<RegisteredListener>> listeners, K key, RegisteredListener listener)
+    {
+        List<RegisteredListener> keyListeners = listeners.get(key);
+        if (keyListeners == null) {
+            keyListeners = new ArrayList<>();
+            listeners.put(key, keyListeners);
+        }
+        keyListeners.add(listener);
+    }
+
+    /**
+     * @param events the events of a listener for a given event class
+     * @return the passed events indexed by {@link IndexableEventFilter#getIndexKey()} or null if one of them can't be
+     *         indexed, in which case the listener has to be checked for all the events
+     */
+    private Map<String, List<Event>> getEventsByIndexKey(List<Event> events)
+    {
+        Map<String, List<Event>> eventsByKey = new LinkedHashMap<>();
+        for (Event event : events) {
+            String key = getIndexKey(event);
+            if (key == null) {
+                return null;
+            }
+
+            List<Event> keyEvents = eventsByKey.get(key);
+            if (keyEvents == null) {
+                keyEvents = new ArrayList<>();
+                eventsByKey.put(key, keyEvents);
+            }
+            keyEvents.add(event);
+        }
+
+        return eventsByKey;
+    }
+
+    /**
+     * @param event a listener event
+     * @return the value the filter of an event must have to match the passed event, null if unknown
+     */
+    private String getIndexKey(Event event)
+    {
+        // Events overriding the standard matching might not use the filter at all
+        if (event instanceof AbstractFilterableEvent && isStandardMatching(event.getClass())) {
+            EventFilter eventFilter = ((AbstractFilterableEvent) event).getEventFilter();
+            if (eventFilter instanceof IndexableEventFilter && isIndexedMatching(eventFilter.getClass())) {
+                return ((IndexableEventFilter) eventFilter).getIndexKey();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param filterClass the class of an {@link IndexableEventFilter}
+     * @return true if the matching of the filter is declared along with its index key, false if a subclass overrides
+     *         the matching without updating the key, in which case the filter might match filters having another key
+     */
+    private boolean isIndexedMatching(Class<?> filterClass)
+    {
+        try {
+            Class<?> matchingClass = filterClass.getMethod("matches", EventFilter.class).getDeclaringClass();
+
+            return matchingClass.isAssignableFrom(filterClass.getMethod("getIndexKey").getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param events the events of a listener for a given event class
+     * @return the regular expressions of the passed events or null if one of them doesn't use a
+     *         {@link RegexEventFilter}
+     */
+    private List<String> getRegexes(List<Event> events)
+    {
+        List<String> regexes = new ArrayList<>(events.size());
+        for (Event event : events) {
+            String regex = getRegex(event);
+            if (regex == null) {
+                return null;
+            }
+            regexes.add(regex);
+        }
+
+        return regexes;
+    }
+
+    private String getRegex(Event event)
+    {
+        if (event instanceof AbstractFilterableEvent && isStandardMatching(event.getClass())) {
+            EventFilter eventFilter = ((AbstractFilterableEvent) event).getEventFilter();
+            // Subclasses might match differently
+            if (eventFilter != null && eventFilter.getClass() == RegexEventFilter.class) {
+                return eventFilter.getFilter();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param listener a listener
+     * @return true if the listener ignores the events sent by the other threads than the one it's bound to
+     */
+    private boolean isThreadListener(EventListener listener)
+    {
+        if (listener instanceof AbstractThreadEventListener) {
+            // Subclasses overriding onEvent might not check the thread at all
+            try {
+                return listener.getClass().getMethod("onEvent", Event.class, Object.class, Object.class)
+                    .getDeclaringClass() == AbstractThreadEventListener.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isStandardMatching(Class<?> eventClass)
+    {
+        try {
+            return eventClass.getMethod("matches", Object.class).getDeclaringClass() == AbstractFilterableEvent.class;
+        } catch (NoSuchMethodException e) {
+            return false;
         }
     }
 
@@ -260,20 +626,20 @@ public EventListener getListener(String listenerName)
         return getListenersByName().get(listenerName);
     }
 
+    @Override
+    public boolean hasListener(Class<? extends Event> eventClass)
+    {
+        Map<Class<? extends Event>, EventDispatch> table = getDispatchTable();
+
+        return table.containsKey(eventClass) || table.containsKey(AllEvent.class);
+    }
+
     @Override
     public void notify(Event event, Object source, Object data)
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = getListenersByEvent().get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
-        }
+        Map<Class<? extends Event>, EventDispatch> table = getDispatchTable();
 
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
-        }
+        notify(table.get(event.getClass()), table.get(AllEvent.class), event, source, data, null);
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
         // at runtime. Thus ideally we should make this Manager an Event Listener itself. However in order to avoid
@@ -285,6 +651,105 @@ public void notify(Event event, Object source, Object data)
         }
     }
 
+    @Override
+    public void notify(List<? extends Event> events, Object source, Object data)
+    {
+        Map<Class<? extends Event>, EventDispatch> table = getDispatchTable();
+        EventDispatch allEventDispatch = table.get(AllEvent.class);
+
+        // The events matching each batch listener, sent once all the events have been dispatched
+        Map<BatchEventListener, List<Event>> batches = new LinkedHashMap<>();
+
+        // The events of a batch are usually of the same class
+        Class<? extends Event> eventClass = null;
+        EventDispatch dispatch = null;
+        for (Event event : events) {
+            if (event.getClass() != eventClass) {
+                eventClass = event.getClass();
+                dispatch = table.get(eventClass);
+            }
+
+            notify(dispatch, allEventDispatch, event, source, data, batches);
+
+            if (event instanceof ComponentDescriptorEvent) {
+                onComponentEvent((ComponentDescriptorEvent) event, (ComponentManager) source,
+                    (ComponentDescriptor<EventListener>) data);
+
+                // The listeners might have changed
+                table = this.dispatchTable;
+                allEventDispatch = table.get(AllEvent.class);
+                eventClass = null;
+            }
+        }
+
+        for (Map.Entry<BatchEventListener, List<Event>> entry : batches.entrySet()) {
+            DefaultObservationManagerStatistics currentStatistics = this.statistics;
+            long start = currentStatistics != null ? System.nanoTime() : 0;
+            boolean failed = false;
+            try {
+                entry.getKey().onEvents(entry.getValue(), source, data);
+            } catch (Exception e) {
+                failed = true;
+                // protect from bad listeners
+                this.logger.error("Failed to send [{}] events to listener [{}]",
+                    new Object[] { entry.getValue().size(), entry.getKey(), e });
+            }
+
+            if (currentStatistics != null) {
+                record(currentStatistics, entry.getKey(), entry.getValue(), start, failed);
+            }
+        }
+    }
+
+    /**
+     * Call the listeners matching the passed Event.
+     *
+     * @param dispatch the listeners registered for the class of the event, null if there is none
+     * @param allEventDispatch the listeners registered for all the events, null if there is none
+     * @param event the event to pass to the registered listeners
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     * @param batches where to collect the events of the batch listeners, null when the event is not part of a batch
+     */
+    private void notify(EventDispatch dispatch, EventDispatch allEventDispatch, Event event, Object source,
+        Object data, Map<BatchEventListener, List<Event>> batches)
+    {
+        // Find all listeners for this event
+        if (dispatch != null) {
+            // Only the listeners indexed under the filter of the event can match it
+            RegisteredListener[] indexedListeners = dispatch.getIndexedListeners(event);
+            if (indexedListeners != null) {
+                notify(indexedListeners, event, source, data, batches);
+            }
+
+            // The regular expressions have already been evaluated
+            for (RegisteredListener listener : dispatch.getRegexListeners(event)) {
+                sendEvent(listener, event, source, data, batches);
+            }
+
+            notify(dispatch.listeners, event, source, data, batches);
+
+            notifyThreadListeners(dispatch, event, source, data, batches);
+        }
+
+        // Find listener listening all events
+        if (allEventDispatch != null) {
+            notify(allEventDispatch.listeners, event, source, data, batches);
+
+            notifyThreadListeners(allEventDispatch, event, source, data, batches);
+        }
+    }
+
+    private void notifyThreadListeners(EventDispatch dispatch, Event event, Object source, Object data,
+        Map<BatchEventListener, List<Event>> batches)
+    {
+        // Only the listeners waiting for the events of the current thread can accept it
+        RegisteredListener[] threadListeners = dispatch.getThreadListeners();
+        if (threadListeners != null) {
+            notify(threadListeners, event, source, data, batches);
+        }
+    }
+
     /**
      * Call the provided listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
      * purely up to the communicating classes.
@@ -293,20 +758,16 @@ public void notify(Event event, Object source, Object data)
      * @param event the event to pass to the registered listeners
      * @param source the source of the event (or <code>null</code>)
      * @param data the additional data related to the event (or <code>null</code>)
+     * @param batches where to collect the events of the batch listeners, null when the event is not part of a batch
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
+    private void notify(RegisteredListener[] listeners, Event event, Object source, Object data,
+        Map<BatchEventListener, List<Event>> batches)
     {
         for (RegisteredListener listener : listeners) {
             // Verify that one of the events matches and send the first matching event
             for (Event listenerEvent : listener.events) {
                 if (listenerEvent.matches(event)) {
-                    try {
-                        listener.listener.onEvent(event, source, data);
-                    } catch (Exception e) {
-                        // protect from bad listeners
-                        this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] { event,
-                            listener.listener, e });
-                    }
+                    sendEvent(listener, event, source, data, batches);
 
                     // Only send the first matching event since the listener should only be called once per event.
                     break;
@@ -315,6 +776,128 @@ private void notify(Collection<RegisteredListener> listeners, Event event, Objec
         }
     }
 
+    private void sendEvent(RegisteredListener listener, Event event, Object source, Object data,
+        Map<BatchEventListener, List<Event>> batches)
+    {
+        if (batches != null && listener.queue == null && listener.listener instanceof BatchEventListener) {
+            List<Event> batch = batches.get(listener.listener);
+            if (batch == null) {
+                batch = new ArrayList<>();
+                batches.put((BatchEventListener) listener.listener, batch);
+            }
+            batch.add(event);
+        } else if (listener.queue != null) {
+            listener.queue.send(event, source, data);
+        } else {
+            DefaultObservationManagerStatistics currentStatistics = this.statistics;
+            long start = currentStatistics != null ? System.nanoTime() : 0;
+            boolean failed = false;
+            try {
+                listener.listener.onEvent(event, source, data);
+            } catch (Exception e) {
+                failed = true;
+                // protect from bad listeners
+                this.logger.error("Failed to send event [{}] to listener [{}]",
+                    new Object[] { event, listener.listener, e });
+            }
+
+            if (currentStatistics != null) {
+                record(currentStatistics, listener.listener, event, start, failed);
+            }
+        }
+    }
+
+    private void record(DefaultObservationManagerStatistics currentStatistics, EventListener listener, Object event,
+        long start, boolean failed)
+    {
+        long time = System.nanoTime() - start;
+        if (currentStatistics.record(listener.getName(), time, failed)) {
+            this.logger.warn("Listener [{}] took [{}] ms to handle [{}]",
+                new Object[] { listener.getName(), TimeUnit.NANOSECONDS.toMillis(time), event });
+        }
+    }
+
+    /**
+     * @return the statistics collected about the calls made to the listeners or null if collecting statistics is
+     *         disabled
+     * @since 6.4M3
+     */
+    public DefaultObservationManagerStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * Enable or disable the collection of statistics about the calls made to the listeners. The
+     * {@link AsynchronousEventListener}s keep collecting their statistics where they were collected when they have been
+     * registered. The statistics are registered as the default {@link ObservationManagerStatistics} component.
+     *
+     * @param statistics where to collect the statistics, null to disable collecting statistics
+     * @since 6.4M3
+     */
+    public void setStatistics(DefaultObservationManagerStatistics statistics)
+    {
+        this.statistics = statistics;
+
+        // Can be null in unit tests
+        if (this.componentManager != null) {
+            if (statistics != null) {
+                registerStatistics(statistics);
+            } else {
+                this.componentManager.unregisterComponent(ObservationManagerStatistics.class, "default");
+            }
+        }
+    }
+
+    private void registerStatistics(ObservationManagerStatistics currentStatistics)
+    {
+        DefaultComponentDescriptor<ObservationManagerStatistics> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(ObservationManagerStatistics.class);
+
+        try {
+            this.componentManager.registerComponent(descriptor, currentStatistics);
+        } catch (ComponentRepositoryException e) {
+            this.logger.warn("Failed to register the Observation Manager statistics. Reason = [{}]",
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    /**
+     * @return the queues of the registered {@link AsynchronousEventListener}s, indexed by listener name
+     * @since 6.4M3
+     */
+    public Map<String, AsynchronousListenerQueue> getAsynchronousListenerQueues()
+    {
+        return Collections.unmodifiableMap(this.asynchronousQueues);
+    }
+
+    @Override
+    public void dispose()
+    {
+        List<AsynchronousListenerQueue> queues;
+        synchronized (this) {
+            queues = new ArrayList<>(this.asynchronousQueues.values());
+            for (AsynchronousListenerQueue queue : queues) {
+                queue.shutdown();
+            }
+        }
+
+        // Give the asynchronous listeners a chance to receive the events already queued
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DISPOSE_TIMEOUT);
+        for (AsynchronousListenerQueue queue : queues) {
+            try {
+                if (!queue.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    this.logger.warn("[{}] events were not delivered to asynchronous listener [{}]",
+                        queue.getQueueSize(), queue.getListener().getName());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                break;
+            }
+        }
+    }
+
     @Override
     public void notify(Event event, Object source)
     {
@@ -0,0 +1,229 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.xwiki.observation.ObservationManagerStatistics;
+
+/**
+ * Statistics about the calls made by {@link DefaultObservationManager} to the listeners. Collecting them is disabled
+ * by default, see {@link DefaultObservationManager#setStatistics(DefaultObservationManagerStatistics)} and
+ * {@link #ENABLED_PROPERTY}.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class DefaultObservationManagerStatistics implements ObservationManagerStatistics
+{
+    /**
+     * The system property to set to {@code true} to collect statistics in the observation manager.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.observation.statistics";
+
+    /**
+     * The system property holding the time after which a listener call is logged as slow, in milliseconds.
+     */
+    public static final String SLOW_THRESHOLD_PROPERTY = "xwiki.observation.statistics.slowThreshold";
+
+    private static final long DEFAULT_SLOW_THRESHOLD = 1000;
+
+    /**
+     * The statistics of each listener, indexed by listener name.
+     */
+    private final ConcurrentMap<String, DefaultListenerStatistics> listeners = new ConcurrentHashMap<>();
+
+    private volatile long slowThreshold =
+        TimeUnit.MILLISECONDS.toNanos(Long.getLong(SLOW_THRESHOLD_PROPERTY, DEFAULT_SLOW_THRESHOLD));
+
+    /**
+     * The calls made to a listener.
+     *
+     * @version $Id$
+     */
+    static final class DefaultListenerStatistics implements ListenerStatistics
+    {
+        private final AtomicLong invocationCount = new AtomicLong();
+
+        private final AtomicLong errorCount = new AtomicLong();
+
+        private final AtomicLong invocationTime = new AtomicLong();
+
+        private final AtomicLong maxInvocationTime = new AtomicLong();
+
+        private final AtomicLongArray latencies = new AtomicLongArray(HISTOGRAM_SIZE);
+
+        void record(long time, boolean failed)
+        {
+            this.invocationCount.incrementAndGet();
+            if (failed) {
+                this.errorCount.incrementAndGet();
+            }
+            this.invocationTime.addAndGet(time);
+            this.latencies.incrementAndGet(getHistogramBucket(time));
+
+            long max = this.maxInvocationTime.get();
+            while (time > max && !this.maxInvocationTime.compareAndSet(max, time)) {
+                max = this.maxInvocationTime.get();
+            }
+        }
+
+        @Override
+        public long getInvocationCount()
+        {
+            return this.invocationCount.get();
+        }
+
+        @Override
+        public long getErrorCount()
+        {
+            return this.errorCount.get();
+        }
+
+        @Override
+        public long getInvocationTime()
+        {
+            return this.invocationTime.get();
+        }
+
+        @Override
+        public long getMaxInvocationTime()
+        {
+            return this.maxInvocationTime.get();
+        }
+
+        @Override
+        public long[] getLatencies()
+        {
+            long[] array = new long[this.latencies.length()];
+            for (int i = 0; i < array.length; ++i) {
+                array[i] = this.latencies.get(i);
+            }
+
+            return array;
+        }
+
+        @Override
+        public long getPercentile(double percentile)
+        {
+            long[] histogram = getLatencies();
+
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+
+            if (total > 0) {
+                long rank = (long) Math.ceil(total * percentile / 100);
+                long count = 0;
+                for (int i = 0; i < histogram.length; ++i) {
+                    count += histogram[i];
+                    if (count >= rank && count > 0) {
+                        return getBucketLimit(i);
+                    }
+                }
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * @param latency a duration in nanoseconds
+     * @return the index of the histogram bucket where to count the passed latency
+     */
+    static int getHistogramBucket(long latency)
+    {
+        long micros = TimeUnit.NANOSECONDS.toMicros(latency);
+
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), HISTOGRAM_SIZE - 1);
+    }
+
+    /**
+     * @param bucket the index of a histogram bucket
+     * @return the exclusive upper bound of the latencies counted in the passed bucket, in microseconds, or
+     *         {@link Long#MAX_VALUE} for the last bucket
+     */
+    static long getBucketLimit(int bucket)
+    {
+        return bucket < HISTOGRAM_SIZE - 1 ? 1L << bucket : Long.MAX_VALUE;
+    }
+
+    @Override
+    public long getHistogramBucketLimit(int bucket)
+    {
+        return getBucketLimit(bucket);
+    }
+
+    /**
+     * A listener has been called.
+     *
+     * @param listener the name of the listener
+     * @param time the time spent in the listener, in nanoseconds
+     * @param failed true if the listener failed with an exception
+     * @return true if the call was slower than the {@link #getSlowThreshold() threshold}
+     */
+    boolean record(String listener, long time, boolean failed)
+    {
+        DefaultListenerStatistics listenerStatistics = this.listeners.get(listener);
+        if (listenerStatistics == null) {
+            listenerStatistics = new DefaultListenerStatistics();
+            DefaultListenerStatistics existingStatistics = this.listeners.putIfAbsent(listener, listenerStatistics);
+            if (existingStatistics != null) {
+                listenerStatistics = existingStatistics;
+            }
+        }
+
+        listenerStatistics.record(time, failed);
+
+        return time > this.slowThreshold;
+    }
+
+    @Override
+    public Map<String, ListenerStatistics> getListeners()
+    {
+        return Collections.unmodifiableMap(new TreeMap<String, ListenerStatistics>(this.listeners));
+    }
+
+    @Override
+    public long getSlowThreshold()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.slowThreshold);
+    }
+
+    @Override
+    public void setSlowThreshold(long slowThreshold)
+    {
+        this.slowThreshold = TimeUnit.MILLISECONDS.toNanos(slowThreshold);
+    }
+
+    @Override
+    public void reset()
+    {
+        this.listeners.clear();
+    }
+}
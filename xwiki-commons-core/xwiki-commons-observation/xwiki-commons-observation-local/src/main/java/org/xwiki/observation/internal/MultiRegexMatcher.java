@@ -0,0 +1,251 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Find which elements, each associated with several regular expressions, have at least one regular expression matching
+ * a given string, without evaluating all the regular expressions.
+ * <p>
+ * Java regular expressions (with back references, look-around, etc.) can't be merged in a single automaton so instead
+ * the literal prefix of each regular expression is indexed in a tree: a single pass over the input string in this tree
+ * gives the regular expressions which can match it, and only those are evaluated. Each distinct regular expression is
+ * evaluated at most once per input string, whatever the number of elements using it.
+ *
+ * @param <T> the type of the elements
+ * @version $Id$
+ * @since 6.4M3
+ */
+class MultiRegexMatcher<T>
+{
+    /**
+     * The characters which end the literal prefix of a regular expression.
+     */
+    private static final String SPECIAL_CHARACTERS = "\\[](){}.*+?^$|";
+
+    /**
+     * The quantifiers which make the preceding character optional.
+     */
+    private static final String OPTIONAL_QUANTIFIERS = "*?{";
+
+    private final List<T> elements;
+
+    /**
+     * The indexes of the regular expressions of each element.
+     */
+    private final int[][] elementPatterns;
+
+    private final Pattern[] patterns;
+
+    /**
+     * The compiled regular expressions, indexed by regular expression, reused by the next matcher.
+     */
+    private final Map<String, Pattern> compiledPatterns;
+
+    /**
+     * The regular expressions indexed by literal prefix.
+     */
+    private final Node root = new Node();
+
+    /**
+     * A node of the prefix tree.
+     *
+     * @version $Id$
+     */
+    private static final class Node
+    {
+        private final Map<Character, Node> children = new HashMap<>();
+
+        /**
+         * The regular expressions whose literal prefix ends with this node.
+         */
+        private int[] patterns = new int[0];
+
+        Node getChild(char character)
+        {
+            return this.children.get(character);
+        }
+
+        Node addChild(char character)
+        {
+            Node child = this.children.get(character);
+            if (child == null) {
+                child = new Node();
+                this.children.put(character, child);
+            }
+
+            return child;
+        }
+
+        void addPattern(int pattern)
+        {
+            int[] newPatterns = new int[this.patterns.length + 1];
+            System.arraycopy(this.patterns, 0, newPatterns, 0, this.patterns.length);
+            newPatterns[this.patterns.length] = pattern;
+            this.patterns = newPatterns;
+        }
+    }
+
+    /**
+     * @param elementRegexes the regular expressions of each element, the elements are returned by
+     *            {@link #getMatchingElements(String)} in the same order
+     * @param previous the matcher this one replaces, its compiled regular expressions are reused instead of being
+     *            compiled again, null if there is none
+     */
+    MultiRegexMatcher(Map<T, List<String>> elementRegexes, MultiRegexMatcher<?> previous)
+    {
+        this.elements = new ArrayList<>(elementRegexes.keySet());
+        this.elementPatterns = new int[this.elements.size()][];
+
+        Map<String, Integer> patternIndexes = new LinkedHashMap<>();
+        int elementIndex = 0;
+        for (List<String> regexes : elementRegexes.values()) {
+            int[] indexes = new int[regexes.size()];
+            for (int i = 0; i < indexes.length; ++i) {
+                String regex = regexes.get(i);
+                Integer index = patternIndexes.get(regex);
+                if (index == null) {
+                    index = patternIndexes.size();
+                    patternIndexes.put(regex, index);
+                }
+                indexes[i] = index;
+            }
+            this.elementPatterns[elementIndex++] = indexes;
+        }
+
+        this.patterns = new Pattern[patternIndexes.size()];
+        this.compiledPatterns = new HashMap<>(patternIndexes.size());
+        for (Map.Entry<String, Integer> entry : patternIndexes.entrySet()) {
+            Pattern pattern = previous != null ? previous.getPattern(entry.getKey()) : null;
+            if (pattern == null) {
+                pattern = Pattern.compile(entry.getKey());
+            }
+            this.patterns[entry.getValue()] = pattern;
+            this.compiledPatterns.put(entry.getKey(), pattern);
+
+            Node node = this.root;
+            for (char character : getLiteralPrefix(entry.getKey()).toCharArray()) {
+                node = node.addChild(character);
+            }
+            node.addPattern(entry.getValue());
+        }
+    }
+
+    /**
+     * @param regex a regular expression
+     * @return the compiled regular expression, null if this matcher doesn't use it
+     */
+    Pattern getPattern(String regex)
+    {
+        return this.compiledPatterns.get(regex);
+    }
+
+    /**
+     * @param regex a regular expression
+     * @return the characters any string matching the passed regular expression starts with (possibly empty)
+     */
+    static String getLiteralPrefix(String regex)
+    {
+        // Alternatives can start with anything
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < regex.length(); ++i) {
+            char character = regex.charAt(i);
+
+            if (character == '\\' && i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                // Escaped special character
+                character = regex.charAt(++i);
+            } else if (SPECIAL_CHARACTERS.indexOf(character) >= 0) {
+                if (OPTIONAL_QUANTIFIERS.indexOf(character) >= 0 && prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+
+            prefix.append(character);
+        }
+
+        return prefix.toString();
+    }
+
+    /**
+     * @param input the string to match
+     * @return the elements having at least one regular expression matching the passed string
+     */
+    List<T> getMatchingElements(String input)
+    {
+        // 0: can't match, 1: to evaluate, 2: matches, 3: doesn't match
+        byte[] states = new byte[this.patterns.length];
+
+        Node node = this.root;
+        boolean candidates = markCandidates(node, states);
+        for (int i = 0; i < input.length(); ++i) {
+            node = node.getChild(input.charAt(i));
+            if (node == null) {
+                break;
+            }
+            candidates |= markCandidates(node, states);
+        }
+
+        if (!candidates) {
+            return Collections.emptyList();
+        }
+
+        List<T> matchingElements = new ArrayList<>();
+        for (int i = 0; i < this.elementPatterns.length; ++i) {
+            for (int pattern : this.elementPatterns[i]) {
+                if (matches(pattern, input, states)) {
+                    matchingElements.add(this.elements.get(i));
+                    break;
+                }
+            }
+        }
+
+        return matchingElements;
+    }
+
+    private boolean markCandidates(Node node, byte[] states)
+    {
+        for (int pattern : node.patterns) {
+            states[pattern] = 1;
+        }
+
+        return node.patterns.length > 0;
+    }
+
+    private boolean matches(int pattern, String input, byte[] states)
+    {
+        if (states[pattern] == 1) {
+            states[pattern] = this.patterns[pattern].matcher(input).matches() ? (byte) 2 : (byte) 3;
+        }
+
+        return states[pattern] == 2;
+    }
+}
@@ -19,8 +19,15 @@
  */
 package org.xwiki.observation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -29,16 +36,25 @@
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.ActionExecutionEvent;
 import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.FixedNameEventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
+import org.xwiki.observation.AsynchronousEventListener.Backpressure;
+import org.xwiki.observation.internal.AsynchronousListenerQueue;
 import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.ObservationManagerStatistics.ListenerStatistics;
+import org.xwiki.observation.internal.DefaultObservationManagerStatistics;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -49,6 +65,98 @@
  */
 public class ObservationManagerTest
 {
+    public static class TestFilterableEvent extends AbstractFilterableEvent
+    {
+        private static final long serialVersionUID = 1L;
+
+        public TestFilterableEvent(String name)
+        {
+            super(name);
+        }
+
+        public TestFilterableEvent(EventFilter eventFilter)
+        {
+            super(eventFilter);
+        }
+    }
+
+    @AsynchronousEventListener
+    public static class TestAsynchronousListener extends AbstractEventListener
+    {
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+        private volatile Thread thread;
+
+        public TestAsynchronousListener(String name, Event... events)
+        {
+            super(name, events);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.thread = Thread.currentThread();
+            this.events.add(event);
+        }
+    }
+
+    @AsynchronousEventListener(queueSize = 1, whenFull = Backpressure.DROP)
+    public static class TestDroppingListener extends AbstractEventListener
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        public TestDroppingListener(String name, Event... events)
+        {
+            super(name, events);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.started.countDown();
+            try {
+                this.released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @AsynchronousEventListener(queueSize = 1, whenFull = Backpressure.CALLER_RUNS)
+    public static class TestCallerRunsListener extends AbstractEventListener
+    {
+        private final List<Event> events = Collections.synchronizedList(new ArrayList<Event>());
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private volatile boolean concurrent;
+
+        public TestCallerRunsListener(String name, Event... events)
+        {
+            super(name, events);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.concurrent |= this.running.incrementAndGet() > 1;
+            this.started.countDown();
+            try {
+                this.released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.events.add(event);
+            this.running.decrementAndGet();
+        }
+    }
+
     @Rule
     public final MockitoComponentMockingRule<ObservationManager> mocker =
         new MockitoComponentMockingRule<ObservationManager>(DefaultObservationManager.class);
@@ -235,4 +343,370 @@ public void testRegisterListenerForTwoEventsOfSameType() throws ComponentLookupE
         verify(listener).onEvent(eventMatcher1, "some source", "some data");
         verify(listener).onEvent(eventMatcher2, "some source", "some data");
     }
+
+    /**
+     * Verify that listeners can be added and removed while an event is being sent and that it doesn't affect the
+     * listeners notified of this event.
+     */
+    @Test
+    public void testModifyListenersDuringNotification() throws Exception
+    {
+        final ObservationManager observationManager = this.mocker.getComponentUnderTest();
+        final EventListener addedListener = mock(EventListener.class, "added");
+        final Event event = new ActionExecutionEvent("action");
+
+        when(addedListener.getName()).thenReturn("added");
+        when(addedListener.getEvents()).thenReturn(Arrays.<Event>asList(event));
+
+        final List<Event> receivedEvents = new ArrayList<>();
+        observationManager.addListener(new AbstractEventListener("modifying", event)
+        {
+            @Override
+            public void onEvent(Event receivedEvent, Object source, Object data)
+            {
+                receivedEvents.add(receivedEvent);
+
+                observationManager.removeListener(getName());
+                observationManager.addListener(addedListener);
+            }
+        });
+
+        observationManager.notify(event, null);
+
+        Assert.assertEquals(Arrays.asList(event), receivedEvents);
+        verify(addedListener, never()).onEvent(any(Event.class), any(), any());
+
+        observationManager.notify(event, null);
+
+        Assert.assertEquals(1, receivedEvents.size());
+        verify(addedListener).onEvent(event, null, null);
+    }
+
+    /**
+     * Verify that the listeners using an indexable filter are only checked for the events having the same filter.
+     */
+    @Test
+    public void testNotifyIndexedListeners() throws Exception
+    {
+        FixedNameEventFilter filter = spy(new FixedNameEventFilter("name"));
+        EventListener indexedListener = mock(EventListener.class, "indexed");
+        when(indexedListener.getName()).thenReturn("indexed");
+        when(indexedListener.getEvents()).thenReturn(Arrays.<Event>asList(new TestFilterableEvent(filter)));
+
+        EventListener regexListener = mock(EventListener.class, "regex");
+        when(regexListener.getName()).thenReturn("regex");
+        when(regexListener.getEvents()).thenReturn(
+            Arrays.<Event>asList(new TestFilterableEvent(new RegexEventFilter("n.*"))));
+
+        this.mocker.getComponentUnderTest().addListener(indexedListener);
+        this.mocker.getComponentUnderTest().addListener(regexListener);
+
+        Event otherEvent = new TestFilterableEvent("nothing");
+        this.mocker.getComponentUnderTest().notify(otherEvent, null);
+
+        verify(filter, never()).matches(any(EventFilter.class));
+        verify(indexedListener, never()).onEvent(any(Event.class), any(), any());
+        verify(regexListener).onEvent(otherEvent, null, null);
+
+        Event event = new TestFilterableEvent("name");
+        this.mocker.getComponentUnderTest().notify(event, null);
+
+        verify(indexedListener).onEvent(event, null, null);
+        verify(regexListener).onEvent(event, null, null);
+    }
+
+    /**
+     * Verify that the listeners using a filter which overrides the matching of an indexable filter are not indexed.
+     */
+    @Test
+    public void testNotifyListenersWithOverriddenIndexableFilter() throws Exception
+    {
+        EventListener listener = mock(EventListener.class, "prefix");
+        when(listener.getName()).thenReturn("prefix");
+        when(listener.getEvents()).thenReturn(
+            Arrays.<Event>asList(new TestFilterableEvent(new FixedNameEventFilter("name")
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public boolean matches(EventFilter eventFilter)
+                {
+                    return eventFilter.getFilter().startsWith(getFilter());
+                }
+            })));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+
+        Event event = new TestFilterableEvent("name.suffix");
+        this.mocker.getComponentUnderTest().notify(event, null);
+
+        verify(listener).onEvent(event, null, null);
+    }
+
+    @Test
+    public void testNotifyAsynchronousListener() throws Exception
+    {
+        Event event1 = new TestFilterableEvent("event1");
+        Event event2 = new TestFilterableEvent("event2");
+        TestAsynchronousListener listener =
+            new TestAsynchronousListener("async", new TestFilterableEvent(new RegexEventFilter("event.*")));
+
+        DefaultObservationManager observationManager =
+            (DefaultObservationManager) this.mocker.getComponentUnderTest();
+        observationManager.addListener(listener);
+
+        observationManager.notify(event1, null);
+        observationManager.notify(event2, null);
+
+        Assert.assertSame(event1, listener.events.poll(10, TimeUnit.SECONDS));
+        Assert.assertSame(event2, listener.events.poll(10, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), listener.thread);
+
+        observationManager.dispose();
+
+        Assert.assertEquals(2, observationManager.getAsynchronousListenerQueues().get("async").getDeliveredCount());
+    }
+
+    @Test
+    public void testNotifyAsynchronousListenerWhenQueueIsFull() throws Exception
+    {
+        Event event = new ActionExecutionEvent("action");
+        TestDroppingListener listener = new TestDroppingListener("dropping", new ActionExecutionEvent("action"));
+
+        DefaultObservationManager observationManager =
+            (DefaultObservationManager) this.mocker.getComponentUnderTest();
+        observationManager.addListener(listener);
+        AsynchronousListenerQueue queue = observationManager.getAsynchronousListenerQueues().get("dropping");
+
+        // The first event is being delivered, the second one waits in the queue and the third one is dropped
+        observationManager.notify(event, null);
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        observationManager.notify(event, null);
+        observationManager.notify(event, null);
+
+        Assert.assertEquals(1, queue.getQueueSize());
+        Assert.assertEquals(1, queue.getMaxQueueSize());
+        Assert.assertEquals(1, queue.getDroppedCount());
+
+        listener.released.countDown();
+        observationManager.removeListener("dropping");
+        Assert.assertTrue(queue.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(2, queue.getDeliveredCount());
+    }
+
+    @Test
+    public void testNotifyAsynchronousListenerInCallerThread() throws Exception
+    {
+        Event event1 = new TestFilterableEvent("event1");
+        Event event2 = new TestFilterableEvent("event2");
+        Event event3 = new TestFilterableEvent("event3");
+        final TestCallerRunsListener listener =
+            new TestCallerRunsListener("callerRuns", new TestFilterableEvent(new RegexEventFilter("event.*")));
+
+        DefaultObservationManager observationManager =
+            (DefaultObservationManager) this.mocker.getComponentUnderTest();
+        observationManager.addListener(listener);
+        AsynchronousListenerQueue queue = observationManager.getAsynchronousListenerQueues().get("callerRuns");
+
+        // The first event is being delivered and the second one waits in the queue
+        observationManager.notify(event1, null);
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        observationManager.notify(event2, null);
+
+        new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // Release right away
+                }
+                listener.released.countDown();
+            }
+        }.start();
+
+        // The queue is full: the waiting events are delivered in this thread, once the first one has been delivered
+        observationManager.notify(event3, null);
+
+        observationManager.removeListener("callerRuns");
+        Assert.assertTrue(queue.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList(event1, event2, event3), listener.events);
+        Assert.assertFalse(listener.concurrent);
+        Assert.assertEquals(1, queue.getCallerRunsCount());
+        Assert.assertEquals(3, queue.getDeliveredCount());
+        Assert.assertEquals(0, queue.getQueueSize());
+    }
+
+    @Test
+    public void testNotifyBatch() throws Exception
+    {
+        EventListener listener = mock(EventListener.class, "listener");
+        when(listener.getName()).thenReturn("listener");
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(new ActionExecutionEvent("action")));
+
+        BatchEventListener batchListener = mock(BatchEventListener.class, "batch");
+        when(batchListener.getName()).thenReturn("batch");
+        when(batchListener.getEvents()).thenReturn(
+            Arrays.<Event>asList(new TestFilterableEvent(new RegexEventFilter("event.*"))));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().addListener(batchListener);
+
+        Event event1 = new TestFilterableEvent("event1");
+        Event action = new ActionExecutionEvent("action");
+        Event other = new TestFilterableEvent("other");
+        Event event2 = new TestFilterableEvent("event2");
+        this.mocker.getComponentUnderTest().notify(Arrays.asList(event1, action, other, event2), "source", "data");
+
+        verify(listener).onEvent(action, "source", "data");
+        verify(batchListener).onEvents(Arrays.asList(event1, event2), "source", "data");
+        verify(batchListener, never()).onEvent(any(Event.class), any(), any());
+
+        // Batch listeners still receive the events sent one by one
+        this.mocker.getComponentUnderTest().notify(event1, null);
+
+        verify(batchListener).onEvent(event1, null, null);
+    }
+
+    @Test
+    public void testStatistics() throws Exception
+    {
+        EventListener listener = mock(EventListener.class, "listener");
+        when(listener.getName()).thenReturn("listener");
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(new ActionExecutionEvent("action")));
+        Mockito.doNothing().doNothing().doThrow(new RuntimeException()).when(listener)
+            .onEvent(any(Event.class), any(), any());
+
+        DefaultObservationManager observationManager =
+            (DefaultObservationManager) this.mocker.getComponentUnderTest();
+        observationManager.addListener(listener);
+
+        Event event = new ActionExecutionEvent("action");
+        observationManager.notify(event, null);
+
+        Assert.assertNull(observationManager.getStatistics());
+        Assert.assertFalse(this.mocker.hasComponent(ObservationManagerStatistics.class));
+
+        DefaultObservationManagerStatistics statistics = new DefaultObservationManagerStatistics();
+        statistics.setSlowThreshold(0);
+        observationManager.setStatistics(statistics);
+        Assert.assertSame(statistics, this.mocker.getInstance(ObservationManagerStatistics.class));
+
+        observationManager.notify(event, null);
+        observationManager.notify(event, null);
+
+        ListenerStatistics listenerStatistics = statistics.getListeners().get("listener");
+        Assert.assertEquals(2, listenerStatistics.getInvocationCount());
+        Assert.assertEquals(1, listenerStatistics.getErrorCount());
+        Assert.assertTrue(listenerStatistics.getInvocationTime() >= listenerStatistics.getMaxInvocationTime());
+        Assert.assertTrue(listenerStatistics.getPercentile(50) > 0);
+        Assert.assertEquals(1, statistics.getListeners().size());
+
+        verify(this.mocker.getMockedLogger(), Mockito.times(2)).warn(
+            Matchers.eq("Listener [{}] took [{}] ms to handle [{}]"), Matchers.eq("listener"),
+            Matchers.anyObject(), Matchers.same(event));
+
+        observationManager.setStatistics(null);
+        Assert.assertFalse(this.mocker.hasComponent(ObservationManagerStatistics.class));
+    }
+
+    /**
+     * Verify that the thread listeners are only checked for the events sent by their thread.
+     */
+    @Test
+    public void testNotifyThreadListeners() throws Exception
+    {
+        final Event event = new ActionExecutionEvent("action");
+
+        EventListener listener = mock(EventListener.class, "current");
+        when(listener.getName()).thenReturn("current");
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(event));
+
+        EventListener otherListener = mock(EventListener.class, "other");
+        when(otherListener.getName()).thenReturn("other");
+        when(otherListener.getEvents()).thenReturn(Arrays.<Event>asList(AllEvent.ALLEVENT));
+
+        Thread otherThread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    mocker.getComponentUnderTest().notify(event, "other");
+                } catch (ComponentLookupException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        DefaultObservationManager observationManager =
+            (DefaultObservationManager) this.mocker.getComponentUnderTest();
+        DefaultObservationManagerStatistics statistics = new DefaultObservationManagerStatistics();
+        observationManager.setStatistics(statistics);
+
+        observationManager.addListener(new WrappedThreadEventListener(listener));
+        observationManager.addListener(new WrappedThreadEventListener(otherListener, otherThread));
+
+        observationManager.notify(event, "current");
+
+        verify(listener).onEvent(event, "current", null);
+        // The listener of the other thread is not even called
+        Assert.assertNull(statistics.getListeners().get("other"));
+
+        otherThread.start();
+        otherThread.join();
+
+        verify(otherListener).onEvent(event, "other", null);
+        verify(listener, never()).onEvent(event, "other", null);
+    }
+
+    /**
+     * Verify that the thread listeners overriding the thread filtering are checked for the events of all the threads.
+     */
+    @Test
+    public void testNotifyThreadListenersOverridingFiltering() throws Exception
+    {
+        Event event = new ActionExecutionEvent("action");
+
+        final EventListener listener = mock(EventListener.class, "all");
+        when(listener.getName()).thenReturn("all");
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(event));
+
+        this.mocker.getComponentUnderTest().addListener(new WrappedThreadEventListener(listener, new Thread())
+        {
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                onEventInternal(event, source, data);
+            }
+        });
+
+        this.mocker.getComponentUnderTest().notify(event, "current");
+
+        verify(listener).onEvent(event, "current", null);
+    }
+
+    @Test
+    public void testHasListener() throws Exception
+    {
+        EventListener listener = mock(EventListener.class);
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(new ActionExecutionEvent("action")));
+
+        Assert.assertFalse(this.mocker.getComponentUnderTest().hasListener(ActionExecutionEvent.class));
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+
+        Assert.assertTrue(this.mocker.getComponentUnderTest().hasListener(ActionExecutionEvent.class));
+        Assert.assertFalse(this.mocker.getComponentUnderTest().hasListener(TestFilterableEvent.class));
+
+        when(listener.getEvents()).thenReturn(Arrays.<Event>asList(AllEvent.ALLEVENT));
+        this.mocker.getComponentUnderTest().addListener(listener);
+
+        Assert.assertTrue(this.mocker.getComponentUnderTest().hasListener(TestFilterableEvent.class));
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MultiRegexMatcher}.
+ *
+ * @version $Id$
+ */
+public class MultiRegexMatcherTest
+{
+    @Test
+    public void getLiteralPrefix()
+    {
+        Assert.assertEquals("Main.", MultiRegexMatcher.getLiteralPrefix("Main\\..*"));
+        Assert.assertEquals("Main", MultiRegexMatcher.getLiteralPrefix("Main"));
+        Assert.assertEquals("", MultiRegexMatcher.getLiteralPrefix(".*Doc.*"));
+        Assert.assertEquals("Mai", MultiRegexMatcher.getLiteralPrefix("Main?"));
+        Assert.assertEquals("Mai", MultiRegexMatcher.getLiteralPrefix("Main{0,2}"));
+        Assert.assertEquals("Main", MultiRegexMatcher.getLiteralPrefix("Main+"));
+        Assert.assertEquals("Main", MultiRegexMatcher.getLiteralPrefix("Main\\d"));
+        Assert.assertEquals("", MultiRegexMatcher.getLiteralPrefix("Main|Other"));
+        Assert.assertEquals("", MultiRegexMatcher.getLiteralPrefix("(?i)main"));
+    }
+
+    @Test
+    public void getMatchingElements()
+    {
+        Map<String, List<String>> elements = new LinkedHashMap<>();
+        elements.put("main", Arrays.asList("Main\\..*"));
+        elements.put("doc", Arrays.asList(".*Doc.*"));
+        elements.put("mainOrSandbox", Arrays.asList("Sandbox\\..*", "Main\\..*"));
+        elements.put("optional", Arrays.asList("Mainx?\\.WebHome"));
+        elements.put("alternative", Arrays.asList("Main\\.WebHome|Sandbox\\.WebHome"));
+
+        MultiRegexMatcher<String> matcher = new MultiRegexMatcher<>(elements, null);
+
+        Assert.assertEquals(Arrays.asList("main", "mainOrSandbox", "optional", "alternative"),
+            matcher.getMatchingElements("Main.WebHome"));
+        Assert.assertEquals(Arrays.asList("main", "doc", "mainOrSandbox"), matcher.getMatchingElements("Main.MyDoc"));
+        Assert.assertEquals(Arrays.asList("mainOrSandbox", "alternative"),
+            matcher.getMatchingElements("Sandbox.WebHome"));
+        Assert.assertEquals(Collections.emptyList(), matcher.getMatchingElements("Other.Page"));
+        Assert.assertEquals(Collections.emptyList(), matcher.getMatchingElements(""));
+    }
+
+    @Test
+    public void reusePreviousPatterns()
+    {
+        Map<String, List<String>> elements = new LinkedHashMap<>();
+        elements.put("main", Arrays.asList("Main\\..*"));
+        MultiRegexMatcher<String> previous = new MultiRegexMatcher<>(elements, null);
+
+        elements.put("sandbox", Arrays.asList("Sandbox\\..*"));
+        MultiRegexMatcher<String> matcher = new MultiRegexMatcher<>(elements, previous);
+
+        Assert.assertSame(previous.getPattern("Main\\..*"), matcher.getPattern("Main\\..*"));
+        Assert.assertNotNull(matcher.getPattern("Sandbox\\..*"));
+        Assert.assertNull(matcher.getPattern("Other\\..*"));
+        Assert.assertEquals(Arrays.asList("sandbox"), matcher.getMatchingElements("Sandbox.WebHome"));
+    }
+}
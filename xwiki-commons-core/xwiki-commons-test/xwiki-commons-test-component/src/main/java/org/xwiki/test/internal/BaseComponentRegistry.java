@@ -0,0 +1,253 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.test.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.annotation.ComponentDeclaration;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentRepositoryException;
+
+/**
+ * The components found by scanning the classpath (for {@link org.xwiki.test.annotation.AllComponents}) or by loading
+ * a list of component implementations (for {@link org.xwiki.test.annotation.ComponentList}), computed once per JVM and
+ * shared by all the tests.
+ * <p>
+ * The registry itself is immutable: each test component manager registers copies of the descriptors of the registry
+ * and then its own components and mocks, which only affect this component manager. The component instances are
+ * never shared between the test component managers. Only the discovery of the components is shared: registering them
+ * is still proportional to the number of components for each test component manager.
+ * <p>
+ * The registries are indexed by classloader with weak keys and only softly referenced, so that they don't prevent
+ * the classloaders of isolated test runs from being garbage collected.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public final class BaseComponentRegistry
+{
+    /**
+     * The system property to set to {@code false} to discover the components again for each test.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.test.component.registry.shared";
+
+    /**
+     * The registries already computed (or being computed), indexed by classloader and then by the names of the
+     * component implementations ({@link org.xwiki.test.annotation.ComponentList}) or an empty list for all the
+     * components. The registries reference classes of the classloader so they can't be strongly referenced.
+     */
+    private static final Map<ClassLoader, ConcurrentMap<List<String>, Reference<FutureTask<BaseComponentRegistry>>>>
+        REGISTRIES = new WeakHashMap<>();
+
+    private final List<ComponentDescriptor<?>> descriptors;
+
+    /**
+     * Collect the descriptors registered by the {@link ComponentAnnotationLoader} instead of registering them.
+     *
+     * @version $Id$
+     */
+    private static final class RecordingComponentManager extends EmbeddableComponentManager
+    {
+        private final List<ComponentDescriptor<?>> descriptors = new ArrayList<>();
+
+        @Override
+        public <T> void registerComponent(ComponentDescriptor<T> componentDescriptor)
+        {
+            this.descriptors.add(componentDescriptor);
+        }
+    }
+
+    private BaseComponentRegistry(List<ComponentDescriptor<?>> descriptors)
+    {
+        this.descriptors = Collections.unmodifiableList(descriptors);
+    }
+
+    /**
+     * @return true if the registries should be shared between the tests
+     */
+    public static boolean isEnabled()
+    {
+        return !"false".equals(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    /**
+     * @param classLoader the classloader where to look for the components
+     * @return the registry of all the components declared in the classpath
+     */
+    public static BaseComponentRegistry getAllComponents(final ClassLoader classLoader)
+    {
+        return getRegistry(classLoader, Collections.<String>emptyList(), new Callable<BaseComponentRegistry>()
+        {
+            @Override
+            public BaseComponentRegistry call()
+            {
+                RecordingComponentManager componentManager = new RecordingComponentManager();
+                createLoader().initialize(componentManager, classLoader);
+
+                return new BaseComponentRegistry(componentManager.descriptors);
+            }
+        });
+    }
+
+    /**
+     * @param classLoader the classloader to use to load the components
+     * @param componentClasses the implementations of the components
+     * @return the registry of the passed components
+     */
+    public static BaseComponentRegistry getComponents(final ClassLoader classLoader, final Class<?>[] componentClasses)
+    {
+        List<String> componentClassNames = new ArrayList<>(componentClasses.length);
+        for (Class<?> componentClass : componentClasses) {
+            componentClassNames.add(componentClass.getName());
+        }
+
+        return getRegistry(classLoader, componentClassNames, new Callable<BaseComponentRegistry>()
+        {
+            @Override
+            public BaseComponentRegistry call()
+            {
+                List<ComponentDeclaration> componentDeclarations = new ArrayList<ComponentDeclaration>();
+                for (Class<?> componentClass : componentClasses) {
+                    componentDeclarations.add(new ComponentDeclaration(componentClass.getName()));
+                }
+
+                RecordingComponentManager componentManager = new RecordingComponentManager();
+                createLoader().initialize(componentManager, classLoader, componentDeclarations);
+
+                return new BaseComponentRegistry(componentManager.descriptors);
+            }
+        });
+    }
+
+    private static ComponentAnnotationLoader createLoader()
+    {
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+        // Nothing is registered in the recording component manager
+        loader.setWarmUp(null);
+
+        return loader;
+    }
+
+    private static ConcurrentMap<List<String>, Reference<FutureTask<BaseComponentRegistry>>> getRegistries(
+        ClassLoader classLoader)
+    {
+        synchronized (REGISTRIES) {
+            ConcurrentMap<List<String>, Reference<FutureTask<BaseComponentRegistry>>> registries =
+                REGISTRIES.get(classLoader);
+            if (registries == null) {
+                registries = new ConcurrentHashMap<>();
+                REGISTRIES.put(classLoader, registries);
+            }
+
+            return registries;
+        }
+    }
+
+    /**
+     * Compute the registry only once, even when several tests need it at the same time.
+     */
+    private static BaseComponentRegistry getRegistry(ClassLoader classLoader, List<String> key,
+        Callable<BaseComponentRegistry> callable)
+    {
+        ConcurrentMap<List<String>, Reference<FutureTask<BaseComponentRegistry>>> registries =
+            getRegistries(classLoader);
+
+        Reference<FutureTask<BaseComponentRegistry>> reference;
+        FutureTask<BaseComponentRegistry> registry;
+        do {
+            reference = registries.get(key);
+            registry = reference != null ? reference.get() : null;
+            if (registry == null) {
+                FutureTask<BaseComponentRegistry> newRegistry = new FutureTask<>(callable);
+                Reference<FutureTask<BaseComponentRegistry>> newReference = new SoftReference<>(newRegistry);
+                // Replace the registry which has been garbage collected, if any
+                boolean added;
+                if (reference != null) {
+                    added = registries.replace(key, reference, newReference);
+                } else {
+                    added = registries.putIfAbsent(key, newReference) == null;
+                }
+                if (added) {
+                    reference = newReference;
+                    registry = newRegistry;
+                    registry.run();
+                }
+            }
+        } while (registry == null);
+
+        try {
+            return registry.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException("Interrupted while waiting for the components to be discovered", e);
+        } catch (ExecutionException e) {
+            // Give a chance to the next test
+            registries.remove(key, reference);
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuntimeException("Failed to discover the components", e.getCause());
+        }
+    }
+
+    /**
+     * @return the descriptors of the components, in registration order, shared by all the tests and thus not to be
+     *         modified
+     */
+    public List<ComponentDescriptor<?>> getDescriptors()
+    {
+        return this.descriptors;
+    }
+
+    /**
+     * Register copies of the components of this registry, so that a test modifying the descriptors of its component
+     * manager doesn't affect the other tests.
+     *
+     * @param componentManager the component manager where to register the components
+     */
+    public void registerComponents(ComponentManager componentManager)
+    {
+        try {
+            for (ComponentDescriptor<?> descriptor : this.descriptors) {
+                componentManager.registerComponent(new DefaultComponentDescriptor<>(descriptor));
+            }
+        } catch (ComponentRepositoryException e) {
+            throw new RuntimeException("Failed to register the components", e);
+        }
+    }
+}
@@ -101,6 +101,8 @@ public void registerComponent(Class<?> componentImplementation, ComponentManager
      * loaded; however this is not recommended since it slows down the execution time and makes the test less
      * controlled; we recommend instead to use the {@link org.xwiki.test.annotation.ComponentList} annotation which only
      * registers the component implementation you pass to it.
+     * <p>
+     * The components are discovered only once per JVM (see {@link BaseComponentRegistry}).
      *
      * @param testClass the class containing the annotations
      * @param componentManager the component manager against which to register the components
@@ -109,10 +111,18 @@ public void registerComponents(Class<?> testClass, ComponentManager componentMan
     {
         AllComponents allComponentsAnnotation = testClass.getAnnotation(AllComponents.class);
         if (allComponentsAnnotation != null) {
-            this.loader.initialize(componentManager, testClass.getClassLoader());
+            if (BaseComponentRegistry.isEnabled()) {
+                BaseComponentRegistry.getAllComponents(testClass.getClassLoader()).registerComponents(
+                    componentManager);
+            } else {
+                this.loader.initialize(componentManager, testClass.getClassLoader());
+            }
         } else {
             ComponentList componentListAnnotation = testClass.getAnnotation(ComponentList.class);
-            if (componentListAnnotation != null) {
+            if (componentListAnnotation != null && BaseComponentRegistry.isEnabled()) {
+                BaseComponentRegistry.getComponents(testClass.getClassLoader(), componentListAnnotation.value())
+                    .registerComponents(componentManager);
+            } else if (componentListAnnotation != null) {
                 List<ComponentDeclaration> componentDeclarations = new ArrayList<ComponentDeclaration>();
                 for (Class<?> componentClass : componentListAnnotation.value()) {
                     componentDeclarations.add(new ComponentDeclaration(componentClass.getName()));
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.test.internal;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.inject.Singleton;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.Role;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.test.annotation.ComponentList;
+
+/**
+ * Unit tests for {@link BaseComponentRegistry}.
+ *
+ * @version $Id$
+ */
+public class BaseComponentRegistryTest
+{
+    @Role
+    public interface TestRole
+    {
+    }
+
+    @Component
+    @Singleton
+    public static class TestComponent implements TestRole
+    {
+    }
+
+    @Component("other")
+    @Singleton
+    public static class OtherTestComponent implements TestRole
+    {
+    }
+
+    @ComponentList(TestComponent.class)
+    public static class TestClass
+    {
+    }
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void getComponentsIsShared()
+    {
+        BaseComponentRegistry registry =
+            BaseComponentRegistry.getComponents(this.classLoader, new Class<?>[] {TestComponent.class});
+
+        Assert.assertEquals(1, registry.getDescriptors().size());
+        Assert.assertSame(registry,
+            BaseComponentRegistry.getComponents(this.classLoader, new Class<?>[] {TestComponent.class}));
+
+        BaseComponentRegistry otherRegistry =
+            BaseComponentRegistry.getComponents(this.classLoader, new Class<?>[] {TestComponent.class,
+                OtherTestComponent.class});
+
+        Assert.assertNotSame(registry, otherRegistry);
+        Assert.assertEquals(2, otherRegistry.getDescriptors().size());
+    }
+
+    @Test
+    public void registerComponentsIsLocal() throws Exception
+    {
+        BaseComponentRegistry registry =
+            BaseComponentRegistry.getComponents(this.classLoader, new Class<?>[] {TestComponent.class});
+
+        EmbeddableComponentManager componentManager1 = new EmbeddableComponentManager();
+        registry.registerComponents(componentManager1);
+        EmbeddableComponentManager componentManager2 = new EmbeddableComponentManager();
+        registry.registerComponents(componentManager2);
+
+        // Instances are not shared
+        Assert.assertNotSame(componentManager1.getInstance(TestRole.class),
+            componentManager2.getInstance(TestRole.class));
+
+        // Descriptors are not shared either
+        ComponentDescriptor<TestRole> descriptor1 = componentManager1.getComponentDescriptor(TestRole.class, "default");
+        Assert.assertNotSame(registry.getDescriptors().get(0), descriptor1);
+        Assert.assertNotSame(descriptor1, componentManager2.getComponentDescriptor(TestRole.class, "default"));
+        Assert.assertSame(TestComponent.class, descriptor1.getImplementation());
+
+        // Overrides stay in their component manager
+        TestRole mock = new TestRole()
+        {
+        };
+        new ComponentRegistrator().registerComponent(TestRole.class, mock, componentManager1);
+
+        Assert.assertSame(mock, componentManager1.getInstance(TestRole.class));
+        Assert.assertTrue(componentManager2.getInstance(TestRole.class) instanceof TestComponent);
+        Assert.assertEquals(1, registry.getDescriptors().size());
+    }
+
+    @Test
+    public void registerComponentsWhenNotShared() throws Exception
+    {
+        Assert.assertTrue(BaseComponentRegistry.isEnabled());
+
+        System.setProperty(BaseComponentRegistry.ENABLED_PROPERTY, "false");
+        try {
+            Assert.assertFalse(BaseComponentRegistry.isEnabled());
+
+            EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+            new ComponentRegistrator().registerComponents(TestClass.class, componentManager);
+
+            Assert.assertTrue(componentManager.getInstance(TestRole.class) instanceof TestComponent);
+        } finally {
+            System.clearProperty(BaseComponentRegistry.ENABLED_PROPERTY);
+        }
+
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+        new ComponentRegistrator().registerComponents(TestClass.class, componentManager);
+
+        Assert.assertTrue(componentManager.getInstance(TestRole.class) instanceof TestComponent);
+    }
+
+    @Test
+    public void classLoaderIsNotRetained() throws Exception
+    {
+        ClassLoader isolatedClassLoader = new URLClassLoader(new URL[0], this.classLoader);
+        BaseComponentRegistry.getComponents(isolatedClassLoader, new Class<?>[] {TestComponent.class});
+
+        WeakReference<ClassLoader> reference = new WeakReference<>(isolatedClassLoader);
+        isolatedClassLoader = null;
+
+        for (int i = 0; i < 100 && reference.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Assert.assertNull(reference.get());
+    }
+}
@@ -24,10 +24,12 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -46,6 +48,10 @@
 /**
  * Annotation Processor that checks if all classes annotated with {@code org.xwiki.component.annotation.Component} are
  * declared in {@code }META-INF/components.txt} files.
+ * <p>
+ * It also generates a {@code META-INF/component-descriptors.txt} index containing the precomputed descriptors of the
+ * declared components, used at runtime to avoid discovering them by reflection (see
+ * {@link ComponentDescriptorIndexGenerator}).
  *
  * @version $Id$
  * @since 6.4M1
@@ -65,6 +71,13 @@ public class ComponentCheckerAnnotationProcessor extends AbstractProcessor
 
     private boolean skip;
 
+    private List<String> descriptorIndex = new ArrayList<>();
+
+    /**
+     * The qualified names of the top level types compiled so far, only their components can be indexed.
+     */
+    private Set<String> compiledTypes = new HashSet<>();
+
     @Override
     public synchronized void init(ProcessingEnvironment processingEnvironment)
     {
@@ -99,7 +112,21 @@ public synchronized void init(ProcessingEnvironment processingEnvironment)
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment)
     {
-        if (this.skip || annotations.size() == 0) {
+        if (!this.skip && environment.processingOver()) {
+            writeDescriptorIndex();
+        }
+
+        if (this.skip) {
+            return false;
+        }
+
+        for (Element rootElement : environment.getRootElements()) {
+            if (rootElement instanceof TypeElement) {
+                this.compiledTypes.add(((TypeElement) rootElement).getQualifiedName().toString());
+            }
+        }
+
+        if (annotations.size() == 0) {
             return false;
         }
 
@@ -112,6 +139,9 @@ public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment
             return false;
         }
 
+        ComponentDescriptorIndexGenerator indexGenerator = new ComponentDescriptorIndexGenerator(
+            this.processingEnv.getElementUtils(), this.processingEnv.getTypeUtils(), this.compiledTypes);
+
         for (Element element : environment.getElementsAnnotatedWith(componentAnnotationClass)) {
             TypeElement classElement = (TypeElement) element;
             String binaryName = this.processingEnv.getElementUtils().getBinaryName(classElement).toString();
@@ -159,12 +189,40 @@ public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment
                     "Component class [%s] must have either the [%s] or the [%s] annotation defined on it.",
                     binaryName, SINGLETON_CLASS_NAME, INSTANTIATION_STRATEGY_CLASS_NAME));
             }
+
+            // Precompute the descriptors of the declared components
+            if (this.declarations.contains(binaryName)) {
+                this.descriptorIndex.addAll(indexGenerator.generate(classElement));
+            }
         }
 
         // No further processing of this annotation type
         return true;
     }
 
+    private void writeDescriptorIndex()
+    {
+        if (this.descriptorIndex.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject fo = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                ComponentDescriptorIndexGenerator.INDEX_LOCATION);
+            try (Writer writer = fo.openWriter()) {
+                for (String line : this.descriptorIndex) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            // The index is only an optimization: components will be discovered by reflection at runtime
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, String.format(
+                "Failed to write [%s]. Reason: [%s]", ComponentDescriptorIndexGenerator.INDEX_LOCATION,
+                getThrowableString(e)));
+        }
+    }
+
     private Class<? extends Annotation> loadAnnotationClass(String annotationClassAsString)
     {
         Class<? extends Annotation> annotationClass;
@@ -0,0 +1,502 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.tool.component;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Computes, at build time, the component descriptors which {@code ComponentAnnotationLoader} would otherwise compute
+ * at runtime by reflection, and serializes them in the {@code META-INF/component-descriptors.txt} index format.
+ * <p>
+ * Each line of the index describes one descriptor (one per role and hint) with space separated fields:
+ * {@code <implementation> <role type> <encoded hint> <instantiation strategy> [<field>[:<encoded hint>]:<type>]*}.
+ * Types are serialized using binary class names and {@code <>} for generic arguments, hints are URL encoded and the
+ * dependency hint is omitted when none was specified. Classes which can't be fully described (wildcards or unresolved
+ * generic types in injected fields, unsupported injection annotations, etc.) are not indexed, and are thus still
+ * parsed by reflection at runtime.
+ * <p>
+ * The roles and the injected fields of a component also depend on its superclasses and interfaces. Only the components
+ * whose supertypes are all part of the current compilation are indexed since the others (coming from other jars)
+ * could change without the index being generated again.
+ *
+ * @version $Id$
+ * @since 6.4M3
+ */
+public class ComponentDescriptorIndexGenerator
+{
+    /**
+     * Location of the generated index, must be kept in sync with {@code ComponentAnnotationLoader}.
+     */
+    public static final String INDEX_LOCATION = "META-INF/component-descriptors.txt";
+
+    private static final String COMPONENT = "org.xwiki.component.annotation.Component";
+
+    private static final String ROLE = "org.xwiki.component.annotation.Role";
+
+    private static final String COMPONENT_ROLE = "org.xwiki.component.annotation.ComponentRole";
+
+    private static final String INSTANTIATION_STRATEGY = "org.xwiki.component.annotation.InstantiationStrategy";
+
+    private static final String REQUIREMENT = "org.xwiki.component.annotation.Requirement";
+
+    private static final String SINGLETON = "javax.inject.Singleton";
+
+    private static final String NAMED = "javax.inject.Named";
+
+    private static final String INJECT = "javax.inject.Inject";
+
+    private static final String PROVIDER = "javax.inject.Provider";
+
+    private static final String DEFAULT_HINT = "default";
+
+    private static final String SINGLETON_STRATEGY = "SINGLETON";
+
+    private static final String VALUE = "value";
+
+    private static final String SEPARATOR = " ";
+
+    private static final char DEPENDENCY_SEPARATOR = ':';
+
+    private static final String ENCODING = "UTF-8";
+
+    private final Elements elements;
+
+    private final Types types;
+
+    private final Set<String> compiledTypes;
+
+    /**
+     * Thrown when a component can't be described in the index.
+     *
+     * @version $Id$
+     */
+    private static class NotIndexableException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        NotIndexableException(String message)
+        {
+            super(message);
+        }
+    }
+
+    /**
+     * @param elements the utility to manipulate program elements
+     * @param types the utility to manipulate types
+     * @param compiledTypes the qualified names of the top level types of the current compilation
+     */
+    public ComponentDescriptorIndexGenerator(Elements elements, Types types, Set<String> compiledTypes)
+    {
+        this.elements = elements;
+        this.types = types;
+        this.compiledTypes = compiledTypes;
+    }
+
+    /**
+     * @param componentElement the component implementation class
+     * @return the index lines describing the component descriptors, or an empty list if the component can't be
+     *         indexed
+     */
+    public List<String> generate(TypeElement componentElement)
+    {
+        try {
+            String implementation = this.elements.getBinaryName(componentElement).toString();
+            String strategy = getInstantiationStrategy(componentElement);
+            String dependencies = serializeDependencies(componentElement);
+
+            List<String> lines = new ArrayList<>();
+            for (String role : findRoles((DeclaredType) componentElement.asType())) {
+                for (String hint : getHints(componentElement)) {
+                    StringBuilder line = new StringBuilder();
+                    line.append(implementation);
+                    line.append(SEPARATOR).append(role);
+                    line.append(SEPARATOR).append(encode(hint));
+                    line.append(SEPARATOR).append(strategy);
+                    line.append(dependencies);
+
+                    lines.add(line.toString());
+                }
+            }
+
+            return lines;
+        } catch (NotIndexableException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    // Roles
+
+    private Set<String> findRoles(DeclaredType componentType) throws NotIndexableException
+    {
+        Set<String> roles = new LinkedHashSet<>();
+
+        TypeElement componentElement = (TypeElement) componentType.asElement();
+
+        // If the roles are specified by the user then don't auto-discover roles
+        List<String> explicitRoles = getClassValues(getAnnotation(componentElement, COMPONENT), "roles");
+        if (!explicitRoles.isEmpty()) {
+            roles.addAll(explicitRoles);
+        } else {
+            TypeMirror superType = null;
+            for (TypeMirror directType : this.types.directSupertypes(componentType)) {
+                Element directElement = this.types.asElement(directType);
+                checkCompiled((TypeElement) directElement);
+                if (directElement.getKind().isInterface()) {
+                    findInterfaceRoles((DeclaredType) directType, roles);
+                } else {
+                    superType = directType;
+                }
+            }
+
+            // Note that we need to look into the superclass since the super class can itself implements an
+            // interface that has the @Role annotation.
+            if (superType != null && !isObject(superType)) {
+                roles.addAll(findRoles((DeclaredType) superType));
+            }
+        }
+
+        return roles;
+    }
+
+    private void findInterfaceRoles(DeclaredType interfaceType, Set<String> roles) throws NotIndexableException
+    {
+        TypeElement interfaceElement = (TypeElement) interfaceType.asElement();
+
+        // Handle super interfaces
+        roles.addAll(findRoles(interfaceType));
+
+        // Handle interfaces directly declared in the passed component class
+        if (getDirectAnnotation(interfaceElement, ROLE) != null) {
+            roles.add(serializeRoleType(interfaceType));
+        }
+
+        // Handle javax.inject.Provider
+        TypeElement providerElement = this.elements.getTypeElement(PROVIDER);
+        if (providerElement != null
+            && this.types.isAssignable(this.types.erasure(interfaceType), this.types.erasure(providerElement.asType())))
+        {
+            roles.add(serializeRoleType(interfaceType));
+        }
+
+        // Handle ComponentRole (retro-compatibility)
+        if (getDirectAnnotation(interfaceElement, COMPONENT_ROLE) != null) {
+            roles.add(getBinaryName(interfaceElement));
+        }
+    }
+
+    /**
+     * Generic roles which can't be fully resolved are registered with their raw class, the same way it's done at
+     * runtime.
+     */
+    private String serializeRoleType(DeclaredType type) throws NotIndexableException
+    {
+        return isResolved(type) ? serializeType(type) : getBinaryName((TypeElement) type.asElement());
+    }
+
+    private boolean isResolved(TypeMirror type)
+    {
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            return false;
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                if (!isResolved(argument)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    // Hints and instantiation strategy
+
+    private List<String> getHints(TypeElement componentElement)
+    {
+        // If there's a @Named annotation, use it and ignore hints specified in the @Component annotation.
+        AnnotationMirror named = getAnnotation(componentElement, NAMED);
+        if (named != null) {
+            return Collections.singletonList(getStringValue(named, VALUE));
+        }
+
+        AnnotationMirror component = getAnnotation(componentElement, COMPONENT);
+        if (component != null) {
+            List<String> hints = getStringValues(component, "hints");
+            if (!hints.isEmpty()) {
+                return hints;
+            }
+
+            String value = getStringValue(component, VALUE);
+            if (value != null && value.trim().length() > 0) {
+                return Collections.singletonList(value.trim());
+            }
+        }
+
+        return Collections.singletonList(DEFAULT_HINT);
+    }
+
+    private String getInstantiationStrategy(TypeElement componentElement)
+    {
+        if (getAnnotation(componentElement, SINGLETON) == null) {
+            AnnotationMirror instantiationStrategy = getAnnotation(componentElement, INSTANTIATION_STRATEGY);
+            if (instantiationStrategy != null) {
+                AnnotationValue value = getValue(instantiationStrategy, VALUE);
+                if (value != null) {
+                    return ((VariableElement) value.getValue()).getSimpleName().toString();
+                }
+            }
+        }
+
+        return SINGLETON_STRATEGY;
+    }
+
+    // Dependencies
+
+    private String serializeDependencies(TypeElement componentElement) throws NotIndexableException
+    {
+        StringBuilder dependencies = new StringBuilder();
+
+        // Note: a field declared in a class hides the fields with the same name declared in its superclasses
+        Set<String> names = new HashSet<>();
+        TypeElement element = componentElement;
+        while (element != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements())) {
+                if (names.add(field.getSimpleName().toString())) {
+                    serializeDependency(field, dependencies);
+                }
+            }
+
+            TypeMirror superType = element.getSuperclass();
+            element = superType.getKind() == TypeKind.DECLARED ? (TypeElement) this.types.asElement(superType) : null;
+            if (element != null) {
+                checkCompiled(element);
+            }
+        }
+
+        return dependencies.toString();
+    }
+
+    private void serializeDependency(VariableElement field, StringBuilder dependencies) throws NotIndexableException
+    {
+        if (getDirectAnnotation(field, REQUIREMENT) != null) {
+            throw new NotIndexableException("Legacy injection annotations are only supported at runtime");
+        }
+
+        if (getDirectAnnotation(field, INJECT) != null) {
+            TypeMirror fieldType = field.asType();
+
+            String serializedType;
+            Element fieldTypeElement = this.types.asElement(fieldType);
+            if (fieldTypeElement != null && getDirectAnnotation(fieldTypeElement, COMPONENT_ROLE) != null
+                && getDirectAnnotation(fieldTypeElement, ROLE) == null) {
+                // Retro-compatibility (generic type used to not be taken into account)
+                serializedType = getBinaryName((TypeElement) fieldTypeElement);
+            } else {
+                serializedType = serializeType(fieldType);
+            }
+
+            AnnotationMirror named = getDirectAnnotation(field, NAMED);
+
+            dependencies.append(SEPARATOR);
+            dependencies.append(field.getSimpleName());
+            dependencies.append(DEPENDENCY_SEPARATOR);
+            if (named != null) {
+                dependencies.append(encode(getStringValue(named, VALUE)));
+                dependencies.append(DEPENDENCY_SEPARATOR);
+            }
+            dependencies.append(serializedType);
+        }
+    }
+
+    // Types
+
+    private String serializeType(TypeMirror type) throws NotIndexableException
+    {
+        if (type.getKind() != TypeKind.DECLARED) {
+            throw new NotIndexableException("Unsupported type [" + type + "]");
+        }
+
+        DeclaredType declaredType = (DeclaredType) type;
+
+        TypeMirror enclosingType = declaredType.getEnclosingType();
+        if (enclosingType.getKind() == TypeKind.DECLARED
+            && !((DeclaredType) enclosingType).getTypeArguments().isEmpty()) {
+            throw new NotIndexableException("Types nested in generic types are not supported [" + type + "]");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(getBinaryName((TypeElement) declaredType.asElement()));
+
+        List<? extends TypeMirror> arguments = declaredType.getTypeArguments();
+        if (!arguments.isEmpty()) {
+            builder.append('<');
+            for (int i = 0; i < arguments.size(); ++i) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(serializeType(arguments.get(i)));
+            }
+            builder.append('>');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param element a supertype of the component
+     * @throws NotIndexableException when the type comes from another jar: it could change independently of the
+     *             component (e.g. a new injected field in a superclass)
+     */
+    private void checkCompiled(TypeElement element) throws NotIndexableException
+    {
+        String name = element.getQualifiedName().toString();
+
+        // The types of the platform and the standard injection API can't change without the JVM or the API version
+        if (name.startsWith("java.") || name.equals(PROVIDER)) {
+            return;
+        }
+
+        TypeElement topLevelElement = element;
+        while (topLevelElement.getEnclosingElement() instanceof TypeElement) {
+            topLevelElement = (TypeElement) topLevelElement.getEnclosingElement();
+        }
+
+        if (!this.compiledTypes.contains(topLevelElement.getQualifiedName().toString())) {
+            throw new NotIndexableException("[" + name + "] is not part of the current compilation");
+        }
+    }
+
+    private boolean isObject(TypeMirror type)
+    {
+        return getBinaryName((TypeElement) this.types.asElement(type)).equals(Object.class.getName());
+    }
+
+    private String getBinaryName(TypeElement element)
+    {
+        return this.elements.getBinaryName(element).toString();
+    }
+
+    private String encode(String value)
+    {
+        try {
+            return URLEncoder.encode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            // Should never happen since UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Annotations
+
+    /**
+     * Same as {@link Class#getAnnotation(Class)}: include inherited annotations.
+     */
+    private AnnotationMirror getAnnotation(Element element, String annotationClassName)
+    {
+        return findAnnotation(this.elements.getAllAnnotationMirrors(element), annotationClassName);
+    }
+
+    private AnnotationMirror getDirectAnnotation(Element element, String annotationClassName)
+    {
+        return findAnnotation(element.getAnnotationMirrors(), annotationClassName);
+    }
+
+    private AnnotationMirror findAnnotation(List<? extends AnnotationMirror> annotations, String annotationClassName)
+    {
+        for (AnnotationMirror annotation : annotations) {
+            TypeElement annotationElement = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(annotationClassName)) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private AnnotationValue getValue(AnnotationMirror annotation, String name)
+    {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues()
+            .entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private String getStringValue(AnnotationMirror annotation, String name)
+    {
+        AnnotationValue value = getValue(annotation, name);
+
+        return value != null ? (String) value.getValue() : "";
+    }
+
+    private List<String> getStringValues(AnnotationMirror annotation, String name)
+    {
+        List<String> values = new ArrayList<>();
+
+        for (AnnotationValue value : getArrayValue(annotation, name)) {
+            values.add((String) value.getValue());
+        }
+
+        return values;
+    }
+
+    private List<String> getClassValues(AnnotationMirror annotation, String name)
+    {
+        List<String> values = new ArrayList<>();
+
+        for (AnnotationValue value : getArrayValue(annotation, name)) {
+            values.add(getBinaryName((TypeElement) this.types.asElement((TypeMirror) value.getValue())));
+        }
+
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<? extends AnnotationValue> getArrayValue(AnnotationMirror annotation, String name)
+    {
+        AnnotationValue value = annotation != null ? getValue(annotation, name) : null;
+
+        return value != null ? (List<? extends AnnotationValue>) value.getValue()
+            : Collections.<AnnotationValue>emptyList();
+    }
+}